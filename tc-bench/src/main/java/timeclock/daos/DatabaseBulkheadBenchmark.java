@@ -0,0 +1,115 @@
+package timeclock.daos;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A burst of simulated requests through the bulkhead, on a Tomcat-sized platform thread pool
+ * against a virtual thread per request. Each request blocks off the database (standing in for
+ * SMTP and POI work) and every fourth also holds a connection from a fake pool of 5, so the
+ * bulkhead is the shared bottleneck. One operation is the whole burst; the returned count of
+ * rejected borrows should stay 0 with the 5 s acquire timeout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class DatabaseBulkheadBenchmark {
+
+    private static final int PERMITS = 5;
+    private static final int REQUESTS = 4000;
+    private static final int PLATFORM_THREADS = 200;
+    private static final long OFF_DB_MILLIS = 40;
+    private static final long DB_MILLIS = 2;
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 5000;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private DataSource dataSource;
+
+    @Setup
+    public void setUp() {
+        dataSource = new BulkheadDataSource(new SleepingDataSource(DB_MILLIS), new DatabaseBulkhead(PERMITS, ACQUIRE_TIMEOUT_MILLIS));
+    }
+
+    @Benchmark
+    public int burst() {
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        // close() waits for every submitted request
+        try (executor) {
+            for (int i = 0; i < REQUESTS; i++) {
+                boolean touchesDatabase = i % 4 == 0;
+                executor.execute(() -> {
+                    try {
+                        Thread.sleep(OFF_DB_MILLIS + ThreadLocalRandom.current().nextLong(5));
+                        if (touchesDatabase) {
+                            try (Connection connection = dataSource.getConnection()) {
+                                connection.isValid(0);
+                            }
+                        }
+                    } catch (SQLTransientConnectionException e) {
+                        rejected.incrementAndGet();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+        }
+        return rejected.get();
+    }
+
+    /**
+     * A pool with no limit of its own whose connections sleep on isValid, standing in for a query.
+     */
+    private static class SleepingDataSource extends AbstractDataSource {
+
+        private final long queryMillis;
+
+        SleepingDataSource(long queryMillis) {
+            this.queryMillis = queryMillis;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "isValid" -> {
+                            Thread.sleep(queryMillis);
+                            yield true;
+                        }
+                        default -> null;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package timeclock.daos;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import timeclock.models.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The old user list path (load all users and all hidden ids, List.contains per user, sort in
+ * Java) against the single LEFT JOIN ... ORDER BY name query the roster loads with.
+ * <p>
+ * Unlike the other benchmarks this one needs MySQL: it reads SPRING_DATASOURCE_URL, _USERNAME
+ * and _PASSWORD like the server does, and fails its setup without them. It adds userCount
+ * synthetic users, every tenth hidden, and deletes them again afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserListBenchmark {
+
+    private static final String USER_ID_PREFIX = "bench-";
+
+    @Param({"100", "1000", "10000", "50000"})
+    private int userCount;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private UserDao userDao;
+    private HiddenUserDao hiddenUserDao;
+
+    @Setup
+    public void setUp() {
+        String url = System.getenv("SPRING_DATASOURCE_URL");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("UserListBenchmark needs SPRING_DATASOURCE_URL (and _USERNAME, _PASSWORD)");
+        }
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url + "?serverTimezone=America/Chicago",
+                System.getenv("SPRING_DATASOURCE_USERNAME"), System.getenv("SPRING_DATASOURCE_PASSWORD"));
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        // Reads only, so there is nothing to append to the change log
+        userDao = new UserDao(namedParameterJdbcTemplate, null);
+        hiddenUserDao = new HiddenUserDao(namedParameterJdbcTemplate, null);
+
+        deleteSyntheticUsers();
+        insertSyntheticUsers();
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteSyntheticUsers();
+    }
+
+    @Benchmark
+    public List<User> loadAndFilterInJava() {
+        List<User> users = userDao.selectAllUsers();
+        List<String> hiddenUserIds = hiddenUserDao.getAllHiddenUserIds();
+        return users.stream()
+                .filter(user -> !hiddenUserIds.contains(user.getUserId()))
+                .sorted(Comparator.comparing(User::getName))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<User> joinInSql() {
+        return userDao.selectAllUsersWithHiddenFlag();
+    }
+
+    /**
+     * Inserts users in one batch and hides every tenth one.
+     */
+    private void insertSyntheticUsers() {
+        List<SqlParameterSource> users = new ArrayList<>();
+        List<SqlParameterSource> hidden = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            String userId = USER_ID_PREFIX + UUID.randomUUID().toString().substring(USER_ID_PREFIX.length());
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            params.addValue("userId", userId);
+            params.addValue("name", "Bench User " + userId.substring(USER_ID_PREFIX.length(), USER_ID_PREFIX.length() + 8));
+            users.add(params);
+            if (i % 10 == 0) {
+                hidden.add(new MapSqlParameterSource("userId", userId));
+            }
+        }
+
+        namedParameterJdbcTemplate.batchUpdate("INSERT INTO Users (userId, name) VALUES (:userId, :name)",
+                users.toArray(new SqlParameterSource[0]));
+        namedParameterJdbcTemplate.batchUpdate("INSERT INTO HiddenUsers (userId, hiddenBy, reason) VALUES (:userId, 'benchmark', NULL)",
+                hidden.toArray(new SqlParameterSource[0]));
+    }
+
+    private void deleteSyntheticUsers() {
+        MapSqlParameterSource params = new MapSqlParameterSource("prefix", USER_ID_PREFIX + "%");
+        namedParameterJdbcTemplate.update("DELETE FROM HiddenUsers WHERE userId LIKE :prefix", params);
+        namedParameterJdbcTemplate.update("DELETE FROM Users WHERE userId LIKE :prefix", params);
+    }
+}
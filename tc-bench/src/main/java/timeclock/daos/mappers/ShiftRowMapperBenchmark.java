@@ -0,0 +1,77 @@
+package timeclock.daos.mappers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import timeclock.models.Shift;
+import timeclock.models.UserShiftRow;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shift row mappers over a single in-memory row (the JDK's CachedRowSet), so only the
+ * per-row mapping cost is measured, not the driver.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShiftRowMapperBenchmark {
+
+    private static final int[] COLUMN_TYPES = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
+            Types.TIMESTAMP, Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR};
+
+    private CachedRowSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(COLUMN_TYPES.length);
+        for (int i = 0; i < COLUMN_TYPES.length; i++) {
+            metaData.setColumnType(i + 1, COLUMN_TYPES[i]);
+        }
+
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        resultSet.setMetaData(metaData);
+        resultSet.moveToInsertRow();
+        Instant clockIn = Instant.parse("2025-02-05T14:45:00Z");
+        resultSet.updateInt(1, 1042);
+        resultSet.updateString(2, "user-17");
+        resultSet.updateString(3, "Molly Pieper");
+        resultSet.updateTimestamp(4, Timestamp.from(clockIn));
+        resultSet.updateTimestamp(5, Timestamp.from(clockIn.plusSeconds(430 * 60)));
+        resultSet.updateInt(6, 430);
+        resultSet.updateString(7, "555-0100");
+        resultSet.updateString(8, "molly@example.com");
+        resultSet.updateString(9, "12 Main St, Springfield");
+        resultSet.insertRow();
+        resultSet.moveToCurrentRow();
+        resultSet.first();
+    }
+
+    @Benchmark
+    public Shift mapShift() throws SQLException {
+        return ShiftRowMapper.INSTANCE.mapRow(resultSet, 0);
+    }
+
+    @Benchmark
+    public UserShiftRow mapUserShiftRow() throws SQLException {
+        return UserShiftRowMapper.INSTANCE.mapRow(resultSet, 0);
+    }
+}
@@ -0,0 +1,114 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import timeclock.daos.WebSessionDao;
+import timeclock.models.WebSession;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What each session.mode adds to every signed-in request: finding out who is signed in.
+ * memory reads the HttpSession, cookie decrypts and checks the cookie, and jdbc hashes the
+ * session id and maps its row. The jdbc figure leaves out the SELECT's round trip to MySQL,
+ * which is the bulk of that mode's cost; add a primary-key lookup's latency on your network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionAuthenticationBenchmark {
+
+    @Param({"memory", "jdbc", "cookie"})
+    private String mode;
+
+    private SecurityContextRepository repository;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void signIn() {
+        repository = switch (mode) {
+            case "memory" -> new HttpSessionSecurityContextRepository();
+            case "jdbc" -> new JdbcSecurityContextRepository(new InMemoryWebSessions(), TimeUnit.HOURS.toMillis(12), TimeUnit.HOURS.toMillis(1));
+            case "cookie" -> new CookieSecurityContextRepository("benchmark secret, at least 32 characters", TimeUnit.HOURS.toSeconds(12));
+            default -> throw new IllegalArgumentException(mode);
+        };
+
+        MockHttpServletRequest signInRequest = new MockHttpServletRequest();
+        MockHttpServletResponse signInResponse = new MockHttpServletResponse();
+        repository.saveContext(SessionCookies.signedIn("mike", List.of("ROLE_USER")), signInRequest, signInResponse);
+
+        request = new MockHttpServletRequest();
+        request.setSession(signInRequest.getSession(false));
+        Cookie cookie = signInResponse.getCookie(SessionCookies.COOKIE_NAME);
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+    }
+
+    @TearDown
+    public void shutdown() {
+        if (repository instanceof JdbcSecurityContextRepository jdbc) {
+            jdbc.shutdown();
+        }
+    }
+
+    @Benchmark
+    public SecurityContext authenticateRequest() {
+        return repository.loadDeferredContext(request).get();
+    }
+
+    private static class InMemoryWebSessions extends WebSessionDao {
+
+        private final ConcurrentHashMap<String, WebSession> rows = new ConcurrentHashMap<>();
+
+        InMemoryWebSessions() {
+            super(null);
+        }
+
+        @Override
+        public void insert(String sessionIdHash, String username, Collection<String> authorities) {
+            WebSession session = new WebSession();
+            session.setSessionIdHash(sessionIdHash);
+            session.setUsername(username);
+            session.setAuthorities(List.copyOf(authorities));
+            rows.put(sessionIdHash, session);
+        }
+
+        @Override
+        public WebSession selectActive(String sessionIdHash, long idleTimeoutMillis) {
+            return rows.get(sessionIdHash);
+        }
+
+        @Override
+        public int touch(Collection<String> sessionIdHashes) {
+            return sessionIdHashes.size();
+        }
+
+        @Override
+        public int deleteIdle(long idleTimeoutMillis) {
+            return 0;
+        }
+    }
+}
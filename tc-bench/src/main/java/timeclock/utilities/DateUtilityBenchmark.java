@@ -0,0 +1,37 @@
+package timeclock.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilityBenchmark {
+
+    private String clockIn = "10:31 AM";
+    private String clockOut = "1:31 PM";
+    private LocalDate reportDate = LocalDate.of(2025, 2, 5);
+
+    @Benchmark
+    public long timeSpentInMinutes() {
+        return DateUtility.timeSpentInMinutes(clockIn, clockOut);
+    }
+
+    @Benchmark
+    public String formatDateForFileName() {
+        return DateUtility.formatDateForFileName(reportDate);
+    }
+}
@@ -0,0 +1,61 @@
+package timeclock.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The duration engine's clock-out, edit and spreadsheet paths. With -prof gc,
+ * gc.alloc.rate.norm should read about 0 B/op for each of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationEngineBenchmark {
+
+    private Instant clockInAt = Instant.parse("2025-03-09T04:00:00Z");
+    private Instant clockOutAt = Instant.parse("2025-03-09T11:00:00Z");
+    private long workDay = LocalDate.of(2025, 3, 8).toEpochDay();
+    private int clockIn = DurationEngine.minuteOfDay(22, 0);
+    private int clockOut = DurationEngine.minuteOfDay(6, 0);
+    private String clockInText = "10:00 PM";
+    private long workedMinutes = 420;
+
+    @Benchmark
+    public long clockOutMinutes() {
+        return DurationEngine.minutesBetween(clockInAt, clockOutAt);
+    }
+
+    @Benchmark
+    public long editAcrossMidnightAndDaylightSaving() {
+        return DurationEngine.shiftMinutes(workDay, clockIn, clockOut);
+    }
+
+    @Benchmark
+    public int parseClockTime() {
+        return DurationEngine.parseClockTime(clockInText);
+    }
+
+    @Benchmark
+    public long centralDateOfClockIn() {
+        return DurationEngine.epochDay(clockInAt.getEpochSecond());
+    }
+
+    @Benchmark
+    public String formatWorkedMinutes() {
+        return DurationEngine.formatMinutes(workedMinutes);
+    }
+}
@@ -0,0 +1,94 @@
+package timeclock.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import timeclock.models.UserShiftRow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /api/export/shifts formats over the same synthetic rows as WorkSheetBuilderBenchmark, so
+ * the CSV and NDJSON numbers line up with the streaming workbook download there. Output goes
+ * to a counting sink, so only the formatting cost is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ShiftExportWriterBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private List<UserShiftRow> userShiftRows;
+
+    @Setup
+    public void setUp() {
+        userShiftRows = new ArrayList<>(rows);
+        Instant start = Instant.parse("2025-02-05T14:00:00Z");
+        for (int i = 0; i < rows; i++) {
+            UserShiftRow row = new UserShiftRow();
+            row.setShiftId(i);
+            row.setUserId("user-" + (i % 500));
+            row.setName("Bench User " + (i % 500));
+            row.setEmail("bench" + (i % 500) + "@example.com");
+            row.setPhoneNumber("555-010-" + (i % 10000));
+            row.setMailingAddress((i % 900) + " Main St, Springfield");
+            row.setClockInAt(start.plusSeconds(i % 3600));
+            row.setClockOutAt(start.plusSeconds(i % 3600 + 8 * 3600));
+            row.setWorkedMinutes(480);
+            userShiftRows.add(row);
+        }
+    }
+
+    @Benchmark
+    public long csv() throws IOException {
+        return export(ShiftExportWriter.Format.CSV);
+    }
+
+    @Benchmark
+    public long ndjson() throws IOException {
+        return export(ShiftExportWriter.Format.NDJSON);
+    }
+
+    private long export(ShiftExportWriter.Format format) throws IOException {
+        CountingStream out = new CountingStream();
+        ShiftExportWriter writer = new ShiftExportWriter(out, format);
+        for (UserShiftRow row : userShiftRows) {
+            writer.write(row);
+        }
+        writer.flush();
+        return out.bytes;
+    }
+
+    private static class CountingStream extends OutputStream {
+
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package timeclock.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeCalculatorUtilityBenchmark {
+
+    private String clockIn = "8:45 AM";
+    private String clockOut = "3:55 PM";
+    private LocalDateTime clockInAt = LocalDateTime.of(2025, 2, 5, 8, 45);
+    private LocalDateTime clockOutAt = LocalDateTime.of(2025, 2, 5, 15, 55);
+
+    @Benchmark
+    public String calculateTimeSpentFromClockStrings() {
+        return TimeCalculatorUtility.calculateTimeSpent(clockIn, clockOut);
+    }
+
+    @Benchmark
+    public String calculateTimeSpentFromDateTimes() {
+        return TimeCalculatorUtility.calculateTimeSpent(clockInAt, clockOutAt);
+    }
+}
@@ -0,0 +1,91 @@
+package timeclock.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import timeclock.models.UserShiftRow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-workbook builds at 10, 1k and 100k rows: the in-memory path the summary email uses
+ * and the streaming path behind the download. The 100k case takes seconds per operation,
+ * so iterations are few and long.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WorkSheetBuilderBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int rows;
+
+    private List<UserShiftRow> userShiftRows;
+
+    @Setup
+    public void setUp() {
+        userShiftRows = new ArrayList<>(rows);
+        Instant start = Instant.parse("2025-02-05T14:00:00Z");
+        for (int i = 0; i < rows; i++) {
+            UserShiftRow row = new UserShiftRow();
+            row.setShiftId(i);
+            row.setUserId("user-" + (i % 500));
+            row.setName("Bench User " + (i % 500));
+            row.setEmail("bench" + (i % 500) + "@example.com");
+            row.setPhoneNumber("555-010-" + (i % 10000));
+            row.setMailingAddress((i % 900) + " Main St, Springfield");
+            row.setClockInAt(start.plusSeconds(i % 3600));
+            row.setClockOutAt(start.plusSeconds(i % 3600 + 8 * 3600));
+            row.setWorkedMinutes(480);
+            userShiftRows.add(row);
+        }
+    }
+
+    @Benchmark
+    public ByteArrayResource populateWorkbookToFile() {
+        return new WorkSheetBuilder().populateWorkbook(userShiftRows).toFile();
+    }
+
+    @Benchmark
+    public long streamingWorkbook() throws IOException {
+        CountingStream out = new CountingStream();
+        try (WorkSheetBuilder builder = WorkSheetBuilder.streaming(100)) {
+            builder.startSheet();
+            userShiftRows.forEach(builder::addRow);
+            builder.write(out);
+        }
+        return out.bytes;
+    }
+
+    private static class CountingStream extends OutputStream {
+
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -145,7 +145,7 @@ const Admin: React.FC = () => {
         axios.get('/api/email/send')
             .then(response => {
                 setSendingEmailLoading(false)
-                alert('Email sent successfully!');
+                alert('Email queued; it will be sent in the background.');
             })
             .catch(error => {
                 console.error('Error sending email:', error);
@@ -249,6 +249,35 @@ const Admin: React.FC = () => {
             });
     };
 
+    const pollShiftPurge = (jobId: string): void => {
+        axios.get(`/api/shifts/purge/${jobId}`)
+            .then(response => {
+                const job = response.data;
+                if (job.status === 'RUNNING') {
+                    setTimeout(() => pollShiftPurge(jobId), 2000);
+                    return;
+                }
+                if (job.status === 'FAILED') {
+                    alert(`Deleting shifts failed after ${job.deletedShifts} shifts: ${job.error}`);
+                } else if (job.status === 'CANCELLED') {
+                    alert(`Deleting shifts was cancelled after ${job.deletedShifts} of ${job.totalShifts} shifts prior to ${job.date}`);
+                } else {
+                    alert(`Deleted ${job.deletedShifts} shifts prior to ${job.date}`);
+                }
+                // Refresh shifts list
+                axios.get(`/api/shifts`)
+                    .then(response => {
+                        setShifts(response.data);
+                    })
+                    .catch(error => {
+                        console.error('Error fetching shifts:', error);
+                    });
+            })
+            .catch(error => {
+                console.error('Error checking delete progress:', error);
+            });
+    };
+
     const handleDeleteShiftsConfirm = (): void => {
         if (deleteConfirmation.toLowerCase() !== 'delete') {
             alert('You must type "delete" to confirm');
@@ -262,14 +291,8 @@ const Admin: React.FC = () => {
                 setShowDeleteModal(false);
                 setDeleteShiftsDate('');
                 setDeleteConfirmation('');
-                // Refresh shifts list
-                axios.get(`/api/shifts`)
-                    .then(response => {
-                        setShifts(response.data);
-                    })
-                    .catch(error => {
-                        console.error('Error fetching shifts:', error);
-                    });
+                // The delete runs in the background; poll until it finishes
+                pollShiftPurge(result.jobId);
             })
             .catch(error => {
                 console.error('Error deleting shifts:', error);
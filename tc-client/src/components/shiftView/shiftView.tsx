@@ -74,6 +74,25 @@ const ShiftView: React.FC = () => {
 
     }, []);
 
+    // Refresh the board when any kiosk or admin changes a shift
+    useEffect(() => {
+        const refreshShifts = () => {
+            axios.get(`/api/shifts`)
+                .then(response => {
+                    setShifts(response.data);
+                })
+                .catch(error => {
+                    console.error('Error fetching shifts:', error);
+                })
+        };
+
+        const stream = new EventSource('/api/shifts/stream');
+        ['clock-in', 'clock-out', 'edit', 'delete', 'purge', 'reset'].forEach(eventName =>
+            stream.addEventListener(eventName, refreshShifts)
+        );
+        return () => stream.close();
+    }, []);
+
     const handleClockOut = async (shiftId: number) => {
         // Find the shift that matches the shiftId
         const shiftIndex = shifts.findIndex(s => s.shiftId === shiftId);
@@ -161,7 +161,7 @@ const StartShift: React.FC = () => {
             .catch((error) => {
                 console.error('Error clocking in:', error);
                 setIsLoading(false);
-                alert('Error clocking in');
+                alert(error.response?.status === 409 ? `${userName} is already clocked in` : 'Error clocking in');
             });
     };
 
@@ -2,20 +2,51 @@ package timeclock.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.Scheduled;
+import timeclock.services.ChangeLogPoller;
+import timeclock.services.JobLockService;
 import timeclock.services.TimeclockService;
+import timeclock.utilities.DateUtility;
 
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nightly jobs. Every instance's schedule fires, and JobLockService lets one of them run each
+ * job; the minimum interval keeps a second instance whose clock runs a little behind from
+ * running a daily job again once the first has finished.
+ */
 @Configuration
 public class CronConfig {
 
+    private static final long DAILY_JOB_MIN_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
     private final TimeclockService timeclockService;
+    private final JobLockService jobLockService;
+    private final ChangeLogPoller changeLogPoller;
 
-    public CronConfig(TimeclockService timeclockService) {
+    public CronConfig(TimeclockService timeclockService, JobLockService jobLockService, ChangeLogPoller changeLogPoller) {
         this.timeclockService = timeclockService;
+        this.jobLockService = jobLockService;
+        this.changeLogPoller = changeLogPoller;
+    }
+
+    @Scheduled(cron = "0 0 3 * * ?") //3:00 AM
+    public void reconcileDailyTotals() {
+        jobLockService.runExclusively("reconcile-daily-totals", DAILY_JOB_MIN_INTERVAL_MS, () -> {
+            // Rebuild the last week of rollups from raw shifts to repair anything that drifted
+            LocalDate today = DateUtility.todayCentralTime();
+            timeclockService.reconcileDailyTotals(today.minusDays(7), today);
+        });
     }
 
     @Scheduled(cron = "0 30 23 * * ?") //11:30 PM
     public void sendReport() {
-        timeclockService.sendDailySummaryEmail();
+        jobLockService.runExclusively("send-report", DAILY_JOB_MIN_INTERVAL_MS, () -> timeclockService.sendDailySummaryEmail());
+    }
+
+    @Scheduled(cron = "0 15 * * * ?") //quarter past every hour
+    public void pruneChangeLog() {
+        jobLockService.runExclusively("prune-change-log", 0, changeLogPoller::prune);
     }
 
-}
\ No newline at end of file
+}
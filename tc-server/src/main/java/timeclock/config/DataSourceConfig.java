@@ -0,0 +1,41 @@
+package timeclock.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import timeclock.daos.BulkheadDataSource;
+import timeclock.daos.DatabaseBulkhead;
+
+import javax.sql.DataSource;
+
+/**
+ * Puts the connection pool behind a DatabaseBulkhead. The pool is wrapped after it is
+ * initialized, so its spring.datasource.hikari settings are already bound, and
+ * unwrap(HikariDataSource.class) still reaches it.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    public DatabaseBulkhead databaseBulkhead(
+            @Value("${db-bulkhead.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${db-bulkhead.acquire-timeout-ms:5000}") long acquireTimeoutMillis) {
+        return new DatabaseBulkhead(maxConcurrent, acquireTimeoutMillis);
+    }
+
+    // Static so the post-processor is registered before the DataSource bean is created
+    @Bean
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor(ObjectProvider<DatabaseBulkhead> databaseBulkhead) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof BulkheadDataSource)) {
+                    return new BulkheadDataSource(dataSource, databaseBulkhead.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package timeclock.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.ClassFilter;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.function.SingletonSupplier;
+import timeclock.daos.DatabaseBulkhead;
+import timeclock.daos.ShiftDao;
+import timeclock.daos.UserDao;
+import timeclock.metrics.MetricsRegistry;
+import timeclock.metrics.TimedMethodInterceptor;
+import timeclock.services.ChangeLogPoller;
+import timeclock.services.EmailService;
+import timeclock.services.ShiftService;
+import timeclock.services.UserService;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Times the public methods of the shift, user and email services and of the shift and user DAOs,
+ * and publishes the connection pool, bulkhead and change log poller as gauges. The advisors are
+ * infrastructure beans, so the auto-proxy creator that applies @Transactional folds them into
+ * the same proxy.
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsConfig.class);
+
+    private final MetricsRegistry metricsRegistry;
+    private final DataSource dataSource;
+    private final DatabaseBulkhead databaseBulkhead;
+    private final ChangeLogPoller changeLogPoller;
+
+    public MetricsConfig(MetricsRegistry metricsRegistry, DataSource dataSource, DatabaseBulkhead databaseBulkhead,
+                         ChangeLogPoller changeLogPoller) {
+        this.metricsRegistry = metricsRegistry;
+        this.dataSource = dataSource;
+        this.databaseBulkhead = databaseBulkhead;
+        this.changeLogPoller = changeLogPoller;
+    }
+
+    // Static, and the registry looked up on first call, so the advisors don't pull beans in early
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor operationMetricsAdvisor(ObjectProvider<MetricsRegistry> metricsRegistry) {
+        return timedAdvisor(Set.of(ShiftService.class, UserService.class, EmailService.class), new TimedMethodInterceptor(
+                SingletonSupplier.of(metricsRegistry::getObject), "timeclock_operation_seconds",
+                "Latency of shift, user and email service operations", "component", "operation"));
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor queryMetricsAdvisor(ObjectProvider<MetricsRegistry> metricsRegistry) {
+        return timedAdvisor(Set.of(ShiftDao.class, UserDao.class), new TimedMethodInterceptor(
+                SingletonSupplier.of(metricsRegistry::getObject), "timeclock_db_query_seconds",
+                "Latency of each shift and user query", "dao", "query"));
+    }
+
+    private static Advisor timedAdvisor(Set<Class<?>> timedClasses, TimedMethodInterceptor interceptor) {
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())
+                        && method.getDeclaringClass() != Object.class;
+            }
+        };
+        pointcut.setClassFilter(clazz -> timedClasses.contains(ClassUtils.getUserClass(clazz)));
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, interceptor);
+        advisor.setOrder(0);
+        return advisor;
+    }
+
+    @PostConstruct
+    public void registerPoolGauges() {
+        HikariDataSource hikari = unwrapHikari();
+        if (hikari != null) {
+            poolGauge("hikaricp_connections_active", "Connections in use", HikariPoolMXBean::getActiveConnections, hikari);
+            poolGauge("hikaricp_connections_idle", "Idle connections", HikariPoolMXBean::getIdleConnections, hikari);
+            poolGauge("hikaricp_connections", "Open connections", HikariPoolMXBean::getTotalConnections, hikari);
+            poolGauge("hikaricp_connections_pending", "Threads waiting for a connection", HikariPoolMXBean::getThreadsAwaitingConnection, hikari);
+            metricsRegistry.gauge("hikaricp_connections_max", "Maximum pool size", hikari::getMaximumPoolSize);
+        }
+
+        metricsRegistry.gauge("timeclock_db_bulkhead_in_use", "Bulkhead permits held",
+                () -> databaseBulkhead.snapshot().getInUse());
+        metricsRegistry.gauge("timeclock_db_bulkhead_waiting", "Threads waiting for a bulkhead permit",
+                () -> databaseBulkhead.snapshot().getWaiting());
+        metricsRegistry.functionCounter("timeclock_db_bulkhead_rejected_total", "Connection requests turned away after the acquire timeout",
+                () -> databaseBulkhead.snapshot().getRejected());
+
+        metricsRegistry.gauge("timeclock_change_log_lag_seconds", "Seconds since this instance last read to the end of the change log",
+                changeLogPoller::getLagSeconds);
+        metricsRegistry.functionCounter("timeclock_change_log_events_total", "Changes read from the change log and published here",
+                changeLogPoller::getPublishedCount);
+    }
+
+    // The pool MXBean only exists once the pool has started, which is on first connection
+    private void poolGauge(String name, String help, ToIntFunction<HikariPoolMXBean> value, HikariDataSource hikari) {
+        metricsRegistry.gauge(name, help, () -> {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            return pool != null ? value.applyAsInt(pool) : Double.NaN;
+        });
+    }
+
+    private HikariDataSource unwrapHikari() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not reach the connection pool for metrics", e);
+        }
+        return null;
+    }
+}
@@ -1,9 +1,17 @@
 package timeclock.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -11,8 +19,14 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.context.DelegatingSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.authentication.rememberme.JdbcTokenRepositoryImpl;
 import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
+import timeclock.daos.RememberMeTokenDao;
+import timeclock.sessions.CachingPersistentTokenRepository;
 
 import javax.sql.DataSource;
 
@@ -26,8 +40,69 @@ public class SecurityConfig {
         this.dataSource = dataSource;
     }
 
+    /**
+     * The Prometheus scrape endpoint takes HTTP basic auth for a metrics user of its own, who
+     * can't sign in to the app. With no metrics password set, every scrape is refused.
+     */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    @Order(1)
+    public SecurityFilterChain metricsSecurityFilterChain(HttpSecurity http,
+                                                          @Value("${metrics.username:prometheus}") String username,
+                                                          @Value("${metrics.password:}") String password) throws Exception {
+        http
+            .securityMatcher("/metrics")
+            .authorizeHttpRequests(authorize -> authorize
+                .anyRequest().hasRole("METRICS")
+            )
+            .httpBasic(Customizer.withDefaults())
+            .authenticationManager(metricsAuthenticationManager(username, password))
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            .csrf(csrf -> csrf.disable());
+
+        return http.build();
+    }
+
+    private AuthenticationManager metricsAuthenticationManager(String username, String password) {
+        InMemoryUserDetailsManager metricsUsers = new InMemoryUserDetailsManager();
+        if (!password.isBlank()) {
+            metricsUsers.createUser(User.builder()
+                .username(username)
+                .password(passwordEncoder().encode(password))
+                .roles("METRICS")
+                .build());
+        }
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(metricsUsers);
+        provider.setPasswordEncoder(passwordEncoder());
+        return new ProviderManager(provider);
+    }
+
+    /**
+     * With a session repository from SessionConfig nothing goes in the HttpSession: the
+     * signed-in context is kept by that repository and the CSRF token in a cookie.
+     */
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   ObjectProvider<SecurityContextRepository> sessionRepository,
+                                                   PersistentTokenRepository persistentTokenRepository) throws Exception {
+        SecurityContextRepository sessions = sessionRepository.getIfAvailable();
+        if (sessions != null) {
+            http
+                .securityContext(context -> context
+                    .securityContextRepository(new DelegatingSecurityContextRepository(
+                        new RequestAttributeSecurityContextRepository(), sessions))
+                )
+                .sessionManagement(session -> session
+                    .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .csrf(csrf -> csrf
+                    .csrfTokenRepository(new CookieCsrfTokenRepository())
+                );
+        }
+
         http
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/login", "/assets/**", "/favicon.ico").permitAll()
@@ -43,7 +118,7 @@ public class SecurityConfig {
                 .permitAll()
             )
             .rememberMe(remember -> remember
-                .tokenRepository(persistentTokenRepository())
+                .tokenRepository(persistentTokenRepository)
                 .tokenValiditySeconds(1814400) // 3 weeks in seconds
                 .key("timeclockRememberMeKey")
                 .rememberMeParameter("remember-me")
@@ -56,11 +131,18 @@ public class SecurityConfig {
         return http.build();
     }
 
-    @Bean
-    public PersistentTokenRepository persistentTokenRepository() {
+    /**
+     * Remember-me tokens are cached and their rotations written in batches; see
+     * CachingPersistentTokenRepository for what that trades away.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public CachingPersistentTokenRepository persistentTokenRepository(RememberMeTokenDao rememberMeTokenDao,
+                                                                      @Value("${remember-me.cache.max-entries:10000}") int maxEntries,
+                                                                      @Value("${remember-me.cache.ttl-ms:300000}") long ttlMillis,
+                                                                      @Value("${remember-me.flush-ms:5000}") long flushMillis) {
         JdbcTokenRepositoryImpl tokenRepository = new JdbcTokenRepositoryImpl();
         tokenRepository.setDataSource(dataSource);
-        return tokenRepository;
+        return new CachingPersistentTokenRepository(tokenRepository, rememberMeTokenDao, maxEntries, ttlMillis, flushMillis);
     }
 
     @Bean
@@ -0,0 +1,40 @@
+package timeclock.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import timeclock.daos.WebSessionDao;
+import timeclock.sessions.CookieSecurityContextRepository;
+import timeclock.sessions.JdbcSecurityContextRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where a signed-in browser's session lives, chosen by session.mode:
+ * <ul>
+ *     <li>memory (default): the servlet container's HttpSession, as before. Needs sticky
+ *     sessions behind a load balancer and is lost on redeploy.</li>
+ *     <li>jdbc: the WebSessions table, read on each request and touched in batches.</li>
+ *     <li>cookie: an encrypted cookie, no server-side state at all.</li>
+ * </ul>
+ * SecurityConfig uses whichever repository is defined here; with none it keeps HttpSession.
+ */
+@Configuration
+public class SessionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "session.mode", havingValue = "jdbc")
+    public JdbcSecurityContextRepository jdbcSecurityContextRepository(WebSessionDao webSessionDao,
+                                                                       @Value("${session.timeout-minutes:720}") long timeoutMinutes,
+                                                                       @Value("${session.jdbc.flush-ms:30000}") long flushMillis) {
+        return new JdbcSecurityContextRepository(webSessionDao, TimeUnit.MINUTES.toMillis(timeoutMinutes), flushMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "session.mode", havingValue = "cookie")
+    public CookieSecurityContextRepository cookieSecurityContextRepository(@Value("${session.cookie-secret:}") String secret,
+                                                                           @Value("${session.timeout-minutes:720}") long timeoutMinutes) {
+        return new CookieSecurityContextRepository(secret, TimeUnit.MINUTES.toSeconds(timeoutMinutes));
+    }
+}
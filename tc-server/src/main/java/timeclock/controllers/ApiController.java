@@ -1,15 +1,38 @@
 package timeclock.controllers;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import timeclock.daos.DatabaseBulkhead;
+import timeclock.models.BulkheadStats;
+import timeclock.models.EmailOutboxEntry;
+import timeclock.models.JobLock;
 import timeclock.models.Shift;
+import timeclock.models.ShiftHistoryPage;
+import timeclock.models.ShiftPurgeJob;
+import timeclock.models.ShiftUpdateRequest;
 import timeclock.models.User;
+import timeclock.models.UserHoursTotal;
 import timeclock.services.AdminService;
+import timeclock.services.JobLockService;
 import timeclock.services.TimeclockService;
+import timeclock.utilities.DateUtility;
+import timeclock.utilities.ShiftExportWriter;
 
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 @RequestMapping("/api")
 @RestController
@@ -17,10 +40,35 @@ public class ApiController {
 
     private final TimeclockService timeclockService;
     private final AdminService adminService;
+    private final DatabaseBulkhead databaseBulkhead;
+    private final JobLockService jobLockService;
 
-    public ApiController(TimeclockService timeclockService, AdminService adminService) {
+    // A shift export reads off a streaming result set, so it holds a pooled connection and a bulkhead
+    // permit until the client has downloaded the whole file. Capped well under the pool size so slow
+    // downloads can't starve clock-ins.
+    private final Semaphore exportPermits;
+
+    // Versions restart at zero on every boot, so tags also carry a per-boot token
+    private final String etagBootToken = Long.toString(System.currentTimeMillis(), 36);
+
+    public ApiController(TimeclockService timeclockService, AdminService adminService, DatabaseBulkhead databaseBulkhead,
+                         JobLockService jobLockService, @Value("${export.max-concurrent:2}") int maxConcurrentExports) {
         this.timeclockService = timeclockService;
         this.adminService = adminService;
+        this.databaseBulkhead = databaseBulkhead;
+        this.jobLockService = jobLockService;
+        this.exportPermits = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * The database bulkhead timed out (or the database is unreachable): tell the client to
+     * retry shortly rather than answering 500.
+     */
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    public ResponseEntity<Map<String, String>> databaseUnavailable(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Database busy, try again"));
     }
 
     @PostMapping("/admin/validate")
@@ -30,18 +78,35 @@ public class ApiController {
     }
 
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        return ResponseEntity.ok(timeclockService.getAllUsers());
+    public ResponseEntity<List<User>> getAllUsers(WebRequest request) {
+        String etag = etag("users", timeclockService.getRosterVersion());
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(timeclockService.getAllUsers());
     }
 
     @GetMapping("/users/all")
-    public ResponseEntity<List<User>> getAllUsersIncludingHidden() {
-        return ResponseEntity.ok(timeclockService.getAllUsersIncludingHidden());
+    public ResponseEntity<List<User>> getAllUsersIncludingHidden(WebRequest request) {
+        String etag = etag("users-all", timeclockService.getRosterVersion());
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(timeclockService.getAllUsersIncludingHidden());
+    }
+
+    @GetMapping("/users/version")
+    public ResponseEntity<Map<String, Long>> getRosterVersion() {
+        return ResponseEntity.ok(Map.of("version", timeclockService.getRosterVersion()));
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<User> getUserById(@PathVariable String userId) {
-        return ResponseEntity.ok(timeclockService.getUserById(userId));
+    public ResponseEntity<User> getUserById(@PathVariable String userId, WebRequest request) {
+        String etag = etag("user", timeclockService.getRosterVersion());
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(timeclockService.getUserById(userId));
     }
 
     @PostMapping("/user")
@@ -70,29 +135,97 @@ public class ApiController {
 
     @PostMapping("/clockin")
     public ResponseEntity<Void> clockIn(@RequestParam String userId) {
-        timeclockService.clockIn(userId);
-        return ResponseEntity.ok().build();
+        try {
+            timeclockService.clockIn(userId);
+            return ResponseEntity.ok().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).build();
+        }
+    }
+
+    @PostMapping("/clockin/batch")
+    public ResponseEntity<Map<String, Object>> clockInBatch(@RequestBody List<String> userIds) {
+        return ResponseEntity.ok(timeclockService.clockInBatch(userIds));
     }
 
     @GetMapping("/shifts")
-    public ResponseEntity<List<Shift>> getAllShiftsStartedByDate() {
-        return ResponseEntity.ok(timeclockService.findShiftsByDate());
+    public ResponseEntity<List<Shift>> getAllShiftsStartedByDate(WebRequest request) {
+        // Today's board also changes at midnight without any write, so the date is part of the tag
+        String etag = etag("shifts-" + DateUtility.todayCentralTime(), timeclockService.getShiftVersion());
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(timeclockService.findShiftsByDate());
+    }
+
+    @GetMapping("/shifts/open")
+    public ResponseEntity<List<Shift>> getOpenShifts(WebRequest request) {
+        String etag = etag("shifts-open", timeclockService.getShiftVersion());
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(timeclockService.findOpenShifts());
+    }
+
+    /**
+     * Pushes clock-in, clock-out, edit and delete events. Browsers resume with Last-Event-ID on reconnect.
+     */
+    @GetMapping(value = "/shifts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamShiftEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return timeclockService.subscribeToShiftEvents(lastEventId);
+    }
+
+    @GetMapping("/shifts/history")
+    public ResponseEntity<ShiftHistoryPage> getShiftHistory(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false, defaultValue = "all") String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit) {
+
+        Boolean open = switch (status.toLowerCase()) {
+            case "open" -> Boolean.TRUE;
+            case "closed" -> Boolean.FALSE;
+            default -> null;
+        };
+
+        try {
+            return ResponseEntity.ok(timeclockService.findShiftHistory(
+                    userId,
+                    from != null ? LocalDate.parse(from) : null,
+                    to != null ? LocalDate.parse(to) : null,
+                    open,
+                    cursor,
+                    Math.max(1, Math.min(limit, 200))
+            ));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PostMapping("/clockout")
-    public ResponseEntity<String> clockOut(@RequestBody Shift shift) {
-        return ResponseEntity.ok(timeclockService.clockOutShift(shift));
+    public ResponseEntity<String> clockOut(@RequestBody ShiftUpdateRequest request) {
+        try {
+            return ResponseEntity.ok(timeclockService.clockOutShift(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @DeleteMapping("/shift/{shiftId}")
-    public ResponseEntity<Void> removeShift(@PathVariable String shiftId) {
+    public ResponseEntity<Void> removeShift(@PathVariable int shiftId) {
         timeclockService.removeShift(shiftId);
         return ResponseEntity.ok().build();
     }
 
     @PutMapping("/shift")
-    public ResponseEntity<String> updateShift(@RequestBody Shift shift) {
-        return ResponseEntity.ok(timeclockService.updateShift(shift));
+    public ResponseEntity<String> updateShift(@RequestBody ShiftUpdateRequest request) {
+        try {
+            return ResponseEntity.ok(timeclockService.updateShift(request));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/time/current")
@@ -103,25 +236,111 @@ public class ApiController {
         return ResponseEntity.ok(Map.of("currentTime", formattedTime));
     }
 
+    /**
+     * Queues today's summary email and returns 202 right away; poll /email/outbox for the result.
+     */
     @GetMapping("/email/send")
-    public ResponseEntity<Void> sendEmail() {
-        timeclockService.sendDailySummaryEmail();
-        return ResponseEntity.ok().build();
+    public ResponseEntity<EmailOutboxEntry> sendEmail() {
+        return ResponseEntity.accepted().body(timeclockService.sendDailySummaryEmail());
+    }
+
+    @GetMapping("/email/outbox")
+    public ResponseEntity<List<EmailOutboxEntry>> getEmailOutbox(@RequestParam(defaultValue = "14") int limit) {
+        return ResponseEntity.ok(timeclockService.getRecentSummaryEmails(Math.min(Math.max(limit, 1), 100)));
     }
 
     @GetMapping("/spreadsheet/download")
-    public ResponseEntity<byte[]> downloadSpreadsheet(@RequestParam String date) {
+    public ResponseEntity<StreamingResponseBody> downloadSpreadsheet(@RequestParam String date) {
+        LocalDate localDate = LocalDate.parse(date);
+        if (!timeclockService.hasShiftsOnDate(localDate)) {
+            return ResponseEntity.status(404).build();
+        }
+
+        StreamingResponseBody body = outputStream -> timeclockService.writeSpreadsheet(localDate, outputStream);
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=\"" + timeclockService.spreadsheetFileName(localDate) + "\"")
+                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .body(body);
+    }
+
+    /**
+     * One workbook for a pay period (at most 31 days): a summary sheet and one sheet per day.
+     */
+    @GetMapping("/spreadsheet/period")
+    public ResponseEntity<StreamingResponseBody> downloadPeriodSpreadsheet(@RequestParam String from, @RequestParam String to) {
+        LocalDate fromDate;
+        LocalDate toDate;
         try {
-            LocalDate localDate = LocalDate.parse(date);
-            Map<String, Object> result = timeclockService.generateSpreadsheetWithMetadata(localDate);
-            
-            return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + result.get("filename") + "\"")
-                    .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                    .body((byte[]) result.get("data"));
-        } catch (IllegalStateException e) {
-            return ResponseEntity.status(404).body(null);
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to);
+            timeclockService.validateSpreadsheetPeriod(fromDate, toDate);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = outputStream -> timeclockService.writePeriodSpreadsheet(fromDate, toDate, outputStream);
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=\"" + timeclockService.periodSpreadsheetFileName(fromDate, toDate) + "\"")
+                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .body(body);
+    }
+
+    /**
+     * Shifts from through to (inclusive) as text/csv or application/x-ndjson, for payroll imports.
+     * Pick the format with ?format=csv|ndjson or the Accept header; CSV by default.
+     * At most export.max-concurrent exports run at once; past that the request gets a 503 with
+     * Retry-After rather than waiting for a connection.
+     */
+    @GetMapping("/export/shifts")
+    public ResponseEntity<StreamingResponseBody> exportShifts(@RequestParam String from,
+                                                              @RequestParam String to,
+                                                              @RequestParam(required = false) String format,
+                                                              @RequestHeader(value = "Accept", required = false) String accept) {
+        LocalDate fromDate;
+        LocalDate toDate;
+        ShiftExportWriter.Format exportFormat;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to);
+            exportFormat = ShiftExportWriter.Format.resolve(format, accept);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ResponseEntity.badRequest().build();
         }
+        if (toDate.isBefore(fromDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!exportPermits.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        StreamingResponseBody body = outputStream -> {
+            try {
+                timeclockService.exportShifts(fromDate, toDate, exportFormat, outputStream);
+            } finally {
+                exportPermits.release();
+            }
+        };
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=\"" + timeclockService.exportFileName(fromDate, toDate, exportFormat) + "\"")
+                .header("Content-Type", exportFormat.getContentType() + "; charset=UTF-8")
+                .body(body);
+    }
+
+    @GetMapping("/totals")
+    public ResponseEntity<List<UserHoursTotal>> getTotals(@RequestParam String from, @RequestParam String to) {
+        return ResponseEntity.ok(timeclockService.findTotals(LocalDate.parse(from), LocalDate.parse(to)));
+    }
+
+    @PostMapping("/totals/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileTotals(@RequestParam String from, @RequestParam String to) {
+        int userDays = timeclockService.reconcileDailyTotals(LocalDate.parse(from), LocalDate.parse(to));
+        return ResponseEntity.ok(Map.of(
+                "from", from,
+                "to", to,
+                "userDays", userDays
+        ));
     }
 
     @GetMapping("/shifts/prior-to/count")
@@ -146,12 +365,55 @@ public class ApiController {
         }
         
         LocalDate localDate = LocalDate.parse(date);
-        int deletedCount = timeclockService.deleteShiftsPriorToDate(localDate);
-        
-        return ResponseEntity.ok(Map.of(
-                "deletedCount", deletedCount,
-                "date", date,
-                "message", "Successfully deleted " + deletedCount + " shifts prior to " + date
-        ));
+        try {
+            ShiftPurgeJob job = timeclockService.deleteShiftsPriorToDate(localDate);
+            return ResponseEntity.accepted().body(Map.of(
+                    "jobId", job.getJobId(),
+                    "totalShifts", job.getTotalShifts(),
+                    "date", date,
+                    "message", "Deleting " + job.getTotalShifts() + " shifts prior to " + date + " in the background"
+            ));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/db/bulkhead")
+    public ResponseEntity<BulkheadStats> getDatabaseBulkhead() {
+        return ResponseEntity.ok(databaseBulkhead.snapshot());
+    }
+
+    /**
+     * Each scheduled job's current lease holder and its last run.
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<JobLock>> getJobs() {
+        return ResponseEntity.ok(jobLockService.getJobLocks());
+    }
+
+    @GetMapping("/shifts/purge/{jobId}")
+    public ResponseEntity<ShiftPurgeJob> getShiftPurgeJob(@PathVariable String jobId) {
+        ShiftPurgeJob job = timeclockService.getShiftPurgeJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/shifts/purge/{jobId}")
+    public ResponseEntity<ShiftPurgeJob> cancelShiftPurgeJob(@PathVariable String jobId) {
+        ShiftPurgeJob job = timeclockService.cancelShiftPurgeJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Strong ETag for a read endpoint, derived from a data version rather than the response body,
+     * so a matching If-None-Match is answered without querying or serializing anything.
+     * Responses carry Cache-Control: no-cache (instead of Spring Security's no-store default)
+     * so browsers keep the body and revalidate with the tag.
+     */
+    private String etag(String resource, long version) {
+        return "\"" + resource + "-" + etagBootToken + "-" + version + "\"";
+    }
+
+    private <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
     }
 }
@@ -0,0 +1,104 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import timeclock.models.ChangeEvent;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ChangeLog is an append-only list of user and shift writes, numbered by an auto-increment seq.
+ * UserDao, HiddenUserDao and ShiftDao append to it inside the transaction that makes the
+ * change, so a row is visible exactly when the change is. Every instance tails it by seq.
+ * <p>
+ * Seqs are handed out at insert time but become visible at commit, so a reader can see seq 12
+ * before seq 11 commits. Callers pass the seqs they skipped over to look for them again.
+ */
+@Repository
+public class ChangeLogDao {
+
+    private static final String CHANGE_LOG_COLUMNS = "seq, entity, entityId, op, workDate";
+
+    private static final RowMapper<ChangeEvent> ROW_MAPPER = (rs, rowNum) -> {
+        Date workDate = rs.getDate("workDate");
+        return new ChangeEvent(
+                rs.getLong("seq"),
+                ChangeEvent.Entity.valueOf(rs.getString("entity")),
+                rs.getString("entityId"),
+                ChangeEvent.Op.valueOf(rs.getString("op")),
+                workDate != null ? workDate.toLocalDate() : null);
+    };
+
+    private static final String INSERT_CHANGE = "INSERT INTO ChangeLog (entity, entityId, op, workDate) " +
+            "VALUES (:entity, :entityId, :op, :workDate)";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public ChangeLogDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    public void append(ChangeEvent.Entity entity, String entityId, ChangeEvent.Op op, LocalDate workDate) {
+        namedParameterJdbcTemplate.update(INSERT_CHANGE, changeParams(entity, entityId, op, workDate));
+    }
+
+    /**
+     * One row per entity id in a single JDBC batch.
+     */
+    public void appendAll(ChangeEvent.Entity entity, List<String> entityIds, ChangeEvent.Op op, LocalDate workDate) {
+        SqlParameterSource[] batch = new SqlParameterSource[entityIds.size()];
+        for (int i = 0; i < entityIds.size(); i++) {
+            batch[i] = changeParams(entity, entityIds.get(i), op, workDate);
+        }
+        namedParameterJdbcTemplate.batchUpdate(INSERT_CHANGE, batch);
+    }
+
+    public long selectMaxSeq() {
+        Long maxSeq = namedParameterJdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM ChangeLog",
+                new MapSqlParameterSource(), Long.class);
+        return maxSeq != null ? maxSeq : 0;
+    }
+
+    /**
+     * Up to limit changes after afterSeq, plus any of the missing seqs that have since committed,
+     * in seq order.
+     */
+    public List<ChangeEvent> selectAfter(long afterSeq, Collection<Long> missingSeqs, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("afterSeq", afterSeq);
+        params.addValue("limit", limit);
+        String where = "seq > :afterSeq";
+        if (!missingSeqs.isEmpty()) {
+            params.addValue("missingSeqs", missingSeqs);
+            where += " OR seq IN (:missingSeqs)";
+        }
+        return namedParameterJdbcTemplate.query("SELECT " + CHANGE_LOG_COLUMNS + " FROM ChangeLog WHERE " + where +
+                " ORDER BY seq LIMIT :limit", params, ROW_MAPPER);
+    }
+
+    /**
+     * Drops changes older than the retention, by the database clock. Every instance has read
+     * them long before.
+     */
+    public int deleteOlderThan(long retentionMillis) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("retentionMs", retentionMillis);
+        return namedParameterJdbcTemplate.update(
+                "DELETE FROM ChangeLog WHERE changedAt < NOW(3) - INTERVAL (:retentionMs * 1000) MICROSECOND", params);
+    }
+
+    private static MapSqlParameterSource changeParams(ChangeEvent.Entity entity, String entityId, ChangeEvent.Op op, LocalDate workDate) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("entity", entity.name());
+        params.addValue("entityId", entityId);
+        params.addValue("op", op.name());
+        params.addValue("workDate", workDate != null ? Date.valueOf(workDate) : null);
+        return params;
+    }
+}
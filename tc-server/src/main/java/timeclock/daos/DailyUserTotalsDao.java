@@ -0,0 +1,90 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import timeclock.models.UserHoursTotal;
+import timeclock.utilities.DateUtility;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DailyUserTotals holds closed-shift minutes and counts per user per Central Time day.
+ * Rows are always recomputed from Shifts over an indexed clockIn range rather than adjusted
+ * by deltas, so refreshing a day is idempotent and can never drift.
+ */
+@Repository
+public class DailyUserTotalsDao {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public DailyUserTotalsDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    public void refreshUserDay(String userId, LocalDate workDate) {
+        MapSqlParameterSource params = dayParams(workDate);
+        params.addValue("userId", userId);
+
+        namedParameterJdbcTemplate.update(
+                "DELETE FROM DailyUserTotals WHERE userId = :userId AND workDate = :workDate", params);
+        namedParameterJdbcTemplate.update(
+                "INSERT INTO DailyUserTotals (userId, workDate, minutes, shiftCount) " +
+                "SELECT userId, :workDate, SUM(workedMinutes), COUNT(workedMinutes) FROM Shifts " +
+                "WHERE userId = :userId AND clockIn >= :start AND clockIn < :end AND workedMinutes IS NOT NULL " +
+                "GROUP BY userId", params);
+    }
+
+    public int rebuildDay(LocalDate workDate) {
+        MapSqlParameterSource params = dayParams(workDate);
+
+        namedParameterJdbcTemplate.update("DELETE FROM DailyUserTotals WHERE workDate = :workDate", params);
+        return namedParameterJdbcTemplate.update(
+                "INSERT INTO DailyUserTotals (userId, workDate, minutes, shiftCount) " +
+                "SELECT userId, :workDate, SUM(workedMinutes), COUNT(workedMinutes) FROM Shifts " +
+                "WHERE clockIn >= :start AND clockIn < :end AND workedMinutes IS NOT NULL " +
+                "GROUP BY userId", params);
+    }
+
+    public int deletePriorToDate(LocalDate date) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("workDate", Date.valueOf(date));
+        return namedParameterJdbcTemplate.update("DELETE FROM DailyUserTotals WHERE workDate < :workDate", params);
+    }
+
+    /**
+     * Per-user totals over an inclusive range of days, read from the rollup rows only.
+     */
+    public List<UserHoursTotal> selectTotalsBetween(LocalDate from, LocalDate to) {
+        final String sql = "SELECT t.userId, u.name, SUM(t.minutes) AS minutes, SUM(t.shiftCount) AS shiftCount " +
+                "FROM DailyUserTotals t " +
+                "JOIN Users u ON u.userId = t.userId " +
+                "WHERE t.workDate BETWEEN :from AND :to " +
+                "GROUP BY t.userId, u.name " +
+                "ORDER BY u.name";
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("from", Date.valueOf(from));
+        params.addValue("to", Date.valueOf(to));
+
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> {
+            UserHoursTotal total = new UserHoursTotal();
+            total.setUserId(rs.getString("userId"));
+            total.setName(rs.getString("name"));
+            total.setWorkedMinutes(rs.getInt("minutes"));
+            total.setShiftCount(rs.getInt("shiftCount"));
+            return total;
+        });
+    }
+
+    private MapSqlParameterSource dayParams(LocalDate workDate) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("workDate", Date.valueOf(workDate));
+        params.addValue("start", Timestamp.from(DateUtility.startOfDayCentralTime(workDate)));
+        params.addValue("end", Timestamp.from(DateUtility.startOfDayCentralTime(workDate.plusDays(1))));
+        return params;
+    }
+}
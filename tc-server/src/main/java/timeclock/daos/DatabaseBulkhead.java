@@ -0,0 +1,83 @@
+package timeclock.daos;
+
+import timeclock.models.BulkheadStats;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many threads hold a database connection at once. Waiters are served in arrival
+ * order (fair semaphore) and give up after a short timeout, so a rush of virtual threads
+ * queues here, visibly and boundedly, instead of piling up inside the connection pool.
+ */
+public class DatabaseBulkhead {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutNanos;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public DatabaseBulkhead(int maxConcurrent, long acquireTimeoutMillis) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+    }
+
+    /**
+     * Waits up to the timeout for a permit. Throws SQLTransientConnectionException, the same
+     * type the pool throws on its own timeout, so callers see one kind of "try again" failure.
+     */
+    public void acquire() throws SQLException {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean granted;
+        try {
+            // The timed tryAcquire honours fairness; the untimed one would barge past waiters
+            granted = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!granted) {
+            rejected.increment();
+            throw new SQLTransientConnectionException("No database connection available within "
+                    + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms (" + maxConcurrent + " in use)");
+        }
+        acquired.increment();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public BulkheadStats snapshot() {
+        BulkheadStats stats = new BulkheadStats();
+        long acquiredCount = acquired.sum();
+        long rejectedCount = rejected.sum();
+        long attempts = acquiredCount + rejectedCount;
+        stats.setMaxConcurrent(maxConcurrent);
+        stats.setInUse(maxConcurrent - permits.availablePermits());
+        stats.setWaiting(waiting.get());
+        stats.setAcquired(acquiredCount);
+        stats.setRejected(rejectedCount);
+        stats.setAverageWaitMs(attempts > 0 ? totalWaitNanos.sum() / 1e6 / attempts : 0);
+        stats.setMaxWaitMs(maxWaitNanos.get() / 1e6);
+        return stats;
+    }
+}
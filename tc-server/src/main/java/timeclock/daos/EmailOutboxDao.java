@@ -0,0 +1,150 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import timeclock.models.EmailOutboxEntry;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * EmailOutbox holds one row per report date. A row moves PENDING -> SENDING -> SENT, or back
+ * to PENDING with a later nextAttemptAt after a failed attempt, or to FAILED once retries run
+ * out. Every transition out of SENDING is guarded on the row still being SENDING, so a send
+ * requested while one is in flight is never overwritten by the in-flight result.
+ */
+@Repository
+public class EmailOutboxDao {
+
+    private static final String OUTBOX_COLUMNS = "outboxId, reportDate, status, attempts, nextAttemptAt, " +
+            "createdAt, sentAt, lastLatencyMs, lastError";
+
+    private static final RowMapper<EmailOutboxEntry> ROW_MAPPER = (rs, rowNum) -> {
+        EmailOutboxEntry entry = new EmailOutboxEntry();
+        entry.setOutboxId(rs.getInt("outboxId"));
+        entry.setReportDate(rs.getDate("reportDate").toLocalDate());
+        entry.setStatus(EmailOutboxEntry.Status.valueOf(rs.getString("status")));
+        entry.setAttempts(rs.getInt("attempts"));
+        entry.setNextAttemptAt(rs.getTimestamp("nextAttemptAt").toInstant());
+        Timestamp createdAt = rs.getTimestamp("createdAt");
+        entry.setCreatedAt(createdAt != null ? createdAt.toInstant() : null);
+        Timestamp sentAt = rs.getTimestamp("sentAt");
+        entry.setSentAt(sentAt != null ? sentAt.toInstant() : null);
+        long latency = rs.getLong("lastLatencyMs");
+        entry.setLastLatencyMs(rs.wasNull() ? null : latency);
+        entry.setLastError(rs.getString("lastError"));
+        return entry;
+    };
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public EmailOutboxDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Queues the report for a date, due now. A row already waiting or sending keeps its attempt
+     * count (so repeated requests collapse into one send); a SENT or FAILED row starts over.
+     * MySQL applies the assignments left to right, so status must be set last.
+     */
+    public EmailOutboxEntry enqueue(LocalDate reportDate, Instant now) {
+        final String sql = "INSERT INTO EmailOutbox (reportDate, status, attempts, nextAttemptAt, createdAt) " +
+                "VALUES (:reportDate, 'PENDING', 0, :now, :now) " +
+                "ON DUPLICATE KEY UPDATE " +
+                "attempts = IF(status IN ('PENDING', 'SENDING'), attempts, 0), " +
+                "lastError = IF(status IN ('PENDING', 'SENDING'), lastError, NULL), " +
+                "nextAttemptAt = :now, " +
+                "status = 'PENDING'";
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("reportDate", Date.valueOf(reportDate));
+        params.addValue("now", Timestamp.from(now));
+        namedParameterJdbcTemplate.update(sql, params);
+
+        return selectByReportDate(reportDate);
+    }
+
+    public EmailOutboxEntry selectByReportDate(LocalDate reportDate) {
+        final String sql = "SELECT " + OUTBOX_COLUMNS + " FROM EmailOutbox WHERE reportDate = :reportDate";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("reportDate", Date.valueOf(reportDate));
+
+        List<EmailOutboxEntry> entries = namedParameterJdbcTemplate.query(sql, params, ROW_MAPPER);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    public List<EmailOutboxEntry> selectDue(Instant now, int limit) {
+        final String sql = "SELECT " + OUTBOX_COLUMNS + " FROM EmailOutbox " +
+                "WHERE status = 'PENDING' AND nextAttemptAt <= :now " +
+                "ORDER BY nextAttemptAt LIMIT :limit";
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("now", Timestamp.from(now));
+        params.addValue("limit", limit);
+        return namedParameterJdbcTemplate.query(sql, params, ROW_MAPPER);
+    }
+
+    public List<EmailOutboxEntry> selectRecent(int limit) {
+        final String sql = "SELECT " + OUTBOX_COLUMNS + " FROM EmailOutbox ORDER BY reportDate DESC LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("limit", limit);
+        return namedParameterJdbcTemplate.query(sql, params, ROW_MAPPER);
+    }
+
+    /**
+     * Takes a due row for sending, counts the attempt and stamps claimedAt with the database
+     * clock. False if another worker got it first or it is no longer pending.
+     */
+    public boolean claim(int outboxId) {
+        final String sql = "UPDATE EmailOutbox SET status = 'SENDING', attempts = attempts + 1, claimedAt = NOW(3) " +
+                "WHERE outboxId = :outboxId AND status = 'PENDING'";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("outboxId", outboxId);
+        return namedParameterJdbcTemplate.update(sql, params) == 1;
+    }
+
+    public void markSent(int outboxId, long latencyMs, Instant sentAt) {
+        final String sql = "UPDATE EmailOutbox SET status = 'SENT', sentAt = :sentAt, lastLatencyMs = :latencyMs, lastError = NULL " +
+                "WHERE outboxId = :outboxId AND status = 'SENDING'";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("outboxId", outboxId);
+        params.addValue("sentAt", Timestamp.from(sentAt));
+        params.addValue("latencyMs", latencyMs);
+        namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    /**
+     * Records a failed attempt: back to PENDING until nextAttemptAt, or FAILED when giving up.
+     */
+    public void markFailed(int outboxId, long latencyMs, String error, Instant nextAttemptAt, boolean giveUp) {
+        final String sql = "UPDATE EmailOutbox SET status = :status, nextAttemptAt = :nextAttemptAt, " +
+                "lastLatencyMs = :latencyMs, lastError = :lastError " +
+                "WHERE outboxId = :outboxId AND status = 'SENDING'";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("outboxId", outboxId);
+        params.addValue("status", (giveUp ? EmailOutboxEntry.Status.FAILED : EmailOutboxEntry.Status.PENDING).name());
+        params.addValue("nextAttemptAt", Timestamp.from(nextAttemptAt));
+        params.addValue("latencyMs", latencyMs);
+        params.addValue("lastError", error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    /**
+     * Rows left SENDING by a worker that died mid-send go back to the queue once their claim is
+     * older than claimTimeoutMs, measured on the database clock so instances with skewed clocks
+     * agree. Rows claimed before claimedAt existed have none and count as abandoned. The timeout
+     * must outlast the slowest send, or a live send is repeated by another worker.
+     */
+    public int requeueAbandoned(long claimTimeoutMs) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("claimTimeoutMs", claimTimeoutMs);
+        return namedParameterJdbcTemplate.update(
+                "UPDATE EmailOutbox SET status = 'PENDING' WHERE status = 'SENDING' " +
+                        "AND (claimedAt IS NULL OR claimedAt < NOW(3) - INTERVAL (:claimTimeoutMs * 1000) MICROSECOND)", params);
+    }
+}
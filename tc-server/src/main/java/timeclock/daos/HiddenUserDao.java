@@ -3,6 +3,8 @@ package timeclock.daos;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import timeclock.models.ChangeEvent;
 import timeclock.models.HiddenUser;
 
 import java.sql.Timestamp;
@@ -12,11 +14,14 @@ import java.util.List;
 public class HiddenUserDao {
 
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ChangeLogDao changeLogDao;
 
-    public HiddenUserDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+    public HiddenUserDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate, ChangeLogDao changeLogDao) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.changeLogDao = changeLogDao;
     }
 
+    @Transactional
     public void hideUser(String userId, String hiddenBy, String reason) {
         final String sql = "INSERT INTO HiddenUsers (userId, dateHidden, hiddenBy, reason) " +
                 "VALUES (:userId, :dateHidden, :hiddenBy, :reason)";
@@ -28,6 +33,7 @@ public class HiddenUserDao {
         params.addValue("reason", reason);
         
         namedParameterJdbcTemplate.update(sql, params);
+        changeLogDao.append(ChangeEvent.Entity.USER, userId, ChangeEvent.Op.HIDE, null);
     }
 
     public boolean isUserHidden(String userId) {
@@ -39,12 +45,14 @@ public class HiddenUserDao {
         return count != null && count > 0;
     }
 
+    @Transactional
     public void unhideUser(String userId) {
         final String sql = "DELETE FROM HiddenUsers WHERE userId = :userId";
         MapSqlParameterSource params = new MapSqlParameterSource();
         params.addValue("userId", userId);
         
         namedParameterJdbcTemplate.update(sql, params);
+        changeLogDao.append(ChangeEvent.Entity.USER, userId, ChangeEvent.Op.UNHIDE, null);
     }
 
     public List<String> getAllHiddenUserIds() {
@@ -0,0 +1,134 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import timeclock.models.JobLock;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JobLocks holds one row per scheduled job. An instance takes a job by setting itself as owner
+ * with a lease expiry, which only succeeds while nobody holds an unexpired lease, and each
+ * take bumps the fencing token. Renewals and the release are guarded on owner and token, so an
+ * instance whose lease expired and was taken over can no longer touch the row.
+ * <p>
+ * Every time comparison uses the database clock, so instances with skewed clocks still agree
+ * on when a lease runs out.
+ */
+@Repository
+public class JobLockDao {
+
+    private static final String JOB_LOCK_COLUMNS = "jobName, owner, leaseUntil, fencingToken, lastStartedAt, " +
+            "lastFinishedAt, lastDurationMs, lastOwner, lastOutcome, lastError";
+
+    private static final RowMapper<JobLock> ROW_MAPPER = (rs, rowNum) -> {
+        JobLock jobLock = new JobLock();
+        jobLock.setJobName(rs.getString("jobName"));
+        jobLock.setOwner(rs.getString("owner"));
+        Timestamp leaseUntil = rs.getTimestamp("leaseUntil");
+        jobLock.setLeaseUntil(leaseUntil != null ? leaseUntil.toInstant() : null);
+        jobLock.setFencingToken(rs.getLong("fencingToken"));
+        Timestamp lastStartedAt = rs.getTimestamp("lastStartedAt");
+        jobLock.setLastStartedAt(lastStartedAt != null ? lastStartedAt.toInstant() : null);
+        Timestamp lastFinishedAt = rs.getTimestamp("lastFinishedAt");
+        jobLock.setLastFinishedAt(lastFinishedAt != null ? lastFinishedAt.toInstant() : null);
+        long duration = rs.getLong("lastDurationMs");
+        jobLock.setLastDurationMs(rs.wasNull() ? null : duration);
+        jobLock.setLastOwner(rs.getString("lastOwner"));
+        String outcome = rs.getString("lastOutcome");
+        jobLock.setLastOutcome(outcome != null ? JobLock.Outcome.valueOf(outcome) : null);
+        jobLock.setLastError(rs.getString("lastError"));
+        return jobLock;
+    };
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public JobLockDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Takes the job's lease for leaseMillis and returns the new fencing token, or null if
+     * another instance holds it or the job already started within the last minIntervalMillis.
+     * The interval is what stops a second instance from running a daily job again just after
+     * the first released it.
+     */
+    public Long acquire(String jobName, String owner, long leaseMillis, long minIntervalMillis) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("jobName", jobName);
+        params.addValue("owner", owner);
+        params.addValue("leaseMs", leaseMillis);
+        params.addValue("minIntervalMs", minIntervalMillis);
+
+        namedParameterJdbcTemplate.update(
+                "INSERT INTO JobLocks (jobName) VALUES (:jobName) ON DUPLICATE KEY UPDATE jobName = jobName", params);
+
+        final String sql = "UPDATE JobLocks SET owner = :owner, " +
+                "leaseUntil = NOW(3) + INTERVAL (:leaseMs * 1000) MICROSECOND, " +
+                "fencingToken = fencingToken + 1, " +
+                "lastStartedAt = NOW(3) " +
+                "WHERE jobName = :jobName " +
+                "AND (owner IS NULL OR leaseUntil < NOW(3)) " +
+                "AND (lastStartedAt IS NULL OR lastStartedAt <= NOW(3) - INTERVAL (:minIntervalMs * 1000) MICROSECOND)";
+        if (namedParameterJdbcTemplate.update(sql, params) != 1) {
+            return null;
+        }
+
+        List<Long> tokens = namedParameterJdbcTemplate.queryForList(
+                "SELECT fencingToken FROM JobLocks WHERE jobName = :jobName AND owner = :owner", params, Long.class);
+        return tokens.isEmpty() ? null : tokens.get(0);
+    }
+
+    /**
+     * Pushes the lease out to leaseMillis from now. False if the lease was lost.
+     */
+    public boolean renew(String jobName, String owner, long fencingToken, long leaseMillis) {
+        final String sql = "UPDATE JobLocks SET leaseUntil = NOW(3) + INTERVAL (:leaseMs * 1000) MICROSECOND " +
+                "WHERE jobName = :jobName AND owner = :owner AND fencingToken = :fencingToken";
+        MapSqlParameterSource params = holderParams(jobName, owner, fencingToken);
+        params.addValue("leaseMs", leaseMillis);
+        return namedParameterJdbcTemplate.update(sql, params) == 1;
+    }
+
+    /**
+     * True while the lease with this token is still held and unexpired; check before any write
+     * that must not happen twice.
+     */
+    public boolean isHeld(String jobName, String owner, long fencingToken) {
+        final String sql = "SELECT COUNT(*) FROM JobLocks " +
+                "WHERE jobName = :jobName AND owner = :owner AND fencingToken = :fencingToken AND leaseUntil > NOW(3)";
+        Integer count = namedParameterJdbcTemplate.queryForObject(sql, holderParams(jobName, owner, fencingToken), Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Gives the lease up and records how the run went. False if the lease was already lost,
+     * in which case the new holder's row is left alone.
+     */
+    public boolean release(String jobName, String owner, long fencingToken, long durationMs, JobLock.Outcome outcome, String error) {
+        final String sql = "UPDATE JobLocks SET owner = NULL, leaseUntil = NULL, lastFinishedAt = NOW(3), " +
+                "lastDurationMs = :durationMs, lastOwner = :owner, lastOutcome = :outcome, lastError = :lastError " +
+                "WHERE jobName = :jobName AND owner = :owner AND fencingToken = :fencingToken";
+        MapSqlParameterSource params = holderParams(jobName, owner, fencingToken);
+        params.addValue("durationMs", durationMs);
+        params.addValue("outcome", outcome.name());
+        params.addValue("lastError", error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        return namedParameterJdbcTemplate.update(sql, params) == 1;
+    }
+
+    public List<JobLock> selectAll() {
+        return namedParameterJdbcTemplate.query("SELECT " + JOB_LOCK_COLUMNS + " FROM JobLocks ORDER BY jobName",
+                new MapSqlParameterSource(), ROW_MAPPER);
+    }
+
+    private static MapSqlParameterSource holderParams(String jobName, String owner, long fencingToken) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("jobName", jobName);
+        params.addValue("owner", owner);
+        params.addValue("fencingToken", fencingToken);
+        return params;
+    }
+}
@@ -0,0 +1,44 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Batched writes to persistent_logins, the remember-me table Spring Security's
+ * JdbcTokenRepositoryImpl owns. Everything else about the table stays with that class.
+ */
+@Repository
+public class RememberMeTokenDao {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public RememberMeTokenDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Writes each series' current token and last use in a single JDBC batch. Series that were
+     * deleted in the meantime are skipped.
+     */
+    public void updateTokens(Collection<PersistentRememberMeToken> tokens) {
+        List<SqlParameterSource> batch = new ArrayList<>(tokens.size());
+        for (PersistentRememberMeToken token : tokens) {
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            params.addValue("series", token.getSeries());
+            params.addValue("token", token.getTokenValue());
+            params.addValue("lastUsed", new Timestamp(token.getDate().getTime()));
+            batch.add(params);
+        }
+        namedParameterJdbcTemplate.batchUpdate(
+                "UPDATE persistent_logins SET token = :token, last_used = :lastUsed WHERE series = :series",
+                batch.toArray(new SqlParameterSource[0]));
+    }
+}
@@ -1,137 +1,276 @@
 package timeclock.daos;
 
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import timeclock.daos.mappers.ShiftRowMapper;
+import timeclock.daos.mappers.UserShiftRowMapper;
+import timeclock.models.ChangeEvent;
 import timeclock.models.Shift;
 import timeclock.models.User;
 import timeclock.models.UserShiftRow;
+import timeclock.utilities.DateUtility;
 
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Repository
 public class ShiftDao {
 
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
-    public ShiftDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+    // Exports read through this template so MySQL streams rows one at a time instead of
+    // buffering the whole result set (Connector/J does that for a fetch size of Integer.MIN_VALUE)
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    private final ChangeLogDao changeLogDao;
+
+    public ShiftDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate, ChangeLogDao changeLogDao) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.changeLogDao = changeLogDao;
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(namedParameterJdbcTemplate.getJdbcTemplate().getDataSource());
+        jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
     }
 
+    static final String SELECT_SHIFTS_BETWEEN = "SELECT " + ShiftRowMapper.SHIFT_COLUMNS + " FROM Shifts s " +
+            "WHERE s.clockIn >= :start AND s.clockIn < :end";
+
     public List<Shift> selectShiftsByDate(LocalDate date) {
-        String sql = "SELECT * FROM Shifts WHERE DATE(clockIn) = :clockInDate";
+        return selectShiftsBetween(DateUtility.startOfDayCentralTime(date), DateUtility.startOfDayCentralTime(date.plusDays(1)));
+    }
 
+    public List<Shift> selectShiftsBetween(Instant start, Instant end) {
         MapSqlParameterSource params = new MapSqlParameterSource();
-        params.addValue("clockInDate", date);
-
-        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("h:mm a");
+        params.addValue("start", Timestamp.from(start));
+        params.addValue("end", Timestamp.from(end));
 
-            Shift shift = new Shift();
-            shift.setShiftId(rs.getInt("shiftId"));
-            shift.setUserId(rs.getString("userId"));
-            shift.setName(rs.getString("name"));
-
-            Timestamp clockInTimestamp = rs.getTimestamp("clockIn");
-            if (clockInTimestamp != null) {
-                LocalDateTime clockIn = clockInTimestamp.toLocalDateTime();
-                shift.setClockIn(clockIn.format(formatter));
-            }
+        return namedParameterJdbcTemplate.query(SELECT_SHIFTS_BETWEEN, params, ShiftRowMapper.INSTANCE);
+    }
 
-            Timestamp clockOutTimestamp = rs.getTimestamp("clockOut");
-            if (clockOutTimestamp != null) {
-                LocalDateTime clockOut = clockOutTimestamp.toLocalDateTime();
-                shift.setClockOut(clockOut.format(formatter));
-            }
+    public List<Shift> selectOpenShifts() {
+        String sql = "SELECT " + ShiftRowMapper.SHIFT_COLUMNS + " FROM Shifts s WHERE s.clockOut IS NULL";
+        return namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource(), ShiftRowMapper.INSTANCE);
+    }
 
-            shift.setTimeWorked(rs.getString("timeWorked"));
-            return shift;
-        });
+    public Shift selectShiftById(int shiftId) {
+        String sql = "SELECT " + ShiftRowMapper.SHIFT_COLUMNS + " FROM Shifts s WHERE s.shiftId = :shiftId";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("shiftId", shiftId);
+        List<Shift> shifts = namedParameterJdbcTemplate.query(sql, params, ShiftRowMapper.INSTANCE);
+        return shifts.isEmpty() ? null : shifts.get(0);
     }
 
-    public void insertNewShift(User user, Timestamp clockInTimestamp) {
+    @Transactional
+    public int insertNewShift(User user, Instant clockInAt) {
         String sql = "INSERT INTO Shifts (userId, name, clockIn, clockOut, timeWorked) " +
                 "VALUES (:userId, :name, :clockIn, NULL, NULL)";
 
         MapSqlParameterSource params = new MapSqlParameterSource();
         params.addValue("userId", user.getUserId());
         params.addValue("name", user.getName());
-        params.addValue("clockIn", clockInTimestamp);
+        params.addValue("clockIn", Timestamp.from(clockInAt));
 
-        namedParameterJdbcTemplate.update(sql, params);
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        namedParameterJdbcTemplate.update(sql, params, keyHolder, new String[]{"shiftId"});
+        int shiftId = keyHolder.getKey().intValue();
+        changeLogDao.append(ChangeEvent.Entity.SHIFT, String.valueOf(shiftId), ChangeEvent.Op.INSERT, DateUtility.centralDate(clockInAt));
+        return shiftId;
     }
 
-    public void clockOutShift(int shiftId, Timestamp clockOutTimestamp, String timeWorked) {
-        final String sql = "UPDATE Shifts SET clockOut = :clockOut, timeWorked = :timeWorked WHERE shiftId = :shiftId";
+    /**
+     * Inserts one open shift per user in a single JDBC batch and returns the generated shiftIds
+     * in the same order as the given users.
+     */
+    @Transactional
+    public List<Integer> insertNewShifts(List<User> users, Instant clockInAt) {
+        String sql = "INSERT INTO Shifts (userId, name, clockIn, clockOut, timeWorked) " +
+                "VALUES (:userId, :name, :clockIn, NULL, NULL)";
+
+        Timestamp clockInTimestamp = Timestamp.from(clockInAt);
+        SqlParameterSource[] batch = new SqlParameterSource[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            params.addValue("userId", users.get(i).getUserId());
+            params.addValue("name", users.get(i).getName());
+            params.addValue("clockIn", clockInTimestamp);
+            batch[i] = params;
+        }
+
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        namedParameterJdbcTemplate.batchUpdate(sql, batch, keyHolder, new String[]{"shiftId"});
+
+        List<Integer> shiftIds = new ArrayList<>(users.size());
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            shiftIds.add(((Number) keys.values().iterator().next()).intValue());
+        }
+        changeLogDao.appendAll(ChangeEvent.Entity.SHIFT, shiftIds.stream().map(String::valueOf).toList(),
+                ChangeEvent.Op.INSERT, DateUtility.centralDate(clockInAt));
+        return shiftIds;
+    }
+
+    @Transactional
+    public void clockOutShift(int shiftId, Instant clockOutAt, String timeWorked, Integer workedMinutes) {
+        final String sql = "UPDATE Shifts SET clockOut = :clockOut, timeWorked = :timeWorked, workedMinutes = :workedMinutes " +
+                "WHERE shiftId = :shiftId";
 
         MapSqlParameterSource params = new MapSqlParameterSource();
-        params.addValue("clockOut", clockOutTimestamp);
+        params.addValue("clockOut", Timestamp.from(clockOutAt));
         params.addValue("timeWorked", timeWorked);
+        params.addValue("workedMinutes", workedMinutes);
         params.addValue("shiftId", shiftId);
 
         namedParameterJdbcTemplate.update(sql, params);
+        changeLogDao.append(ChangeEvent.Entity.SHIFT, String.valueOf(shiftId), ChangeEvent.Op.UPDATE, selectWorkDate(shiftId));
     }
 
-    public void removeShift(String shiftId) {
+    @Transactional
+    public void removeShift(int shiftId) {
+        LocalDate workDate = selectWorkDate(shiftId);
         String deleteSql = "DELETE FROM Shifts WHERE shiftId = :shiftId";
         MapSqlParameterSource parameters = new MapSqlParameterSource();
         parameters.addValue("shiftId", shiftId);
         namedParameterJdbcTemplate.update(deleteSql, parameters);
+        changeLogDao.append(ChangeEvent.Entity.SHIFT, String.valueOf(shiftId), ChangeEvent.Op.DELETE, workDate);
     }
 
-    public void updateShift(int shiftId, Timestamp clockInTimestamp, Timestamp clockOutTimestamp, String timeWorked) {
-        final String sql = "UPDATE Shifts SET clockIn =:clockIn, clockOut = :clockOut, timeWorked = :timeWorked " +
-                "WHERE shiftId = :shiftId";
+    /**
+     * Logs the change under the shift's old day and, if the new clock-in moves it, the new day too.
+     */
+    @Transactional
+    public void updateShift(int shiftId, Instant clockInAt, Instant clockOutAt, String timeWorked, Integer workedMinutes) {
+        final String sql = "UPDATE Shifts SET clockIn =:clockIn, clockOut = :clockOut, timeWorked = :timeWorked, " +
+                "workedMinutes = :workedMinutes WHERE shiftId = :shiftId";
 
         MapSqlParameterSource params = new MapSqlParameterSource();
-        params.addValue("clockIn", clockInTimestamp);
-        params.addValue("clockOut", clockOutTimestamp);
+        params.addValue("clockIn", Timestamp.from(clockInAt));
+        params.addValue("clockOut", clockOutAt != null ? Timestamp.from(clockOutAt) : null);
         params.addValue("timeWorked", timeWorked);
+        params.addValue("workedMinutes", workedMinutes);
         params.addValue("shiftId", shiftId);
 
+        LocalDate previousWorkDate = selectWorkDate(shiftId);
         namedParameterJdbcTemplate.update(sql, params);
+        LocalDate workDate = DateUtility.centralDate(clockInAt);
+        changeLogDao.append(ChangeEvent.Entity.SHIFT, String.valueOf(shiftId), ChangeEvent.Op.UPDATE, workDate);
+        if (previousWorkDate != null && !previousWorkDate.equals(workDate)) {
+            changeLogDao.append(ChangeEvent.Entity.SHIFT, String.valueOf(shiftId), ChangeEvent.Op.UPDATE, previousWorkDate);
+        }
     }
 
+    /**
+     * Central Time date of the shift's clock-in, or null if there is no such shift.
+     */
+    private LocalDate selectWorkDate(int shiftId) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("shiftId", shiftId);
+        List<Timestamp> clockIns = namedParameterJdbcTemplate.queryForList(
+                "SELECT clockIn FROM Shifts WHERE shiftId = :shiftId", params, Timestamp.class);
+        return clockIns.isEmpty() ? null : DateUtility.centralDate(clockIns.get(0).toInstant());
+    }
+
+    static final String SELECT_USER_SHIFT_ROWS_BETWEEN = "SELECT " + ShiftRowMapper.SHIFT_COLUMNS + ", " + UserShiftRowMapper.USER_COLUMNS + " " +
+            "FROM Shifts s " +
+            "JOIN Users u ON s.userId = u.userId " +
+            "WHERE s.clockIn >= :start AND s.clockIn < :end";
+
     public List<UserShiftRow> selectUserShiftRowsByDate(LocalDate date) {
-        String sql = "SELECT Shifts.*, Users.phoneNumber, Users.email, Users.physicalMailingAddress " +
-                "FROM Shifts " +
-                "JOIN Users ON Shifts.userId = Users.userId " +
-                "WHERE DATE(Shifts.clockIn) = :clockInDate";
+        return selectUserShiftRowsBetween(DateUtility.startOfDayCentralTime(date), DateUtility.startOfDayCentralTime(date.plusDays(1)));
+    }
 
+    public List<UserShiftRow> selectUserShiftRowsBetween(Instant start, Instant end) {
         MapSqlParameterSource params = new MapSqlParameterSource();
-        params.addValue("clockInDate", date);
+        params.addValue("start", Timestamp.from(start));
+        params.addValue("end", Timestamp.from(end));
+
+        return namedParameterJdbcTemplate.query(SELECT_USER_SHIFT_ROWS_BETWEEN, params, UserShiftRowMapper.INSTANCE);
+    }
+
+    /**
+     * Hands each of the day's user shift rows to the consumer as it is read, without holding
+     * the result set in memory. The connection stays open until the last row is consumed.
+     */
+    public void streamUserShiftRowsByDate(LocalDate date, Consumer<UserShiftRow> consumer) {
+        streamUserShiftRowsBetween(DateUtility.startOfDayCentralTime(date), DateUtility.startOfDayCentralTime(date.plusDays(1)), consumer);
+    }
 
-        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("h:mm a");
-            UserShiftRow shift = new UserShiftRow();
-            shift.setShiftId(rs.getInt("shiftId"));
-            shift.setUserId(rs.getString("userId"));
-            shift.setName(rs.getString("name"));
+    public void streamUserShiftRowsBetween(Instant start, Instant end, Consumer<UserShiftRow> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("start", Timestamp.from(start));
+        params.addValue("end", Timestamp.from(end));
 
-            // Retrieve and set additional fields from the Users table
-            shift.setPhoneNumber(rs.getString("phoneNumber"));
-            shift.setEmail(rs.getString("email"));
-            shift.setMailingAddress(rs.getString("physicalMailingAddress"));
+        // Counted here: a streaming result set can't report its position, and getRow() throws
+        int[] rowNum = {0};
+        streamingJdbcTemplate.query(SELECT_USER_SHIFT_ROWS_BETWEEN, params,
+                (RowCallbackHandler) rs -> consumer.accept(UserShiftRowMapper.INSTANCE.mapRow(rs, rowNum[0]++)));
+    }
 
-            Timestamp clockInTimestamp = rs.getTimestamp("clockIn");
-            if (clockInTimestamp != null) {
-                LocalDateTime clockIn = clockInTimestamp.toLocalDateTime();
-                shift.setClockIn(clockIn.format(formatter));
-            }
+    public int countShiftsByDate(LocalDate date) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("start", Timestamp.from(DateUtility.startOfDayCentralTime(date)));
+        params.addValue("end", Timestamp.from(DateUtility.startOfDayCentralTime(date.plusDays(1))));
+        Integer count = namedParameterJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM Shifts WHERE clockIn >= :start AND clockIn < :end", params, Integer.class);
+        return count != null ? count : 0;
+    }
 
-            Timestamp clockOutTimestamp = rs.getTimestamp("clockOut");
-            if (clockOutTimestamp != null) {
-                LocalDateTime clockOut = clockOutTimestamp.toLocalDateTime();
-                shift.setClockOut(clockOut.format(formatter));
-            }
+    /**
+     * One page of shift history, newest first, using keyset pagination on (clockIn, shiftId).
+     * The inner query only touches the history indexes; full rows are joined in for the page alone.
+     * Every argument except limit is optional: open = true/false restricts to open or closed shifts,
+     * and afterClockIn/afterShiftId is the last row of the previous page.
+     */
+    public List<Shift> selectShiftHistoryPage(String userId, Instant from, Instant to, Boolean open,
+                                              Instant afterClockIn, Integer afterShiftId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = shiftHistoryPageQuery(userId, from, to, open, afterClockIn, afterShiftId, limit, params);
+        return namedParameterJdbcTemplate.query(sql, params, ShiftRowMapper.INSTANCE);
+    }
 
-            shift.setTimeWorked(rs.getString("timeWorked"));
-            return shift;
-        });
+    /**
+     * The SQL for selectShiftHistoryPage, filling in params. The history indexes end in
+     * (clockIn, shiftId), so the inner query reads the page straight off the index in order.
+     */
+    static String shiftHistoryPageQuery(String userId, Instant from, Instant to, Boolean open,
+                                        Instant afterClockIn, Integer afterShiftId, int limit, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder("WHERE 1 = 1");
+
+        if (userId != null) {
+            where.append(" AND userId = :userId");
+            params.addValue("userId", userId);
+        }
+        if (from != null) {
+            where.append(" AND clockIn >= :from");
+            params.addValue("from", Timestamp.from(from));
+        }
+        if (to != null) {
+            where.append(" AND clockIn < :to");
+            params.addValue("to", Timestamp.from(to));
+        }
+        if (open != null) {
+            where.append(open ? " AND clockOut IS NULL" : " AND clockOut IS NOT NULL");
+        }
+        if (afterClockIn != null && afterShiftId != null) {
+            where.append(" AND (clockIn < :afterClockIn OR (clockIn = :afterClockIn AND shiftId < :afterShiftId))");
+            params.addValue("afterClockIn", Timestamp.from(afterClockIn));
+            params.addValue("afterShiftId", afterShiftId);
+        }
+        params.addValue("limit", limit);
+
+        return "SELECT " + ShiftRowMapper.SHIFT_COLUMNS + " FROM (" +
+                "SELECT shiftId FROM Shifts " + where + " ORDER BY clockIn DESC, shiftId DESC LIMIT :limit" +
+                ") page JOIN Shifts s ON s.shiftId = page.shiftId " +
+                "ORDER BY s.clockIn DESC, s.shiftId DESC";
     }
 
     public int countShiftsByUserId(String userId) {
@@ -142,18 +281,35 @@ public class ShiftDao {
         return count != null ? count : 0;
     }
 
-    public int deleteShiftsPriorToDate(LocalDate date) {
-        String sql = "DELETE FROM Shifts WHERE DATE(clockIn) < :date";
+    static final String SELECT_SHIFT_IDS_PRIOR_TO = "SELECT shiftId FROM Shifts WHERE clockIn < :cutoff LIMIT :limit";
+    static final String COUNT_SHIFTS_PRIOR_TO = "SELECT COUNT(*) FROM Shifts WHERE clockIn < :cutoff";
+
+    /**
+     * Deletes up to batchSize shifts that started before the given date, by primary key so each
+     * statement only locks the rows it removes. Returns how many were deleted; less than
+     * batchSize means nothing is left to delete. The batch goes in the change log as one PURGE.
+     */
+    @Transactional
+    public int deleteShiftBatchPriorToDate(LocalDate date, int batchSize) {
         MapSqlParameterSource params = new MapSqlParameterSource();
-        params.addValue("date", date);
-        return namedParameterJdbcTemplate.update(sql, params);
+        params.addValue("cutoff", Timestamp.from(DateUtility.startOfDayCentralTime(date)));
+        params.addValue("limit", batchSize);
+        List<Integer> shiftIds = namedParameterJdbcTemplate.queryForList(SELECT_SHIFT_IDS_PRIOR_TO, params, Integer.class);
+        if (shiftIds.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource deleteParams = new MapSqlParameterSource();
+        deleteParams.addValue("shiftIds", shiftIds);
+        int deleted = namedParameterJdbcTemplate.update("DELETE FROM Shifts WHERE shiftId IN (:shiftIds)", deleteParams);
+        changeLogDao.append(ChangeEvent.Entity.SHIFT, null, ChangeEvent.Op.PURGE, date);
+        return deleted;
     }
 
     public int countShiftsPriorToDate(LocalDate date) {
-        String sql = "SELECT COUNT(*) FROM Shifts WHERE DATE(clockIn) < :date";
         MapSqlParameterSource params = new MapSqlParameterSource();
-        params.addValue("date", date);
-        Integer count = namedParameterJdbcTemplate.queryForObject(sql, params, Integer.class);
+        params.addValue("cutoff", Timestamp.from(DateUtility.startOfDayCentralTime(date)));
+        Integer count = namedParameterJdbcTemplate.queryForObject(COUNT_SHIFTS_PRIOR_TO, params, Integer.class);
         return count != null ? count : 0;
     }
 
@@ -5,10 +5,15 @@ import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import timeclock.daos.mappers.UserRowMapper;
+import timeclock.models.ChangeEvent;
 import timeclock.models.User;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -16,11 +21,14 @@ import java.util.UUID;
 public class UserDao {
 
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ChangeLogDao changeLogDao;
 
-    public UserDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+    public UserDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate, ChangeLogDao changeLogDao) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.changeLogDao = changeLogDao;
     }
 
+    @Transactional
     public String insertUser(User user) {
         String uuid = UUID.randomUUID().toString();
         user.setUserId(uuid);
@@ -29,15 +37,18 @@ public class UserDao {
                 "VALUES (:userId, :name, :phoneNumber, :email, :physicalMailingAddress, :yearVerified)";
 
         namedParameterJdbcTemplate.update(sql, new BeanPropertySqlParameterSource(user));
+        changeLogDao.append(ChangeEvent.Entity.USER, uuid, ChangeEvent.Op.INSERT, null);
 
         return uuid;
     }
 
+    @Transactional
     public void updateUser(User user) {
         final String sql = "UPDATE Users SET name = :name, phoneNumber = :phoneNumber, email = :email, " +
                 "physicalMailingAddress = :physicalMailingAddress, yearVerified = :yearVerified WHERE userId = :userId";
         
         namedParameterJdbcTemplate.update(sql, new BeanPropertySqlParameterSource(user));
+        changeLogDao.append(ChangeEvent.Entity.USER, user.getUserId(), ChangeEvent.Op.UPDATE, null);
     }
 
     public List<User> selectAllUsers() {
@@ -53,6 +64,21 @@ public class UserDao {
         });
     }
 
+    /**
+     * All users, name-sorted, with the hidden flag filled in from HiddenUsers by the join.
+     */
+    public List<User> selectAllUsersWithHiddenFlag() {
+        final String sql = "SELECT u.*, h.userId IS NOT NULL AS hidden FROM Users u " +
+                "LEFT JOIN HiddenUsers h ON h.userId = u.userId " +
+                "ORDER BY u.name";
+        UserRowMapper userRowMapper = new UserRowMapper();
+        return namedParameterJdbcTemplate.query(sql, (rs, rowNum) -> {
+            User user = userRowMapper.mapRow(rs, rowNum);
+            user.setHidden(rs.getBoolean("hidden"));
+            return user;
+        });
+    }
+
     public User getUserById(String userId) {
         final String sql = "SELECT * FROM Users WHERE userId = :userId";
         MapSqlParameterSource params = new MapSqlParameterSource();
@@ -72,10 +98,22 @@ public class UserDao {
         });
     }
 
+    public List<User> getUsersByIds(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final String sql = "SELECT * FROM Users WHERE userId IN (:userIds)";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("userIds", userIds);
+        return namedParameterJdbcTemplate.query(sql, params, new UserRowMapper());
+    }
+
+    @Transactional
     public void deleteUser(String userId) {
         final String sql = "DELETE FROM Users WHERE userId = :userId";
         MapSqlParameterSource params = new MapSqlParameterSource();
         params.addValue("userId", userId);
         namedParameterJdbcTemplate.update(sql, params);
+        changeLogDao.append(ChangeEvent.Entity.USER, userId, ChangeEvent.Op.DELETE, null);
     }
 }
\ No newline at end of file
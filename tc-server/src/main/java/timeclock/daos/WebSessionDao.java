@@ -0,0 +1,94 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import timeclock.models.WebSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * WebSessions backs session.mode=jdbc: one row per signed-in browser, keyed by the hash of its
+ * session cookie. A session is live while its lastAccessedAt is within the idle timeout, by the
+ * database clock. lastAccessedAt is written in batches, not on every request.
+ */
+@Repository
+public class WebSessionDao {
+
+    private static final String WEB_SESSION_COLUMNS = "sessionIdHash, username, authorities, createdAt, lastAccessedAt";
+
+    // Sessions per UPDATE, so a busy flush doesn't become one enormous IN list
+    private static final int TOUCH_CHUNK_SIZE = 500;
+
+    private static final RowMapper<WebSession> ROW_MAPPER = (rs, rowNum) -> {
+        WebSession session = new WebSession();
+        session.setSessionIdHash(rs.getString("sessionIdHash"));
+        session.setUsername(rs.getString("username"));
+        String authorities = rs.getString("authorities");
+        session.setAuthorities(authorities.isEmpty() ? List.of() : Arrays.asList(authorities.split(",")));
+        session.setCreatedAt(rs.getTimestamp("createdAt").toInstant());
+        session.setLastAccessedAt(rs.getTimestamp("lastAccessedAt").toInstant());
+        return session;
+    };
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public WebSessionDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    public void insert(String sessionIdHash, String username, Collection<String> authorities) {
+        final String sql = "INSERT INTO WebSessions (sessionIdHash, username, authorities, createdAt, lastAccessedAt) " +
+                "VALUES (:sessionIdHash, :username, :authorities, NOW(3), NOW(3))";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("sessionIdHash", sessionIdHash);
+        params.addValue("username", username);
+        params.addValue("authorities", String.join(",", authorities));
+        namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    /**
+     * The session, or null if there is none or it has been idle longer than idleTimeoutMillis.
+     */
+    public WebSession selectActive(String sessionIdHash, long idleTimeoutMillis) {
+        final String sql = "SELECT " + WEB_SESSION_COLUMNS + " FROM WebSessions WHERE sessionIdHash = :sessionIdHash " +
+                "AND lastAccessedAt > NOW(3) - INTERVAL (:idleTimeoutMs * 1000) MICROSECOND";
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("sessionIdHash", sessionIdHash);
+        params.addValue("idleTimeoutMs", idleTimeoutMillis);
+        List<WebSession> sessions = namedParameterJdbcTemplate.query(sql, params, ROW_MAPPER);
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    /**
+     * Marks every given session as used now, a few hundred per statement.
+     */
+    public int touch(Collection<String> sessionIdHashes) {
+        List<String> hashes = new ArrayList<>(sessionIdHashes);
+        int touched = 0;
+        for (int from = 0; from < hashes.size(); from += TOUCH_CHUNK_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            params.addValue("sessionIdHashes", hashes.subList(from, Math.min(from + TOUCH_CHUNK_SIZE, hashes.size())));
+            touched += namedParameterJdbcTemplate.update(
+                    "UPDATE WebSessions SET lastAccessedAt = NOW(3) WHERE sessionIdHash IN (:sessionIdHashes)", params);
+        }
+        return touched;
+    }
+
+    public void delete(String sessionIdHash) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("sessionIdHash", sessionIdHash);
+        namedParameterJdbcTemplate.update("DELETE FROM WebSessions WHERE sessionIdHash = :sessionIdHash", params);
+    }
+
+    public int deleteIdle(long idleTimeoutMillis) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("idleTimeoutMs", idleTimeoutMillis);
+        return namedParameterJdbcTemplate.update(
+                "DELETE FROM WebSessions WHERE lastAccessedAt < NOW(3) - INTERVAL (:idleTimeoutMs * 1000) MICROSECOND", params);
+    }
+}
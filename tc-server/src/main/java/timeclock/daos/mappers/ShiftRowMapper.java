@@ -6,33 +6,39 @@ import timeclock.models.Shift;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
+
+/**
+ * Maps the SHIFT_COLUMNS prefix of a row by position. Queries using it must select exactly
+ * SHIFT_COLUMNS first (from Shifts aliased as s); subclasses read any columns after that.
+ */
+public class ShiftRowMapper<T extends Shift> implements RowMapper<T> {
+
+    public static final String SHIFT_COLUMNS = "s.shiftId, s.userId, s.name, s.clockIn, s.clockOut, s.workedMinutes";
+    public static final int SHIFT_COLUMN_COUNT = 6;
+
+    public static final ShiftRowMapper<Shift> INSTANCE = new ShiftRowMapper<>(Shift::new);
+
+    private final Supplier<T> factory;
+
+    protected ShiftRowMapper(Supplier<T> factory) {
+        this.factory = factory;
+    }
 
-public class ShiftRowMapper implements RowMapper<Shift> {
-    
-    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("h:mm a");
-    
     @Override
-    public Shift mapRow(ResultSet rs, int rowNum) throws SQLException {
-        Shift shift = new Shift();
-        shift.setShiftId(rs.getInt("shiftId"));
-        shift.setUserId(rs.getString("userId"));
-        shift.setName(rs.getString("name"));
-
-        Timestamp clockInTimestamp = rs.getTimestamp("clockIn");
-        if (clockInTimestamp != null) {
-            LocalDateTime clockIn = clockInTimestamp.toLocalDateTime();
-            shift.setClockIn(clockIn.format(TIME_FORMATTER));
-        }
-
-        Timestamp clockOutTimestamp = rs.getTimestamp("clockOut");
-        if (clockOutTimestamp != null) {
-            LocalDateTime clockOut = clockOutTimestamp.toLocalDateTime();
-            shift.setClockOut(clockOut.format(TIME_FORMATTER));
-        }
-
-        shift.setTimeWorked(rs.getString("timeWorked"));
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        T shift = factory.get();
+        shift.setShiftId(rs.getInt(1));
+        shift.setUserId(rs.getString(2));
+        shift.setName(rs.getString(3));
+
+        Timestamp clockIn = rs.getTimestamp(4);
+        shift.setClockInAt(clockIn != null ? clockIn.toInstant() : null);
+        Timestamp clockOut = rs.getTimestamp(5);
+        shift.setClockOutAt(clockOut != null ? clockOut.toInstant() : null);
+
+        int workedMinutes = rs.getInt(6);
+        shift.setWorkedMinutes(rs.wasNull() ? null : workedMinutes);
         return shift;
     }
 }
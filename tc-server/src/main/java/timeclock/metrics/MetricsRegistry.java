@@ -0,0 +1,244 @@
+package timeclock.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Counters, histograms and gauges rendered in the Prometheus text format for GET /metrics.
+ * Metrics are looked up by name and label values, and creating one that already exists returns
+ * the existing one, so callers can ask for a metric on every use or keep hold of it.
+ * <p>
+ * Label values must come from a small fixed set, such as operation names and outcomes; never
+ * put user ids, names or dates in a label, since every distinct value is a new time series.
+ */
+@Component
+public class MetricsRegistry {
+
+    public static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    public static final double[] SIZE_BUCKETS = {1024, 4096, 16384, 65536, 262144, 1048576, 4194304, 16777216};
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM;
+
+        private String exposition() {
+            return name().toLowerCase();
+        }
+    }
+
+    // Sorted by name so scrapes list families in a stable order
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER, null)
+                .children.computeIfAbsent(renderLabels(labels), key -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        Family family = family(name, help, Type.HISTOGRAM, buckets);
+        return (Histogram) family.children.computeIfAbsent(renderLabels(labels), key -> new Histogram(family.buckets));
+    }
+
+    /**
+     * A gauge read at scrape time, for values owned by something else such as a pool.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE, null).children.put(renderLabels(labels), new SampledValue(value));
+    }
+
+    /**
+     * A counter read at scrape time, for totals something else already keeps.
+     */
+    public void functionCounter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.COUNTER, null).children.put(renderLabels(labels), new SampledValue(value));
+    }
+
+    /**
+     * Every metric in the Prometheus text exposition format, version 0.0.4.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            if (family.children.isEmpty()) {
+                continue;
+            }
+            out.append("# HELP ").append(family.name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.exposition()).append('\n');
+            for (Map.Entry<String, Sample> child : new ConcurrentSkipListMap<>(family.children).entrySet()) {
+                child.getValue().render(family.name, child.getKey(), out);
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, Type type, double[] buckets) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type, buckets));
+        if (family.type != type || (buckets != null && !Arrays.equals(family.buckets, buckets))) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type.exposition());
+        }
+        return family;
+    }
+
+    /**
+     * Labels are given as name, value pairs and rendered in that order.
+     */
+    static String renderLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name, value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void appendSample(StringBuilder out, String name, String labels, String extraLabel, double value) {
+        out.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final double[] buckets;
+        private final Map<String, Sample> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type, double[] buckets) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.buckets = buckets == null ? null : buckets.clone();
+        }
+    }
+
+    private interface Sample {
+        void render(String name, String labels, StringBuilder out);
+    }
+
+    public static class Counter implements Sample {
+        private final DoubleAdder value = new DoubleAdder();
+
+        public void increment() {
+            value.add(1);
+        }
+
+        public void increment(double amount) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("Counters only go up");
+            }
+            value.add(amount);
+        }
+
+        public double get() {
+            return value.sum();
+        }
+
+        @Override
+        public void render(String name, String labels, StringBuilder out) {
+            appendSample(out, name, labels, null, value.sum());
+        }
+    }
+
+    /**
+     * Observations counted into fixed buckets. Each bucket is counted on its own and summed
+     * at scrape time, so recording is one add on a bucket, the sum and the count.
+     */
+    public static class Histogram implements Sample {
+        private final double[] buckets;
+        private final LongAdder[] bucketCounts;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Histogram(double[] buckets) {
+            this.buckets = buckets;
+            this.bucketCounts = new LongAdder[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                bucketCounts[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            int bucket = Arrays.binarySearch(buckets, value);
+            if (bucket < 0) {
+                bucket = -bucket - 1;
+            }
+            if (bucket < buckets.length) {
+                bucketCounts[bucket].increment();
+            }
+            sum.add(value);
+            count.increment();
+        }
+
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getSum() {
+            return sum.sum();
+        }
+
+        @Override
+        public void render(String name, String labels, StringBuilder out) {
+            // Count is read first, so no bucket can show more observations than +Inf
+            long total = count.sum();
+            double totalSum = sum.sum();
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += bucketCounts[i].sum();
+                appendSample(out, name + "_bucket", labels, "le=\"" + formatValue(buckets[i]) + "\"", Math.min(cumulative, total));
+            }
+            appendSample(out, name + "_bucket", labels, "le=\"+Inf\"", total);
+            appendSample(out, name + "_sum", labels, null, totalSum);
+            appendSample(out, name + "_count", labels, null, total);
+        }
+    }
+
+    private record SampledValue(DoubleSupplier value) implements Sample {
+        @Override
+        public void render(String name, String labels, StringBuilder out) {
+            appendSample(out, name, labels, null, value.getAsDouble());
+        }
+    }
+}
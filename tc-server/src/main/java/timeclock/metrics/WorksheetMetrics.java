@@ -0,0 +1,91 @@
+package timeclock.metrics;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Build time and output size of each spreadsheet, labelled by which report it was: the daily
+ * download, the pay-period download or the summary email.
+ */
+@Component
+public class WorksheetMetrics {
+
+    private static final String BUILD_SECONDS = "timeclock_worksheet_build_seconds";
+    private static final String BUILD_HELP = "Time to build and write a spreadsheet";
+    private static final String SIZE_BYTES = "timeclock_worksheet_size_bytes";
+    private static final String SIZE_HELP = "Size of each spreadsheet built";
+
+    private final MetricsRegistry registry;
+
+    public WorksheetMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @FunctionalInterface
+    public interface WorksheetWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Runs a build that writes straight to out, counting the bytes as they pass through.
+     */
+    public void measure(String report, OutputStream out, WorksheetWriter writer) throws IOException {
+        CountingOutputStream counted = new CountingOutputStream(out);
+        long start = System.nanoTime();
+        boolean built = false;
+        try {
+            writer.writeTo(counted);
+            built = true;
+        } finally {
+            record(report, System.nanoTime() - start, built ? counted.count : -1);
+        }
+    }
+
+    /**
+     * Runs a build that returns the whole file; a null result counts as a failure.
+     */
+    public ByteArrayResource measure(String report, Supplier<ByteArrayResource> builder) {
+        long start = System.nanoTime();
+        ByteArrayResource worksheet = null;
+        try {
+            worksheet = builder.get();
+            return worksheet;
+        } finally {
+            record(report, System.nanoTime() - start, worksheet != null ? worksheet.contentLength() : -1);
+        }
+    }
+
+    private void record(String report, long nanos, long bytes) {
+        boolean built = bytes >= 0;
+        registry.histogram(BUILD_SECONDS, BUILD_HELP, MetricsRegistry.LATENCY_BUCKETS,
+                "report", report, "outcome", built ? "success" : "failure").observeNanos(nanos);
+        if (built) {
+            registry.histogram(SIZE_BYTES, SIZE_HELP, MetricsRegistry.SIZE_BUCKETS, "report", report).observe(bytes);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package timeclock.models;
+
+/**
+ * Point-in-time view of the database bulkhead. Wait times cover every acquire since startup,
+ * including rejected ones, which waited the full timeout.
+ */
+public class BulkheadStats {
+
+    private int maxConcurrent;
+    private int inUse;
+    private int waiting;
+    private long acquired;
+    private long rejected;
+    private double averageWaitMs;
+    private double maxWaitMs;
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getInUse() {
+        return inUse;
+    }
+
+    public void setInUse(int inUse) {
+        this.inUse = inUse;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public void setWaiting(int waiting) {
+        this.waiting = waiting;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public void setAcquired(long acquired) {
+        this.acquired = acquired;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public double getAverageWaitMs() {
+        return averageWaitMs;
+    }
+
+    public void setAverageWaitMs(double averageWaitMs) {
+        this.averageWaitMs = averageWaitMs;
+    }
+
+    public double getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(double maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+
+}
@@ -0,0 +1,69 @@
+package timeclock.models;
+
+import java.time.LocalDate;
+
+/**
+ * One row of the ChangeLog table: a user or shift that was written on some instance. Each
+ * instance's ChangeLogPoller publishes these as local application events, so anything holding
+ * users or shifts in memory can drop what changed no matter which instance made the change.
+ */
+public class ChangeEvent {
+
+    public enum Entity {
+        USER,
+        SHIFT
+    }
+
+    public enum Op {
+        INSERT,
+        UPDATE,
+        DELETE,
+        HIDE,
+        UNHIDE,
+        // Every shift before workDate was deleted; entityId is null
+        PURGE
+    }
+
+    private final long seq;
+    private final Entity entity;
+    private final String entityId;
+    private final Op op;
+    private final LocalDate workDate;
+
+    public ChangeEvent(long seq, Entity entity, String entityId, Op op, LocalDate workDate) {
+        this.seq = seq;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.op = op;
+        this.workDate = workDate;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * Central Time date of the shift's clock-in, the day whose reports changed. For PURGE, the
+     * cutoff. Null for users.
+     */
+    public LocalDate getWorkDate() {
+        return workDate;
+    }
+
+    @Override
+    public String toString() {
+        return seq + " " + op + " " + entity + " " + entityId;
+    }
+}
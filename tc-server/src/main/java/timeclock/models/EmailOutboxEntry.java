@@ -0,0 +1,96 @@
+package timeclock.models;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One queued summary email. There is at most one row per report date; asking to send a date
+ * again re-arms its row rather than adding another.
+ */
+public class EmailOutboxEntry {
+
+    public enum Status { PENDING, SENDING, SENT, FAILED }
+
+    private int outboxId;
+    private LocalDate reportDate;
+    private Status status;
+    private int attempts;
+    private Instant nextAttemptAt;
+    private Instant createdAt;
+    private Instant sentAt;
+    private Long lastLatencyMs;
+    private String lastError;
+
+    public int getOutboxId() {
+        return outboxId;
+    }
+
+    public void setOutboxId(int outboxId) {
+        this.outboxId = outboxId;
+    }
+
+    public LocalDate getReportDate() {
+        return reportDate;
+    }
+
+    public void setReportDate(LocalDate reportDate) {
+        this.reportDate = reportDate;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(Instant sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public Long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    public void setLastLatencyMs(Long lastLatencyMs) {
+        this.lastLatencyMs = lastLatencyMs;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+}
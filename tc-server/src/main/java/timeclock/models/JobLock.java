@@ -0,0 +1,103 @@
+package timeclock.models;
+
+import java.time.Instant;
+
+/**
+ * A scheduled job's lease and its last run. owner and leaseUntil are set while an instance
+ * holds the lease; the fencing token goes up every time the lease changes hands.
+ */
+public class JobLock {
+
+    public enum Outcome { SUCCEEDED, FAILED }
+
+    private String jobName;
+    private String owner;
+    private Instant leaseUntil;
+    private long fencingToken;
+    private Instant lastStartedAt;
+    private Instant lastFinishedAt;
+    private Long lastDurationMs;
+    private String lastOwner;
+    private Outcome lastOutcome;
+    private String lastError;
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public long getFencingToken() {
+        return fencingToken;
+    }
+
+    public void setFencingToken(long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+
+    public Instant getLastStartedAt() {
+        return lastStartedAt;
+    }
+
+    public void setLastStartedAt(Instant lastStartedAt) {
+        this.lastStartedAt = lastStartedAt;
+    }
+
+    public Instant getLastFinishedAt() {
+        return lastFinishedAt;
+    }
+
+    public void setLastFinishedAt(Instant lastFinishedAt) {
+        this.lastFinishedAt = lastFinishedAt;
+    }
+
+    public Long getLastDurationMs() {
+        return lastDurationMs;
+    }
+
+    public void setLastDurationMs(Long lastDurationMs) {
+        this.lastDurationMs = lastDurationMs;
+    }
+
+    public String getLastOwner() {
+        return lastOwner;
+    }
+
+    public void setLastOwner(String lastOwner) {
+        this.lastOwner = lastOwner;
+    }
+
+    public Outcome getLastOutcome() {
+        return lastOutcome;
+    }
+
+    public void setLastOutcome(Outcome lastOutcome) {
+        this.lastOutcome = lastOutcome;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -1,13 +1,23 @@
 package timeclock.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import timeclock.utilities.DateUtility;
+import timeclock.utilities.DurationEngine;
+
+import java.time.Instant;
+
+/**
+ * Shift times are kept as instants; the "h:mm a" and "7h 05m" strings the client expects are
+ * only produced by the JSON getters (and the spreadsheet, which reads the same getters).
+ */
 public class Shift {
 
     private int shiftId;
     private String userId;
     private String name;
-    private String clockIn;
-    private String clockOut;
-    private String timeWorked;
+    private Instant clockInAt;
+    private Instant clockOutAt;
+    private Integer workedMinutes;
 
     public int getShiftId() {
         return shiftId;
@@ -33,28 +43,42 @@ public class Shift {
         this.name = name;
     }
 
-    public String getClockIn() {
-        return clockIn;
+    @JsonIgnore
+    public Instant getClockInAt() {
+        return clockInAt;
     }
 
-    public void setClockIn(String clockIn) {
-        this.clockIn = clockIn;
+    public void setClockInAt(Instant clockInAt) {
+        this.clockInAt = clockInAt;
     }
 
-    public String getClockOut() {
-        return clockOut;
+    @JsonIgnore
+    public Instant getClockOutAt() {
+        return clockOutAt;
     }
 
-    public void setClockOut(String clockOut) {
-        this.clockOut = clockOut;
+    public void setClockOutAt(Instant clockOutAt) {
+        this.clockOutAt = clockOutAt;
     }
 
-    public String getTimeWorked() {
-        return timeWorked;
+    public Integer getWorkedMinutes() {
+        return workedMinutes;
+    }
+
+    public void setWorkedMinutes(Integer workedMinutes) {
+        this.workedMinutes = workedMinutes;
     }
 
-    public void setTimeWorked(String timeWorked) {
-        this.timeWorked = timeWorked;
+    public String getClockIn() {
+        return clockInAt != null ? DateUtility.formatClockTime(clockInAt) : null;
+    }
+
+    public String getClockOut() {
+        return clockOutAt != null ? DateUtility.formatClockTime(clockOutAt) : null;
+    }
+
+    public String getTimeWorked() {
+        return workedMinutes != null ? DurationEngine.formatMinutes(workedMinutes) : null;
     }
 
-}
\ No newline at end of file
+}
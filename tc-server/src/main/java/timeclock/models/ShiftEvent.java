@@ -0,0 +1,72 @@
+package timeclock.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+
+/**
+ * A change to shift data, published by ShiftService and pushed to /api/shifts/stream subscribers.
+ */
+public class ShiftEvent {
+
+    public enum Type {
+        CLOCK_IN("clock-in"),
+        CLOCK_OUT("clock-out"),
+        EDIT("edit"),
+        DELETE("delete"),
+        PURGE("purge");
+
+        private final String eventName;
+
+        Type(String eventName) {
+            this.eventName = eventName;
+        }
+
+        public String getEventName() {
+            return eventName;
+        }
+    }
+
+    private final Type type;
+    private final int shiftId;
+    private final String userId;
+    private final String name;
+    private final LocalDate workDate;
+
+    public ShiftEvent(Type type, int shiftId, String userId, String name) {
+        this(type, shiftId, userId, name, null);
+    }
+
+    public ShiftEvent(Type type, int shiftId, String userId, String name, LocalDate workDate) {
+        this.type = type;
+        this.shiftId = shiftId;
+        this.userId = userId;
+        this.name = name;
+        this.workDate = workDate;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getShiftId() {
+        return shiftId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Central Time date of the shift's clock-in, which is the day whose reports changed.
+     * For PURGE, the cutoff: every day before it changed. Server-side only.
+     */
+    @JsonIgnore
+    public LocalDate getWorkDate() {
+        return workDate;
+    }
+}
@@ -0,0 +1,26 @@
+package timeclock.models;
+
+import java.util.List;
+
+public class ShiftHistoryPage {
+
+    private List<Shift> shifts;
+    private String nextCursor;
+
+    public List<Shift> getShifts() {
+        return shifts;
+    }
+
+    public void setShifts(List<Shift> shifts) {
+        this.shifts = shifts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+}
@@ -0,0 +1,85 @@
+package timeclock.models;
+
+import java.time.Instant;
+
+/**
+ * Progress of a background delete of shifts prior to a date. Updated by the purge worker
+ * thread and read by status requests, hence the volatile fields.
+ */
+public class ShiftPurgeJob {
+
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private final String jobId;
+    private final String date;
+    private final int totalShifts;
+    private final Instant startedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile int deletedShifts;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    public ShiftPurgeJob(String jobId, String date, int totalShifts) {
+        this.jobId = jobId;
+        this.date = date;
+        this.totalShifts = totalShifts;
+        this.startedAt = Instant.now();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public int getTotalShifts() {
+        return totalShifts;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getDeletedShifts() {
+        return deletedShifts;
+    }
+
+    public void setDeletedShifts(int deletedShifts) {
+        this.deletedShifts = deletedShifts;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void setCancelRequested(boolean cancelRequested) {
+        this.cancelRequested = cancelRequested;
+    }
+}
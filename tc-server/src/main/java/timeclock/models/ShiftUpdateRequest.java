@@ -0,0 +1,37 @@
+package timeclock.models;
+
+/**
+ * Body of POST /api/clockout and PUT /api/shift. The client posts back the shift it displays,
+ * so times arrive as "h:mm a" strings; any other shift fields it sends are ignored.
+ */
+public class ShiftUpdateRequest {
+
+    private int shiftId;
+    private String clockIn;
+    private String clockOut;
+
+    public int getShiftId() {
+        return shiftId;
+    }
+
+    public void setShiftId(int shiftId) {
+        this.shiftId = shiftId;
+    }
+
+    public String getClockIn() {
+        return clockIn;
+    }
+
+    public void setClockIn(String clockIn) {
+        this.clockIn = clockIn;
+    }
+
+    public String getClockOut() {
+        return clockOut;
+    }
+
+    public void setClockOut(String clockOut) {
+        this.clockOut = clockOut;
+    }
+
+}
@@ -0,0 +1,48 @@
+package timeclock.models;
+
+import timeclock.utilities.DurationEngine;
+
+public class UserHoursTotal {
+
+    private String userId;
+    private String name;
+    private int workedMinutes;
+    private int shiftCount;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getWorkedMinutes() {
+        return workedMinutes;
+    }
+
+    public void setWorkedMinutes(int workedMinutes) {
+        this.workedMinutes = workedMinutes;
+    }
+
+    public int getShiftCount() {
+        return shiftCount;
+    }
+
+    public void setShiftCount(int shiftCount) {
+        this.shiftCount = shiftCount;
+    }
+
+    public String getTimeWorked() {
+        return DurationEngine.formatMinutes(workedMinutes);
+    }
+
+}
@@ -0,0 +1,57 @@
+package timeclock.models;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A signed-in browser in the WebSessions table. Only a hash of the cookie's session id is
+ * stored, so the table alone can't be used to take over a session.
+ */
+public class WebSession {
+
+    private String sessionIdHash;
+    private String username;
+    private List<String> authorities;
+    private Instant createdAt;
+    private Instant lastAccessedAt;
+
+    public String getSessionIdHash() {
+        return sessionIdHash;
+    }
+
+    public void setSessionIdHash(String sessionIdHash) {
+        this.sessionIdHash = sessionIdHash;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    public void setAuthorities(List<String> authorities) {
+        this.authorities = authorities;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    public void setLastAccessedAt(Instant lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
+}
@@ -0,0 +1,146 @@
+package timeclock.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import timeclock.daos.ChangeLogDao;
+import timeclock.models.ChangeEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tails the ChangeLog table on every instance and republishes each row as a local
+ * {@link ChangeEvent}, so in-memory copies of users and shifts are dropped within about one
+ * poll of a write on any instance, this one included. Listeners are called on the poller thread.
+ * <p>
+ * It starts from the end of the log, since everything is loaded fresh at startup. A seq that
+ * is skipped over (its transaction had not committed yet) is looked for again on each poll
+ * until it shows up or gap-timeout-ms passes, after which it is taken to have rolled back.
+ */
+@Service
+public class ChangeLogPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogPoller.class);
+
+    private static final int POLL_BATCH_SIZE = 500;
+    // A larger jump than this is an auto-increment gap, not a run of uncommitted transactions
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final ChangeLogDao changeLogDao;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long pollMillis;
+    private final long gapTimeoutNanos;
+    private final long retentionMillis;
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-log-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on the poller thread; lastSeq stays -1 until the end of the log is known
+    private long lastSeq = -1;
+    private final Map<Long, Long> missingSince = new LinkedHashMap<>();
+
+    private final AtomicLong caughtUpAtNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong published = new AtomicLong();
+
+    public ChangeLogPoller(ChangeLogDao changeLogDao, ApplicationEventPublisher eventPublisher,
+                           @Value("${change-log.poll-ms:1000}") long pollMillis,
+                           @Value("${change-log.gap-timeout-ms:60000}") long gapTimeoutMillis,
+                           @Value("${change-log.retention-hours:24}") long retentionHours) {
+        this.changeLogDao = changeLogDao;
+        this.eventPublisher = eventPublisher;
+        this.pollMillis = pollMillis;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+    }
+
+    @PostConstruct
+    public void start() {
+        poller.scheduleWithFixedDelay(this::pollSafely, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Seconds since this instance last read to the end of the change log. Stays under a poll
+     * interval or so while the poller keeps up, and grows while the database is unreachable.
+     */
+    public double getLagSeconds() {
+        return (System.nanoTime() - caughtUpAtNanos.get()) / 1e9;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Deletes changes past the retention, which every instance has long since read.
+     */
+    public int prune() {
+        int deleted = changeLogDao.deleteOlderThan(retentionMillis);
+        logger.info("Pruned {} change log rows", deleted);
+        return deleted;
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; the next poll picks up from the same place
+            logger.warn("Could not read the change log: {}", e.getMessage());
+        }
+    }
+
+    void poll() {
+        long now = System.nanoTime();
+        if (lastSeq < 0) {
+            lastSeq = changeLogDao.selectMaxSeq();
+            caughtUpAtNanos.set(now);
+            logger.info("Following the change log from seq {}", lastSeq);
+            return;
+        }
+
+        List<ChangeEvent> changes;
+        do {
+            changes = changeLogDao.selectAfter(lastSeq, List.copyOf(missingSince.keySet()), POLL_BATCH_SIZE);
+            for (ChangeEvent change : changes) {
+                if (change.getSeq() > lastSeq) {
+                    for (long seq = Math.max(lastSeq + 1, change.getSeq() - MAX_TRACKED_GAP); seq < change.getSeq(); seq++) {
+                        missingSince.put(seq, now);
+                    }
+                    lastSeq = change.getSeq();
+                } else {
+                    missingSince.remove(change.getSeq());
+                }
+                publish(change);
+            }
+        } while (changes.size() == POLL_BATCH_SIZE);
+
+        missingSince.values().removeIf(since -> now - since > gapTimeoutNanos);
+        caughtUpAtNanos.set(now);
+    }
+
+    private void publish(ChangeEvent change) {
+        try {
+            eventPublisher.publishEvent(change);
+            published.incrementAndGet();
+        } catch (RuntimeException e) {
+            // One listener failing must not keep the others from hearing about later changes
+            logger.warn("A listener failed on change {}", change, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+}
@@ -0,0 +1,180 @@
+package timeclock.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import timeclock.daos.EmailOutboxDao;
+import timeclock.metrics.WorksheetMetrics;
+import timeclock.models.EmailOutboxEntry;
+import timeclock.models.UserShiftRow;
+import timeclock.utilities.WorkSheetBuilder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends summary emails from the EmailOutbox table on a single background worker, so callers
+ * only wait for a row insert and a report that fails to send is retried instead of lost.
+ * The worker is woken after each enqueue and by a periodic poll, which also picks up retries
+ * as their backoff expires, anything left queued by a restart, and sends abandoned by an
+ * instance that died mid-send. Another instance may still be sending during a rolling deploy,
+ * so a claim is only taken back once it is older than the claim timeout.
+ */
+@Service
+public class EmailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private static final int DISPATCH_BATCH_SIZE = 10;
+
+    private final EmailOutboxDao emailOutboxDao;
+    private final ShiftService shiftService;
+    private final EmailService emailService;
+    private final WorksheetMetrics worksheetMetrics;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long claimTimeoutMillis;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // At most one dispatch waits in the queue; further wake-ups are covered by it
+    private final AtomicBoolean dispatchQueued = new AtomicBoolean();
+
+    public EmailOutboxService(EmailOutboxDao emailOutboxDao, ShiftService shiftService, EmailService emailService,
+                              WorksheetMetrics worksheetMetrics,
+                              @Value("${email-outbox.max-attempts:8}") int maxAttempts,
+                              @Value("${email-outbox.base-backoff-ms:60000}") long baseBackoffMillis,
+                              @Value("${email-outbox.max-backoff-ms:3600000}") long maxBackoffMillis,
+                              @Value("${email-outbox.claim-timeout-ms:600000}") long claimTimeoutMillis) {
+        this.emailOutboxDao = emailOutboxDao;
+        this.shiftService = shiftService;
+        this.emailService = emailService;
+        this.worksheetMetrics = worksheetMetrics;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.claimTimeoutMillis = claimTimeoutMillis;
+    }
+
+    /**
+     * Queues the summary email for a date and returns without touching SMTP. Queuing a date
+     * that is already waiting does not send it twice.
+     */
+    public EmailOutboxEntry enqueue(LocalDate reportDate) {
+        EmailOutboxEntry entry = emailOutboxDao.enqueue(reportDate, Instant.now());
+        logger.info("Queued summary email {} for {} ({} attempts so far)", entry.getOutboxId(), reportDate, entry.getAttempts());
+        afterCommit(this::wakeDispatcher);
+        return entry;
+    }
+
+    public List<EmailOutboxEntry> getRecentEntries(int limit) {
+        return emailOutboxDao.selectRecent(limit);
+    }
+
+    @Scheduled(fixedDelayString = "${email-outbox.poll-ms:30000}")
+    public void wakeDispatcher() {
+        if (dispatchQueued.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::dispatchDue);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; queued rows are sent after the next start
+                dispatchQueued.set(false);
+            }
+        }
+    }
+
+    void dispatchDue() {
+        dispatchQueued.set(false);
+        try {
+            int requeued = emailOutboxDao.requeueAbandoned(claimTimeoutMillis);
+            if (requeued > 0) {
+                logger.info("Requeued {} summary emails whose sender stopped mid-send", requeued);
+            }
+            for (EmailOutboxEntry entry : emailOutboxDao.selectDue(Instant.now(), DISPATCH_BATCH_SIZE)) {
+                if (emailOutboxDao.claim(entry.getOutboxId())) {
+                    send(entry, entry.getAttempts() + 1);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Email outbox dispatch failed; will retry on the next poll", e);
+        }
+    }
+
+    private void send(EmailOutboxEntry entry, int attempt) {
+        long start = System.nanoTime();
+        try {
+            emailService.sendWorksheetEmail(buildWorksheet(entry.getReportDate()), Collections.emptyList(), entry.getReportDate());
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            emailOutboxDao.markSent(entry.getOutboxId(), latencyMs, Instant.now());
+            logger.info("Summary email for {} sent on attempt {} in {} ms", entry.getReportDate(), attempt, latencyMs);
+        } catch (RuntimeException e) {
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            boolean giveUp = attempt >= maxAttempts;
+            Instant nextAttemptAt = Instant.now().plusMillis(backoffMillis(attempt));
+            emailOutboxDao.markFailed(entry.getOutboxId(), latencyMs, e.getMessage(), nextAttemptAt, giveUp);
+            if (giveUp) {
+                logger.error("Giving up on summary email for {} after {} attempts", entry.getReportDate(), attempt, e);
+            } else {
+                logger.warn("Summary email for {} failed on attempt {}; retrying at {}: {}",
+                        entry.getReportDate(), attempt, nextAttemptAt, e.getMessage());
+            }
+        }
+    }
+
+    // The report is built when it is sent, so a retry carries the day's latest shifts
+    private ByteArrayResource buildWorksheet(LocalDate reportDate) {
+        List<UserShiftRow> userShifts = shiftService.retrieveUserShifts(reportDate);
+        ByteArrayResource worksheet = worksheetMetrics.measure("email",
+                () -> new WorkSheetBuilder().populateWorkbook(userShifts).toFile());
+        if (worksheet == null) {
+            throw new IllegalStateException("Could not build the worksheet for " + reportDate);
+        }
+        return worksheet;
+    }
+
+    /**
+     * base * 2^(attempt - 1), capped at the maximum.
+     */
+    long backoffMillis(int attempt) {
+        int doublings = Math.min(Math.max(attempt - 1, 0), 30);
+        return Math.min(maxBackoffMillis, baseBackoffMillis << doublings);
+    }
+
+    /**
+     * Wakes the worker once the enqueuing transaction commits, so it never reads before the row
+     * is visible; without a transaction, right away.
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+}
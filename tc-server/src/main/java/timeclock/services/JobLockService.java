@@ -0,0 +1,166 @@
+package timeclock.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import timeclock.daos.JobLockDao;
+import timeclock.models.JobLock;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Makes a scheduled job run on one instance at a time. Every instance's @Scheduled method still
+ * fires; only the one that takes the job's lease in JobLocks runs it, and the rest skip. The
+ * lease is renewed in the background while the job works, so a long job keeps it and a crashed
+ * instance's lease runs out for someone else to take.
+ */
+@Service
+public class JobLockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLockService.class);
+
+    private final JobLockDao jobLockDao;
+    private final long leaseMillis;
+    private final String owner;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JobLockService(JobLockDao jobLockDao,
+                          @Value("${job-locks.lease-ms:60000}") long leaseMillis,
+                          @Value("${job-locks.owner:}") String owner) {
+        this.jobLockDao = jobLockDao;
+        this.leaseMillis = leaseMillis;
+        // The random part keeps a restarted instance from being mistaken for its previous life
+        this.owner = (owner == null || owner.isBlank() ? hostName() : owner) + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public List<JobLock> getJobLocks() {
+        return jobLockDao.selectAll();
+    }
+
+    public boolean runExclusively(String jobName, long minIntervalMillis, Runnable job) {
+        return runExclusively(jobName, minIntervalMillis, lease -> job.run());
+    }
+
+    /**
+     * Runs the job here if this instance takes its lease, and returns false without running it
+     * if another instance holds the lease or the job already started within minIntervalMillis.
+     * A job that writes something which must not happen twice can check
+     * {@link JobLease#isHeld()} first.
+     */
+    public boolean runExclusively(String jobName, long minIntervalMillis, Consumer<JobLease> job) {
+        Long fencingToken = jobLockDao.acquire(jobName, owner, leaseMillis, minIntervalMillis);
+        if (fencingToken == null) {
+            logger.info("Skipping {}: another instance holds it or it ran within the last {} ms", jobName, minIntervalMillis);
+            return false;
+        }
+
+        JobLease lease = new JobLease(jobName, fencingToken);
+        long renewEvery = Math.max(1, leaseMillis / 3);
+        ScheduledFuture<?> renewal = renewer.scheduleWithFixedDelay(lease::renew, renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+        logger.info("Running {} with lease {} as {}", jobName, fencingToken, owner);
+
+        long start = System.nanoTime();
+        JobLock.Outcome outcome = JobLock.Outcome.FAILED;
+        Throwable failure = null;
+        try {
+            job.accept(lease);
+            outcome = JobLock.Outcome.SUCCEEDED;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            renewal.cancel(false);
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            try {
+                if (!jobLockDao.release(jobName, owner, fencingToken, durationMs, outcome, failure != null ? failure.toString() : null)) {
+                    logger.warn("{} finished after its lease {} was lost; the run was not recorded", jobName, fencingToken);
+                }
+            } catch (RuntimeException e) {
+                // The job's own failure is the one the caller needs; an unreleased lease just runs out
+                if (failure != null) {
+                    failure.addSuppressed(e);
+                } else {
+                    logger.warn("Could not release the lease on {} (token {}); it expires in {} ms", jobName, fencingToken, leaseMillis, e);
+                }
+            }
+            logger.info("{} {} in {} ms", jobName, outcome, durationMs);
+        }
+        return true;
+    }
+
+    private static String hostName() {
+        String hostName = System.getenv("HOSTNAME");
+        if (hostName != null && !hostName.isBlank()) {
+            return hostName;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "instance";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    /**
+     * One run's hold on a job, identified by its fencing token.
+     */
+    public class JobLease {
+
+        private final String jobName;
+        private final long fencingToken;
+        private volatile boolean lost;
+
+        private JobLease(String jobName, long fencingToken) {
+            this.jobName = jobName;
+            this.fencingToken = fencingToken;
+        }
+
+        public long getFencingToken() {
+            return fencingToken;
+        }
+
+        /**
+         * Checks with the database that this run still holds the lease.
+         */
+        public boolean isHeld() {
+            return !lost && jobLockDao.isHeld(jobName, owner, fencingToken);
+        }
+
+        private void renew() {
+            if (lost) {
+                return;
+            }
+            try {
+                if (!jobLockDao.renew(jobName, owner, fencingToken, leaseMillis)) {
+                    lost = true;
+                    logger.warn("Lost the lease on {} (token {}) while it was still running", jobName, fencingToken);
+                }
+            } catch (RuntimeException e) {
+                // Keep trying; if the database stays away the lease runs out and isHeld says so
+                logger.warn("Could not renew the lease on {}: {}", jobName, e.getMessage());
+            }
+        }
+    }
+}
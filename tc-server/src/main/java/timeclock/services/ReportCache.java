@@ -0,0 +1,344 @@
+package timeclock.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import timeclock.models.ChangeEvent;
+import timeclock.models.ShiftEvent;
+import timeclock.utilities.DateUtility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finished daily spreadsheets for days before today, which only change when someone edits,
+ * deletes or purges their shifts. Reports are kept in memory up to a byte budget, least
+ * recently used first out; with a spill directory, reports pushed out of memory are moved to
+ * disk instead of dropped.
+ * <p>
+ * Each date has a data version that goes up whenever a committed shift change touches that
+ * date. A report is only stored if its date's version is the one it was built under, so a
+ * build that raced an edit is thrown away instead of cached. Reports also carry the roster
+ * version they were built with, since they include names and contact details.
+ */
+@Service
+public class ReportCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportCache.class);
+
+    private static final String SPILL_FILE_PREFIX = "report-";
+
+    private final long maxMemoryBytes;
+    private final long maxEntryBytes;
+    private final long maxDiskBytes;
+    private final Path spillDirectory;
+
+    private final ConcurrentHashMap<LocalDate, Long> dateVersions = new ConcurrentHashMap<>();
+    // Access-ordered, so iteration starts at the least recently used report; guarded by itself
+    private final LinkedHashMap<LocalDate, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    public ReportCache(@Value("${report-cache.max-memory-bytes:16777216}") long maxMemoryBytes,
+                       @Value("${report-cache.max-entry-bytes:4194304}") long maxEntryBytes,
+                       @Value("${report-cache.max-disk-bytes:268435456}") long maxDiskBytes,
+                       @Value("${report-cache.spill-dir:}") String spillDirectory) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.spillDirectory = spillDirectory == null || spillDirectory.isBlank() ? null : Path.of(spillDirectory);
+        if (this.spillDirectory != null) {
+            prepareSpillDirectory();
+        }
+    }
+
+    /**
+     * Only days that are over are cached; today's report changes with every clock-in.
+     */
+    public boolean isCacheable(LocalDate date) {
+        return date.isBefore(DateUtility.todayCentralTime());
+    }
+
+    /**
+     * Writes the cached report for the date to out and returns true, or returns false
+     * without writing anything if there is no current report.
+     */
+    public boolean writeTo(LocalDate date, long rosterVersion, OutputStream out) throws IOException {
+        byte[] bytes;
+        InputStream file;
+        synchronized (entries) {
+            Entry entry = entries.get(date);
+            if (entry == null || entry.rosterVersion != rosterVersion) {
+                return false;
+            }
+            bytes = entry.bytes;
+            // Opened under the lock so a concurrent invalidation can't delete it first;
+            // once open, the file stays readable after it is deleted
+            file = bytes == null ? Files.newInputStream(entry.file) : null;
+        }
+
+        if (bytes != null) {
+            out.write(bytes);
+        } else {
+            try (InputStream in = file) {
+                in.transferTo(out);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps the stream a report is being written to so the bytes are kept as they pass
+     * through; call {@link Recording#store()} once the report is complete to cache it.
+     * Reports larger than the per-entry limit pass through without being kept.
+     */
+    public Recording record(LocalDate date, long rosterVersion, OutputStream out) {
+        // Registering the date lets invalidatePriorTo bump it even before anything is cached
+        return new Recording(out, date, dateVersions.computeIfAbsent(date, day -> 0L), rosterVersion);
+    }
+
+    /**
+     * Runs once the shift change has committed. A build that read the old data started before
+     * this, under the old version, so its report is refused by store.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onShiftEvent(ShiftEvent event) {
+        LocalDate workDate = event.getWorkDate();
+        if (workDate == null) {
+            return;
+        }
+        if (event.getType() == ShiftEvent.Type.PURGE) {
+            invalidatePriorTo(workDate);
+        } else {
+            invalidate(workDate);
+        }
+    }
+
+    /**
+     * The same, for shift changes made on any instance, read back from the change log.
+     */
+    @EventListener
+    public void onChange(ChangeEvent change) {
+        if (change.getEntity() != ChangeEvent.Entity.SHIFT || change.getWorkDate() == null) {
+            return;
+        }
+        if (change.getOp() == ChangeEvent.Op.PURGE) {
+            invalidatePriorTo(change.getWorkDate());
+        } else {
+            invalidate(change.getWorkDate());
+        }
+    }
+
+    public void invalidate(LocalDate date) {
+        synchronized (entries) {
+            dateVersions.merge(date, 1L, Long::sum);
+            Entry removed = entries.remove(date);
+            if (removed != null) {
+                release(removed);
+            }
+        }
+    }
+
+    public void invalidatePriorTo(LocalDate date) {
+        synchronized (entries) {
+            dateVersions.replaceAll((day, version) -> day.isBefore(date) ? version + 1 : version);
+            Iterator<Map.Entry<LocalDate, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<LocalDate, Entry> cached = iterator.next();
+                if (cached.getKey().isBefore(date)) {
+                    iterator.remove();
+                    release(cached.getValue());
+                }
+            }
+        }
+    }
+
+    public long getMemoryBytes() {
+        synchronized (entries) {
+            return memoryBytes;
+        }
+    }
+
+    public long getDiskBytes() {
+        synchronized (entries) {
+            return diskBytes;
+        }
+    }
+
+    private void store(LocalDate date, long dateVersion, long rosterVersion, byte[] bytes) {
+        synchronized (entries) {
+            if (dateVersions.getOrDefault(date, 0L) != dateVersion) {
+                return;
+            }
+            Entry previous = entries.put(date, new Entry(rosterVersion, bytes));
+            if (previous != null) {
+                release(previous);
+            }
+            memoryBytes += bytes.length;
+            evictFromMemory();
+            evictFromDisk();
+        }
+    }
+
+    private void evictFromMemory() {
+        Iterator<Map.Entry<LocalDate, Entry>> iterator = entries.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            Map.Entry<LocalDate, Entry> eldest = iterator.next();
+            Entry entry = eldest.getValue();
+            if (entry.bytes == null) {
+                continue;
+            }
+            memoryBytes -= entry.bytes.length;
+            if (!spill(eldest.getKey(), entry)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evictFromDisk() {
+        Iterator<Map.Entry<LocalDate, Entry>> iterator = entries.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.file != null) {
+                iterator.remove();
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * Moves a report's bytes to the spill directory. False if there is none or the write fails.
+     */
+    private boolean spill(LocalDate date, Entry entry) {
+        if (spillDirectory == null) {
+            return false;
+        }
+        try {
+            Path file = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX + date + "-", ".xlsx");
+            Files.write(file, entry.bytes);
+            diskBytes += entry.bytes.length;
+            entry.file = file;
+            entry.size = entry.bytes.length;
+            entry.bytes = null;
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not spill the {} report to {}", date, spillDirectory, e);
+            return false;
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.bytes != null) {
+            memoryBytes -= entry.bytes.length;
+        } else if (entry.file != null) {
+            diskBytes -= entry.size;
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                logger.warn("Could not delete spilled report {}", entry.file, e);
+            }
+        }
+    }
+
+    /**
+     * Versions restart with the process, so files left by an earlier run can't be trusted.
+     */
+    private void prepareSpillDirectory() {
+        try {
+            Files.createDirectories(spillDirectory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*.xlsx")) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare report spill directory " + spillDirectory, e);
+        }
+    }
+
+    @PreDestroy
+    public void clear() {
+        synchronized (entries) {
+            entries.values().forEach(this::release);
+            entries.clear();
+        }
+    }
+
+    private static class Entry {
+        private final long rosterVersion;
+        private byte[] bytes;
+        private Path file;
+        private long size;
+
+        Entry(long rosterVersion, byte[] bytes) {
+            this.rosterVersion = rosterVersion;
+            this.bytes = bytes;
+        }
+    }
+
+    public class Recording extends FilterOutputStream {
+
+        private final LocalDate date;
+        private final long dateVersion;
+        private final long rosterVersion;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private Recording(OutputStream out, LocalDate date, long dateVersion, long rosterVersion) {
+            super(out);
+            this.date = date;
+            this.dateVersion = dateVersion;
+            this.rosterVersion = rosterVersion;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        private void checkSize() {
+            if (copy.size() > maxEntryBytes) {
+                copy = null;
+            }
+        }
+
+        /**
+         * Caches the report written so far, unless it grew too large or its date changed
+         * while it was being built.
+         */
+        public void store() {
+            if (copy != null) {
+                ReportCache.this.store(date, dateVersion, rosterVersion, copy.toByteArray());
+                copy = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package timeclock.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import timeclock.models.ChangeEvent;
+import timeclock.models.ShiftEvent;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans committed shift events out to /api/shifts/stream subscribers.
+ *
+ * Each event is serialized once, given the next id and appended to a bounded ring buffer, then
+ * offered to every subscriber's own bounded queue. A subscriber only gets a (virtual) sender
+ * thread while its queue has something in it, so idle connections cost a queue and an emitter,
+ * and one slow client never delays the others. A client whose queue fills up is disconnected;
+ * its EventSource reconnects with Last-Event-ID and catches up from the ring buffer. A resume
+ * from further back than the buffer holds gets a "reset" event telling it to refetch instead.
+ * <p>
+ * Shift writes made on other instances arrive as ChangeEvents from the ChangeLogPoller and are
+ * broadcast too, carrying only the shift id since subscribers refetch on any event. Writes made
+ * here come back the same way a poll later; each local broadcast is remembered by shift id (or
+ * purge date) so its own ChangeEvent is skipped instead of being sent twice.
+ */
+@Service
+public class ShiftEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShiftEventBroadcaster.class);
+
+    private static final long RECONNECT_MILLIS = 5000;
+    // Longer than any poll and change log gap wait, so a local write's ChangeEvent is still matched
+    private static final long LOCAL_WRITE_MEMORY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int subscriberQueueSize;
+    private final long emitterTimeoutMillis;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // Guarded by itself. Ids start from the boot time, so an id remembered from before a
+    // restart is always older than the buffer and gets a reset rather than a wrong replay.
+    private final ArrayDeque<BufferedEvent> buffer = new ArrayDeque<>();
+    private long lastEventId = System.currentTimeMillis() * 1000;
+
+    // Guarded by itself: broadcast times of local writes whose ChangeEvent hasn't been seen yet
+    private final Map<String, Deque<Long>> localWrites = new HashMap<>();
+
+    public ShiftEventBroadcaster(ObjectMapper objectMapper,
+                                 @Value("${shift-stream.buffer-size:256}") int bufferSize,
+                                 @Value("${shift-stream.subscriber-queue-size:64}") int subscriberQueueSize,
+                                 @Value("${shift-stream.timeout-ms:1800000}") long emitterTimeoutMillis) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(emitterTimeoutMillis), lastEventId);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, String lastEventIdHeader) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        emitter.onTimeout(emitter::complete);
+
+        Long resumeAfter = parseEventId(lastEventIdHeader);
+        synchronized (buffer) {
+            // Register and replay under the lock so nothing published meanwhile is missed or doubled
+            subscribers.add(subscriber);
+            subscriber.enqueue(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("connected"));
+            if (resumeAfter != null) {
+                long oldestId = buffer.isEmpty() ? lastEventId + 1 : buffer.peekFirst().id();
+                if (resumeAfter < oldestId - 1 || resumeAfter > lastEventId) {
+                    subscriber.enqueue(SseEmitter.event().id(Long.toString(lastEventId)).name("reset").data("{}"));
+                } else {
+                    buffer.stream().filter(event -> event.id() > resumeAfter).forEach(event -> subscriber.enqueue(event.toSse()));
+                }
+            }
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onShiftEvent(ShiftEvent event) {
+        String key = event.getType() == ShiftEvent.Type.PURGE ? purgeKey(event.getWorkDate()) : Integer.toString(event.getShiftId());
+        synchronized (localWrites) {
+            localWrites.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(System.nanoTime());
+        }
+        broadcast(event);
+    }
+
+    /**
+     * A shift written on any instance, this one included. Changes this instance already
+     * broadcast are skipped; the rest are sent on as clock-in, edit, delete or purge.
+     */
+    @EventListener
+    public void onChange(ChangeEvent change) {
+        if (change.getEntity() != ChangeEvent.Entity.SHIFT) {
+            return;
+        }
+        String key = change.getOp() == ChangeEvent.Op.PURGE ? purgeKey(change.getWorkDate()) : change.getEntityId();
+        if (wasWrittenHere(key)) {
+            return;
+        }
+
+        ShiftEvent.Type type = switch (change.getOp()) {
+            case INSERT -> ShiftEvent.Type.CLOCK_IN;
+            case DELETE -> ShiftEvent.Type.DELETE;
+            case PURGE -> ShiftEvent.Type.PURGE;
+            default -> ShiftEvent.Type.EDIT;
+        };
+        int shiftId = change.getOp() == ChangeEvent.Op.PURGE ? 0 : Integer.parseInt(change.getEntityId());
+        broadcast(new ShiftEvent(type, shiftId, null, null, change.getWorkDate()));
+    }
+
+    /**
+     * Consumes the oldest remembered local write for the key, forgetting any too old to still be
+     * matched (an edit that moved days logs two changes, so one can be left over).
+     */
+    private boolean wasWrittenHere(String key) {
+        long now = System.nanoTime();
+        synchronized (localWrites) {
+            localWrites.values().forEach(times -> times.removeIf(time -> now - time > LOCAL_WRITE_MEMORY_NANOS));
+            localWrites.values().removeIf(Deque::isEmpty);
+            Deque<Long> times = localWrites.get(key);
+            if (times == null) {
+                return false;
+            }
+            times.removeFirst();
+            if (times.isEmpty()) {
+                localWrites.remove(key);
+            }
+            return true;
+        }
+    }
+
+    private static String purgeKey(LocalDate cutoff) {
+        return "purge:" + cutoff;
+    }
+
+    private void broadcast(ShiftEvent event) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize shift event {}", event.getType(), e);
+            return;
+        }
+
+        synchronized (buffer) {
+            BufferedEvent buffered = new BufferedEvent(++lastEventId, event.getType().getEventName(), json);
+            buffer.addLast(buffered);
+            if (buffer.size() > bufferSize) {
+                buffer.removeFirst();
+            }
+            subscribers.forEach(subscriber -> subscriber.enqueue(buffered.toSse()));
+        }
+    }
+
+    /**
+     * Keeps idle connections from being closed by proxies and notices clients that went away.
+     */
+    @Scheduled(fixedRateString = "${shift-stream.heartbeat-ms:15000}")
+    public void sendHeartbeat() {
+        subscribers.forEach(subscriber -> subscriber.enqueue(SseEmitter.event().comment("heartbeat")));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private record BufferedEvent(long id, String name, String json) {
+
+        // Builders are single use, so each subscriber gets its own around the shared JSON
+        SseEmitter.SseEventBuilder toSse() {
+            return SseEmitter.event().id(Long.toString(id)).name(name).data(json);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        // Room for a full replay on top of the live backlog
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new LinkedBlockingQueue<>(bufferSize + subscriberQueueSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                logger.debug("Dropping slow shift stream subscriber");
+                close();
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        /**
+         * Sends everything queued, in order. Only one drain runs per subscriber at a time.
+         */
+        private void drain() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        // Client went away; the container reports the error to the emitter as well
+                        close();
+                    }
+                }
+                draining.set(false);
+            } while (!closed && !queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package timeclock.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import timeclock.models.ShiftPurgeJob;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletes old shifts in the background, one primary-key batch at a time with a pause in
+ * between, so a large purge never holds locks long enough to block kiosk clock-ins.
+ * Only one purge runs at a time, and only the most recent finished jobs are kept for status
+ * requests.
+ */
+@Service
+public class ShiftPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShiftPurgeService.class);
+
+    static final int MAX_FINISHED_JOBS = 20;
+
+    private final ShiftService shiftService;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shift-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, ShiftPurgeJob> jobs = new ConcurrentHashMap<>();
+    private volatile ShiftPurgeJob runningJob;
+
+    public ShiftPurgeService(ShiftService shiftService,
+                             @Value("${purge.batch-size:500}") int batchSize,
+                             @Value("${purge.pause-ms:250}") long pauseMillis) {
+        this.shiftService = shiftService;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public synchronized ShiftPurgeJob startPurge(LocalDate date) {
+        if (runningJob != null && runningJob.getStatus() == ShiftPurgeJob.Status.RUNNING) {
+            throw new IllegalStateException("A shift purge is already running: " + runningJob.getJobId());
+        }
+
+        ShiftPurgeJob job = new ShiftPurgeJob(UUID.randomUUID().toString(), date.toString(), shiftService.countShiftsPriorToDate(date));
+        forgetOldJobs();
+        jobs.put(job.getJobId(), job);
+        runningJob = job;
+        executor.submit(() -> run(job, date));
+        logger.info("Started purge {} of {} shifts prior to {}", job.getJobId(), job.getTotalShifts(), date);
+        return job;
+    }
+
+    public ShiftPurgeJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public ShiftPurgeJob cancel(String jobId) {
+        ShiftPurgeJob job = jobs.get(jobId);
+        if (job != null) {
+            job.setCancelRequested(true);
+        }
+        return job;
+    }
+
+    /**
+     * Drops all but the newest finished jobs, so the map doesn't grow with every purge.
+     */
+    private void forgetOldJobs() {
+        List<ShiftPurgeJob> finished = jobs.values().stream()
+                .filter(job -> job.getStatus() != ShiftPurgeJob.Status.RUNNING)
+                .sorted(Comparator.comparing(ShiftPurgeJob::getStartedAt).reversed())
+                .toList();
+        for (ShiftPurgeJob job : finished.subList(Math.min(finished.size(), MAX_FINISHED_JOBS), finished.size())) {
+            jobs.remove(job.getJobId());
+        }
+    }
+
+    private void run(ShiftPurgeJob job, LocalDate date) {
+        try {
+            while (!job.isCancelRequested()) {
+                int deleted = shiftService.deleteShiftBatchPriorToDate(date, batchSize);
+                job.setDeletedShifts(job.getDeletedShifts() + deleted);
+                if (deleted < batchSize) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+            if (job.isCancelRequested()) {
+                job.setStatus(ShiftPurgeJob.Status.CANCELLED);
+            } else {
+                shiftService.deleteDailyTotalsPriorToDate(date);
+                job.setStatus(ShiftPurgeJob.Status.COMPLETED);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.setStatus(ShiftPurgeJob.Status.CANCELLED);
+        } catch (RuntimeException e) {
+            logger.error("Purge {} failed after deleting {} shifts", job.getJobId(), job.getDeletedShifts(), e);
+            job.setError(e.getMessage());
+            job.setStatus(ShiftPurgeJob.Status.FAILED);
+        } finally {
+            job.setFinishedAt(Instant.now());
+            // Purged shifts may have included stale open shifts
+            shiftService.loadOpenShifts();
+            logger.info("Purge {} {}: deleted {} of {} shifts prior to {}",
+                    job.getJobId(), job.getStatus(), job.getDeletedShifts(), job.getTotalShifts(), date);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ShiftPurgeJob job = runningJob;
+        if (job != null) {
+            job.setCancelRequested(true);
+        }
+        executor.shutdownNow();
+    }
+}
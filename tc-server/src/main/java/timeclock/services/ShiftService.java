@@ -1,19 +1,41 @@
 package timeclock.services;
 
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import timeclock.daos.DailyUserTotalsDao;
 import timeclock.daos.ShiftDao;
+import timeclock.models.ChangeEvent;
 import timeclock.models.Shift;
+import timeclock.models.ShiftEvent;
+import timeclock.models.ShiftHistoryPage;
 import timeclock.models.User;
+import timeclock.models.UserHoursTotal;
 import timeclock.models.UserShiftRow;
 import timeclock.utilities.DateUtility;
-import timeclock.utilities.TimeCalculatorUtility;
+import timeclock.utilities.DurationEngine;
 
-import java.sql.Timestamp;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class ShiftService {
@@ -21,39 +43,345 @@ public class ShiftService {
     private static final Logger logger = LoggerFactory.getLogger(ShiftService.class);
 
     private final ShiftDao shiftDao;
+    private final DailyUserTotalsDao dailyUserTotalsDao;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ShiftService(ShiftDao shiftDao) {
+    // Open shifts keyed by userId, so duplicate clock-ins and "who is on site" never need a query.
+    // A reservation with shiftId 0 holds the slot until the insert returns and it is replaced.
+    private final ConcurrentHashMap<String, Shift> openShiftsByUser = new ConcurrentHashMap<>();
+
+    // Increases on every shift write so readers (ETags) can tell whether shift data may have changed
+    private final AtomicLong shiftVersion = new AtomicLong();
+
+    public ShiftService(ShiftDao shiftDao, DailyUserTotalsDao dailyUserTotalsDao, ApplicationEventPublisher eventPublisher) {
         this.shiftDao = shiftDao;
+        this.dailyUserTotalsDao = dailyUserTotalsDao;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Syncs the registry with the open shifts in the database. Runs at startup and after bulk
+     * deletes; in-flight reservations are left alone so concurrent clock-ins aren't lost.
+     */
+    @PostConstruct
+    public void loadOpenShifts() {
+        List<Shift> openShifts = shiftDao.selectOpenShifts();
+        Set<Integer> openShiftIds = openShifts.stream().map(Shift::getShiftId).collect(Collectors.toSet());
+        openShiftsByUser.values().removeIf(open -> open.getShiftId() > 0 && !openShiftIds.contains(open.getShiftId()));
+
+        for (Shift shift : openShifts) {
+            Shift previous = openShiftsByUser.putIfAbsent(shift.getUserId(), shift);
+            if (previous != null && previous.getShiftId() != shift.getShiftId()) {
+                logger.warn("{} has more than one open shift ({} and {})", shift.getName(), previous.getShiftId(), shift.getShiftId());
+            }
+        }
+        logger.info("Loaded {} open shifts", openShiftsByUser.size());
+    }
+
+    public List<Shift> getOpenShifts() {
+        return openShiftsByUser.values().stream()
+                .filter(shift -> shift.getShiftId() > 0)
+                .sorted(Comparator.comparingInt(Shift::getShiftId))
+                .collect(Collectors.toList());
+    }
+
+    public long getShiftVersion() {
+        return shiftVersion.get();
+    }
+
+    public boolean hasOpenShift(String userId) {
+        return openShiftsByUser.containsKey(userId);
     }
 
     public List<Shift> findShiftsByDate(LocalDate date) {
         return shiftDao.selectShiftsByDate(date);
     }
 
-    public String clockOutShift(Shift shift) {
-        logger.info("{} is clocking out. Worked [{} - {}]", shift.getName(), shift.getClockIn(), shift.getClockOut());
-        String timeWorked = TimeCalculatorUtility.calculateTimeSpent(shift.getClockIn(), shift.getClockOut());
-        shiftDao.clockOutShift(shift.getShiftId(), DateUtility.now(), timeWorked);
+    /**
+     * Closes the shift now. Worked time comes from the stored clock-in instant, so shifts that
+     * run past midnight need no guessing. A clock-in that is not yet past (an edit from before
+     * updateShift refused future clock-ins, or clock-in and out in the same instant) closes the
+     * shift at its clock-in with no time worked.
+     */
+    public String clockOutShift(int shiftId) {
+        Shift shift = shiftDao.selectShiftById(shiftId);
+        if (shift == null) {
+            throw new IllegalArgumentException("Shift " + shiftId + " not found");
+        }
+
+        Instant clockOutAt = Instant.now();
+        int workedMinutes;
+        if (shift.getClockInAt().isBefore(clockOutAt)) {
+            workedMinutes = (int) DurationEngine.minutesBetween(shift.getClockInAt(), clockOutAt);
+        } else {
+            clockOutAt = shift.getClockInAt();
+            workedMinutes = 0;
+        }
+        String timeWorked = DurationEngine.formatMinutes(workedMinutes);
+        logger.info("{} is clocking out. Worked [{} - {}]", shift.getName(), shift.getClockIn(), DateUtility.formatClockTime(clockOutAt));
+
+        shiftDao.clockOutShift(shiftId, clockOutAt, timeWorked, workedMinutes);
+        markShiftsChanged();
+        closeOpenShift(shiftId);
+        refreshDailyTotals(shift);
+        publish(ShiftEvent.Type.CLOCK_OUT, shiftId, shift.getUserId(), shift.getName(), DateUtility.centralDate(shift.getClockInAt()));
         return timeWorked;
     }
 
     public void startNewShift(User user) {
-        shiftDao.insertNewShift(user, DateUtility.now());
+        Shift reservation = reserveOpenShift(user);
+        if (reservation == null) {
+            throw new IllegalStateException(user.getName() + " is already clocked in");
+        }
+
+        try {
+            Instant clockIn = Instant.now();
+            int shiftId = shiftDao.insertNewShift(user, clockIn);
+            activateOpenShift(reservation, shiftId, clockIn);
+            markShiftsChanged();
+            publish(ShiftEvent.Type.CLOCK_IN, shiftId, user.getUserId(), user.getName(), DateUtility.centralDate(clockIn));
+        } catch (RuntimeException e) {
+            openShiftsByUser.remove(user.getUserId(), reservation);
+            throw e;
+        }
     }
 
+    /**
+     * Starts a shift for every user in one batch insert. Returns userId -> new shiftId.
+     * Users who are already clocked in are skipped and reported in rejected.
+     */
+    public Map<String, Integer> startNewShifts(List<User> users, Map<String, String> rejected) {
+        List<User> usersToStart = new ArrayList<>();
+        List<Shift> reservations = new ArrayList<>();
+        for (User user : users) {
+            Shift reservation = reserveOpenShift(user);
+            if (reservation == null) {
+                rejected.put(user.getUserId(), "Already clocked in");
+            } else {
+                usersToStart.add(user);
+                reservations.add(reservation);
+            }
+        }
 
-    public void removeShift(String shiftId) {
+        Map<String, Integer> shiftIdsByUser = new LinkedHashMap<>();
+        if (usersToStart.isEmpty()) {
+            return shiftIdsByUser;
+        }
+
+        try {
+            Instant clockIn = Instant.now();
+            List<Integer> shiftIds = shiftDao.insertNewShifts(usersToStart, clockIn);
+            markShiftsChanged();
+            for (int i = 0; i < usersToStart.size(); i++) {
+                activateOpenShift(reservations.get(i), shiftIds.get(i), clockIn);
+                shiftIdsByUser.put(usersToStart.get(i).getUserId(), shiftIds.get(i));
+                publish(ShiftEvent.Type.CLOCK_IN, shiftIds.get(i), usersToStart.get(i).getUserId(), usersToStart.get(i).getName(),
+                        DateUtility.centralDate(clockIn));
+            }
+        } catch (RuntimeException e) {
+            reservations.forEach(reservation -> openShiftsByUser.remove(reservation.getUserId(), reservation));
+            throw e;
+        }
+        return shiftIdsByUser;
+    }
+
+    public void removeShift(int shiftId) {
         logger.info("Deleting shift: {}", shiftId);
+        Shift removed = shiftDao.selectShiftById(shiftId);
         shiftDao.removeShift(shiftId);
+        markShiftsChanged();
+        closeOpenShift(shiftId);
+        refreshDailyTotals(removed);
+        if (removed != null) {
+            publish(ShiftEvent.Type.DELETE, shiftId, removed.getUserId(), removed.getName(), DateUtility.centralDate(removed.getClockInAt()));
+        }
     }
 
-    public void updateShift(LocalDateTime clockInTimeUpdated, LocalDateTime clockOutTimeUpdated, String timeWorked, int shiftId) {
-        shiftDao.updateShift(
-                shiftId,
-                Timestamp.valueOf(clockInTimeUpdated),
-                clockOutTimeUpdated != null ? Timestamp.valueOf(clockOutTimeUpdated) : null,
-                timeWorked
-        );
+    /**
+     * Sets new clock in / clock out times of day on the shift's own Central Time date. A clock
+     * out earlier than the clock in is on the next day. A null clockOut reopens the shift, which
+     * is refused if its clock in is still ahead, since it could not be clocked out until then.
+     * Returns the formatted worked time ("" while open).
+     */
+    public String updateShift(int shiftId, LocalTime clockIn, LocalTime clockOut) {
+        Shift before = shiftDao.selectShiftById(shiftId);
+        long workDay = before != null ? DurationEngine.epochDay(before.getClockInAt().getEpochSecond())
+                : DateUtility.todayCentralTime().toEpochDay();
+        LocalDate workDate = LocalDate.ofEpochDay(workDay);
+        int clockInMinute = DurationEngine.minuteOfDay(clockIn);
+        long clockInSecond = DurationEngine.epochSecond(workDay, clockInMinute);
+        Instant clockInAt = Instant.ofEpochSecond(clockInSecond);
+
+        Instant clockOutAt = null;
+        Integer workedMinutes = null;
+        String timeWorked = "";
+        if (clockOut != null) {
+            int clockOutMinute = DurationEngine.minuteOfDay(clockOut);
+            long clockOutSecond = DurationEngine.epochSecond(
+                    DurationEngine.clockOutEpochDay(workDay, clockInMinute, clockOutMinute), clockOutMinute);
+            clockOutAt = Instant.ofEpochSecond(clockOutSecond);
+            workedMinutes = (int) DurationEngine.minutesBetween(clockInSecond, clockOutSecond);
+            timeWorked = DurationEngine.formatMinutes(workedMinutes);
+        } else if (clockInAt.isAfter(Instant.now())) {
+            throw new IllegalArgumentException("Invalid - Open shift clocked in after now");
+        }
+
+        shiftDao.updateShift(shiftId, clockInAt, clockOutAt, timeWorked, workedMinutes);
+        markShiftsChanged();
+
+        if (clockOutAt != null) {
+            closeOpenShift(shiftId);
+        } else {
+            reopenShift(shiftId);
+        }
+
+        if (before != null) {
+            refreshDailyTotals(before);
+            publish(ShiftEvent.Type.EDIT, shiftId, before.getUserId(), before.getName(), workDate);
+        }
+        return timeWorked;
+    }
+
+    /**
+     * Recomputes the DailyUserTotals row for the shift's user and day. Runs inside the caller's
+     * transaction so the rollup commits or rolls back together with the shift change.
+     */
+    private void refreshDailyTotals(Shift shift) {
+        if (shift != null) {
+            dailyUserTotalsDao.refreshUserDay(shift.getUserId(), DateUtility.centralDate(shift.getClockInAt()));
+        }
+    }
+
+    /**
+     * Rebuilds DailyUserTotals for every day in [from, to] from the raw shifts.
+     */
+    @Transactional
+    public int reconcileDailyTotals(LocalDate from, LocalDate to) {
+        int rows = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            rows += dailyUserTotalsDao.rebuildDay(day);
+        }
+        logger.info("Reconciled daily totals {} - {}: {} user days", from, to, rows);
+        return rows;
+    }
+
+    public List<UserHoursTotal> findTotals(LocalDate from, LocalDate to) {
+        return dailyUserTotalsDao.selectTotalsBetween(from, to);
+    }
+
+    public int deleteDailyTotalsPriorToDate(LocalDate date) {
+        return dailyUserTotalsDao.deletePriorToDate(date);
+    }
+
+    /**
+     * A shift was written on some instance, possibly this one. The registry entry for it is
+     * brought in line with the database; if that read raced a write still in flight here, the
+     * write's own change follows and settles it.
+     */
+    @EventListener
+    public void onChange(ChangeEvent change) {
+        if (change.getEntity() != ChangeEvent.Entity.SHIFT) {
+            return;
+        }
+        shiftVersion.incrementAndGet();
+        if (change.getOp() == ChangeEvent.Op.PURGE) {
+            Instant cutoff = DateUtility.startOfDayCentralTime(change.getWorkDate());
+            openShiftsByUser.values().removeIf(open -> open.getShiftId() > 0 && open.getClockInAt().isBefore(cutoff));
+            return;
+        }
+
+        int shiftId = Integer.parseInt(change.getEntityId());
+        Shift shift = shiftDao.selectShiftById(shiftId);
+        if (shift != null && shift.getClockOutAt() == null) {
+            openShiftsByUser.putIfAbsent(shift.getUserId(), shift);
+        } else {
+            openShiftsByUser.values().removeIf(open -> open.getShiftId() == shiftId);
+        }
+    }
+
+    /**
+     * Claims the open-shift slot for a user, or returns null if they already hold one.
+     */
+    private Shift reserveOpenShift(User user) {
+        Shift reservation = new Shift();
+        reservation.setUserId(user.getUserId());
+        reservation.setName(user.getName());
+        return openShiftsByUser.putIfAbsent(user.getUserId(), reservation) == null ? reservation : null;
+    }
+
+    private void activateOpenShift(Shift reservation, int shiftId, Instant clockIn) {
+        Shift shift = new Shift();
+        shift.setShiftId(shiftId);
+        shift.setUserId(reservation.getUserId());
+        shift.setName(reservation.getName());
+        shift.setClockInAt(clockIn);
+        openShiftsByUser.replace(shift.getUserId(), reservation, shift);
+        afterRollback(() -> openShiftsByUser.remove(shift.getUserId(), shift));
+    }
+
+    /**
+     * Drops a shift from the registry. Scans only the open shifts, which is bounded by who is on site.
+     */
+    private void closeOpenShift(int shiftId) {
+        openShiftsByUser.values().stream()
+                .filter(open -> open.getShiftId() == shiftId)
+                .findFirst()
+                .ifPresent(open -> {
+                    openShiftsByUser.remove(open.getUserId(), open);
+                    afterRollback(() -> openShiftsByUser.putIfAbsent(open.getUserId(), open));
+                });
+    }
+
+    private void reopenShift(int shiftId) {
+        Shift shift = shiftDao.selectShiftById(shiftId);
+        if (shift == null) {
+            return;
+        }
+        Shift previous = openShiftsByUser.putIfAbsent(shift.getUserId(), shift);
+        if (previous == null) {
+            afterRollback(() -> openShiftsByUser.remove(shift.getUserId(), shift));
+        } else if (previous.getShiftId() != shiftId) {
+            logger.warn("{} now has more than one open shift ({} and {})", shift.getName(), previous.getShiftId(), shiftId);
+        }
+    }
+
+    /**
+     * Bumps the shift version now and again when the surrounding transaction completes, so a
+     * read that raced the uncommitted write is never tagged with the final version.
+     */
+    private void markShiftsChanged() {
+        shiftVersion.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    shiftVersion.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Listeners bound to the transaction only see the event once the change has committed.
+     */
+    private void publish(ShiftEvent.Type type, int shiftId, String userId, String name, LocalDate workDate) {
+        eventPublisher.publishEvent(new ShiftEvent(type, shiftId, userId, name, workDate));
+    }
+
+    /**
+     * Undoes a registry change if the surrounding transaction does not commit.
+     */
+    private void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
     }
 
     public List<UserShiftRow> retrieveUserShiftsToday() {
@@ -64,13 +392,75 @@ public class ShiftService {
         return shiftDao.selectUserShiftRowsByDate(localDate);
     }
 
+    /**
+     * Every user shift row for the days from through to, inclusive, in one range query.
+     */
+    public List<UserShiftRow> retrieveUserShifts(LocalDate from, LocalDate to) {
+        return shiftDao.selectUserShiftRowsBetween(DateUtility.startOfDayCentralTime(from), DateUtility.startOfDayCentralTime(to.plusDays(1)));
+    }
+
+    public void streamUserShifts(LocalDate localDate, Consumer<UserShiftRow> consumer) {
+        shiftDao.streamUserShiftRowsByDate(localDate, consumer);
+    }
+
+    public void streamUserShifts(LocalDate from, LocalDate to, Consumer<UserShiftRow> consumer) {
+        shiftDao.streamUserShiftRowsBetween(DateUtility.startOfDayCentralTime(from), DateUtility.startOfDayCentralTime(to.plusDays(1)), consumer);
+    }
+
+    public boolean hasShiftsOnDate(LocalDate localDate) {
+        return shiftDao.countShiftsByDate(localDate) > 0;
+    }
+
+    /**
+     * Reads one page of shift history. The cursor is opaque to callers; it encodes the
+     * (clockIn, shiftId) of the last row returned so the next page seeks straight past it.
+     */
+    public ShiftHistoryPage findShiftHistory(String userId, LocalDate from, LocalDate to, Boolean open, String cursor, int limit) {
+        Instant afterClockIn = null;
+        Integer afterShiftId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                afterClockIn = Instant.ofEpochMilli(Long.parseLong(parts[0]));
+                afterShiftId = Integer.parseInt(parts[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+
+        // Fetch one extra row to learn whether another page exists
+        List<Shift> shifts = shiftDao.selectShiftHistoryPage(
+                userId,
+                from != null ? DateUtility.startOfDayCentralTime(from) : null,
+                to != null ? DateUtility.startOfDayCentralTime(to.plusDays(1)) : null,
+                open,
+                afterClockIn,
+                afterShiftId,
+                limit + 1
+        );
+
+        ShiftHistoryPage page = new ShiftHistoryPage();
+        if (shifts.size() > limit) {
+            shifts = shifts.subList(0, limit);
+            Shift last = shifts.get(limit - 1);
+            String key = last.getClockInAt().toEpochMilli() + ":" + last.getShiftId();
+            page.setNextCursor(Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8)));
+        }
+        page.setShifts(shifts);
+        return page;
+    }
+
     public boolean hasShifts(String userId) {
         return shiftDao.countShiftsByUserId(userId) > 0;
     }
 
-    public int deleteShiftsPriorToDate(LocalDate date) {
-        logger.info("Deleting all shifts prior to: {}", date);
-        return shiftDao.deleteShiftsPriorToDate(date);
+    public int deleteShiftBatchPriorToDate(LocalDate date, int batchSize) {
+        int deleted = shiftDao.deleteShiftBatchPriorToDate(date, batchSize);
+        if (deleted > 0) {
+            markShiftsChanged();
+            publish(ShiftEvent.Type.PURGE, 0, null, null, date);
+        }
+        return deleted;
     }
 
     public int countShiftsPriorToDate(LocalDate date) {
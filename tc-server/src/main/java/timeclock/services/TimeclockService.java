@@ -1,24 +1,42 @@
 package timeclock.services;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import timeclock.metrics.WorksheetMetrics;
+import timeclock.models.EmailOutboxEntry;
 import timeclock.models.Shift;
+import timeclock.models.ShiftHistoryPage;
+import timeclock.models.ShiftPurgeJob;
+import timeclock.models.ShiftUpdateRequest;
 import timeclock.models.User;
+import timeclock.models.UserHoursTotal;
 import timeclock.models.UserShiftRow;
 import timeclock.utilities.DateUtility;
-import timeclock.utilities.TimeCalculatorUtility;
+import timeclock.utilities.ShiftExportWriter;
 import timeclock.utilities.WorkSheetBuilder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Collections;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -26,14 +44,31 @@ public class TimeclockService {
 
     private static final Logger logger = LoggerFactory.getLogger(TimeclockService.class);
 
+    private static final int SPREADSHEET_ROW_WINDOW = 100;
+    private static final int MAX_SPREADSHEET_PERIOD_DAYS = 31;
+
     private final UserService userService;
     private final ShiftService shiftService;
-    private final EmailService emailService;
-
-    public TimeclockService(UserService userService, ShiftService shiftService, EmailService emailService) {
+    private final EmailOutboxService emailOutboxService;
+    private final ShiftPurgeService shiftPurgeService;
+    private final ShiftEventBroadcaster shiftEventBroadcaster;
+    private final ReportCache reportCache;
+    private final WorksheetMetrics worksheetMetrics;
+
+    // Sorts pay-period day rows and copies their cell values in parallel, bounded so one export can't take
+    // every core. Writing them into the POI workbook stays serial on the calling thread.
+    private final ForkJoinPool sheetPool = new ForkJoinPool(Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    public TimeclockService(UserService userService, ShiftService shiftService, EmailOutboxService emailOutboxService,
+                            ShiftPurgeService shiftPurgeService, ShiftEventBroadcaster shiftEventBroadcaster,
+                            ReportCache reportCache, WorksheetMetrics worksheetMetrics) {
         this.userService = userService;
         this.shiftService = shiftService;
-        this.emailService = emailService;
+        this.emailOutboxService = emailOutboxService;
+        this.shiftPurgeService = shiftPurgeService;
+        this.shiftEventBroadcaster = shiftEventBroadcaster;
+        this.reportCache = reportCache;
+        this.worksheetMetrics = worksheetMetrics;
     }
 
     public List<User> getAllUsers() {
@@ -44,6 +79,10 @@ public class TimeclockService {
         return userService.getAllUsersIncludingHidden();
     }
 
+    public long getRosterVersion() {
+        return userService.getRosterVersion();
+    }
+
     public User getUserById(String userId) {
         return userService.getUserById(userId);
     }
@@ -87,8 +126,16 @@ public class TimeclockService {
         userService.unhideUser(userId);
     }
 
-    public int deleteShiftsPriorToDate(LocalDate date) {
-        return shiftService.deleteShiftsPriorToDate(date);
+    public ShiftPurgeJob deleteShiftsPriorToDate(LocalDate date) {
+        return shiftPurgeService.startPurge(date);
+    }
+
+    public ShiftPurgeJob getShiftPurgeJob(String jobId) {
+        return shiftPurgeService.getJob(jobId);
+    }
+
+    public ShiftPurgeJob cancelShiftPurgeJob(String jobId) {
+        return shiftPurgeService.cancel(jobId);
     }
 
     @Transactional
@@ -97,54 +144,107 @@ public class TimeclockService {
         shiftService.startNewShift(user);
     }
 
+    /**
+     * Clocks in a whole crew at once. Users are resolved with one query and every shift is
+     * inserted in one batch; ids that can't be clocked in are reported under "errors"
+     * rather than failing the rest of the batch.
+     */
+    @Transactional
+    public Map<String, Object> clockInBatch(List<String> userIds) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        Set<String> requestedIds = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            if (userId == null || userId.isBlank()) {
+                errors.put(String.valueOf(userId), "Missing userId");
+            } else if (!requestedIds.add(userId)) {
+                errors.put(userId, "Duplicate userId in batch");
+            }
+        }
+
+        Map<String, User> usersById = new HashMap<>();
+        for (User user : userService.getUsersByIds(requestedIds)) {
+            usersById.put(user.getUserId(), user);
+        }
+
+        List<User> usersToClockIn = new ArrayList<>();
+        for (String userId : requestedIds) {
+            User user = usersById.get(userId);
+            if (user == null) {
+                errors.put(userId, "User not found");
+            } else {
+                usersToClockIn.add(user);
+            }
+        }
+
+        Map<String, Integer> shiftIds = shiftService.startNewShifts(usersToClockIn, errors);
+        logger.info("Batch clock in: {} started, {} rejected", shiftIds.size(), errors.size());
+
+        return Map.of(
+                "shiftIds", shiftIds,
+                "errors", errors
+        );
+    }
+
+    public SseEmitter subscribeToShiftEvents(String lastEventId) {
+        return shiftEventBroadcaster.subscribe(lastEventId);
+    }
+
+    public long getShiftVersion() {
+        return shiftService.getShiftVersion();
+    }
+
+    public List<Shift> findOpenShifts() {
+        return shiftService.getOpenShifts();
+    }
+
+    public ShiftHistoryPage findShiftHistory(String userId, LocalDate from, LocalDate to, Boolean open, String cursor, int limit) {
+        return shiftService.findShiftHistory(userId, from, to, open, cursor, limit);
+    }
+
     public List<Shift> findShiftsByDate() {
         LocalDate localDate = DateUtility.todayCentralTime();
         return shiftService.findShiftsByDate(localDate);
     }
 
     @Transactional
-    public String clockOutShift(Shift shift) {
-        return shiftService.clockOutShift(shift);
+    public String clockOutShift(ShiftUpdateRequest request) {
+        return shiftService.clockOutShift(request.getShiftId());
     }
 
-    public void removeShift(String shiftId) {
+    @Transactional
+    public void removeShift(int shiftId) {
         shiftService.removeShift(shiftId);
     }
 
-    public String updateShift(Shift shift) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("h:mm a");
-
-        LocalDateTime clockInTimeUpdated = LocalDateTime.of(DateUtility.todayCentralTime(), LocalTime.parse(shift.getClockIn().trim(), formatter));
-        LocalDateTime clockOutTimeUpdated = shift.getClockOut() != null && !shift.getClockOut().isEmpty() ?
-                LocalDateTime.of(DateUtility.todayCentralTime(), LocalTime.parse(shift.getClockOut().trim(), formatter)) : null;
-
-        String timeWorked = TimeCalculatorUtility.calculateTimeSpent(clockInTimeUpdated, clockOutTimeUpdated);
+    @Transactional
+    public String updateShift(ShiftUpdateRequest request) {
+        LocalTime clockIn = DateUtility.parseClockTime(request.getClockIn());
+        LocalTime clockOut = request.getClockOut() != null && !request.getClockOut().isEmpty() ?
+                DateUtility.parseClockTime(request.getClockOut()) : null;
+        return shiftService.updateShift(request.getShiftId(), clockIn, clockOut);
+    }
 
-        shiftService.updateShift(clockInTimeUpdated, clockOutTimeUpdated, timeWorked, shift.getShiftId());
 
-        return timeWorked;
+    /**
+     * Queues today's summary email; it is sent by the outbox worker, not on this thread.
+     */
+    public EmailOutboxEntry sendDailySummaryEmail() {
+        return sendDailySummaryEmail(DateUtility.todayCentralTime());
     }
 
-
-    public void sendDailySummaryEmail() {
-        LocalDate today = DateUtility.todayCentralTime();
-        List<UserShiftRow> userShifts = shiftService.retrieveUserShiftsToday();
-        ByteArrayResource excelDocument = new WorkSheetBuilder().populateWorkbook(userShifts).toFile();
-        emailService.sendWorksheetEmail(excelDocument, Collections.emptyList(), today);
-        logger.info("Daily Summary Email sent");
+    public EmailOutboxEntry sendDailySummaryEmail(LocalDate localDate) {
+        return emailOutboxService.enqueue(localDate);
     }
 
-    public void sendDailySummaryEmail(LocalDate localDate) {
-        List<UserShiftRow> userShifts = shiftService.retrieveUserShifts(localDate);
-        ByteArrayResource excelDocument = new WorkSheetBuilder().populateWorkbook(userShifts).toFile();
-        emailService.sendWorksheetEmail(excelDocument, Collections.emptyList(), localDate);
-        logger.info("Summary Email sent for {}", localDate.format(DateTimeFormatter.ISO_DATE));
+    public List<EmailOutboxEntry> getRecentSummaryEmails(int limit) {
+        return emailOutboxService.getRecentEntries(limit);
     }
 
     public byte[] generateSpreadsheet(LocalDate localDate) {
         logger.info("Generating spreadsheet for date: {}", localDate);
         List<UserShiftRow> userShifts = shiftService.retrieveUserShifts(localDate);
-        ByteArrayResource excelDocument = new WorkSheetBuilder().populateWorkbook(userShifts).toFile();
+        ByteArrayResource excelDocument = worksheetMetrics.measure("daily",
+                () -> new WorkSheetBuilder().populateWorkbook(userShifts).toFile());
         try {
             return excelDocument.getByteArray();
         } catch (Exception e) {
@@ -153,34 +253,156 @@ public class TimeclockService {
         }
     }
 
-    public Map<String, Object> generateSpreadsheetWithMetadata(LocalDate localDate) {
-        logger.info("Generating spreadsheet with metadata for date: {}", localDate);
-        List<UserShiftRow> userShifts = shiftService.retrieveUserShifts(localDate);
-        
-        if (userShifts.isEmpty()) {
-            throw new IllegalStateException("No shifts found for date: " + localDate);
+    public boolean hasShiftsOnDate(LocalDate localDate) {
+        return shiftService.hasShiftsOnDate(localDate);
+    }
+
+    public String spreadsheetFileName(LocalDate localDate) {
+        return DateUtility.formatDateForFileName(localDate) + "-timesheet.xlsx";
+    }
+
+    /**
+     * Writes the day's spreadsheet straight to the output stream. Rows come off a database
+     * cursor into a fixed window of in-memory rows, so memory use doesn't grow with the row count.
+     */
+    public void writeSpreadsheet(LocalDate localDate, OutputStream outputStream) throws IOException {
+        if (!reportCache.isCacheable(localDate)) {
+            buildSpreadsheet(localDate, outputStream);
+            return;
         }
-        
-        ByteArrayResource excelDocument = new WorkSheetBuilder().populateWorkbook(userShifts).toFile();
-        byte[] data;
+
+        // A finished day is built once, then served from the cache until one of its shifts changes
+        long rosterVersion = userService.getRosterVersion();
+        if (reportCache.writeTo(localDate, rosterVersion, outputStream)) {
+            logger.info("Served cached spreadsheet for date: {}", localDate);
+            return;
+        }
+        ReportCache.Recording recording = reportCache.record(localDate, rosterVersion, outputStream);
+        buildSpreadsheet(localDate, recording);
+        recording.store();
+    }
+
+    private void buildSpreadsheet(LocalDate localDate, OutputStream outputStream) throws IOException {
+        logger.info("Streaming spreadsheet for date: {}", localDate);
+        worksheetMetrics.measure("daily", outputStream, out -> {
+            try (WorkSheetBuilder builder = WorkSheetBuilder.streaming(SPREADSHEET_ROW_WINDOW)) {
+                builder.startSheet();
+                shiftService.streamUserShifts(localDate, builder::addRow);
+                builder.write(out);
+            }
+        });
+    }
+
+    public String exportFileName(LocalDate from, LocalDate to, ShiftExportWriter.Format format) {
+        return "shifts-" + from + "-to-" + to + "." + format.getFileExtension();
+    }
+
+    /**
+     * Streams every shift from through to (inclusive) to the output stream as CSV or NDJSON,
+     * straight off a database cursor, so memory use is the same for a day or a year.
+     */
+    public void exportShifts(LocalDate from, LocalDate to, ShiftExportWriter.Format format, OutputStream outputStream) throws IOException {
+        logger.info("Exporting shifts {} - {} as {}", from, to, format);
+        ShiftExportWriter writer = new ShiftExportWriter(outputStream, format);
         try {
-            data = excelDocument.getByteArray();
-        } catch (Exception e) {
-            logger.error("Error converting spreadsheet to byte array", e);
-            throw new RuntimeException("Failed to generate spreadsheet", e);
+            shiftService.streamUserShifts(from, to, row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        
-        String filename = DateUtility.formatDateForFileName(localDate) + "-timesheet.xlsx";
-        
-        return Map.of(
-            "data", data,
-            "filename", filename
-        );
+        writer.flush();
+    }
+
+    public void validateSpreadsheetPeriod(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_SPREADSHEET_PERIOD_DAYS) {
+            throw new IllegalArgumentException("A spreadsheet period can cover at most " + MAX_SPREADSHEET_PERIOD_DAYS + " days");
+        }
+    }
+
+    public String periodSpreadsheetFileName(LocalDate from, LocalDate to) {
+        return DateUtility.formatDateForFileName(from) + "-to-" + DateUtility.formatDateForFileName(to) + "-timesheet.xlsx";
+    }
+
+    /**
+     * One workbook for a pay period: a summary sheet of per-user totals, then a sheet per day.
+     * All shifts come from one range query. Each day's rows are sorted and turned into cells on
+     * the sheet pool, then written into the workbook in date order on the calling thread.
+     */
+    public void writePeriodSpreadsheet(LocalDate from, LocalDate to, OutputStream outputStream) throws IOException {
+        logger.info("Streaming spreadsheet for {} - {}", from, to);
+        List<UserShiftRow> userShifts = shiftService.retrieveUserShifts(from, to);
+        Map<LocalDate, List<UserShiftRow>> shiftsByDay = userShifts.stream()
+                .collect(Collectors.groupingBy(row -> DateUtility.centralDate(row.getClockInAt())));
+
+        Map<LocalDate, CompletableFuture<List<Object[]>>> daySheets = new LinkedHashMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            List<UserShiftRow> dayShifts = shiftsByDay.getOrDefault(day, List.of());
+            daySheets.put(day, CompletableFuture.supplyAsync(() -> toDaySheet(dayShifts), sheetPool));
+        }
+
+        worksheetMetrics.measure("period", outputStream, out -> {
+            try (WorkSheetBuilder builder = WorkSheetBuilder.streaming(SPREADSHEET_ROW_WINDOW)) {
+                builder.addTotalsSheet("Summary", totalsByUser(userShifts));
+                for (Map.Entry<LocalDate, CompletableFuture<List<Object[]>>> daySheet : daySheets.entrySet()) {
+                    builder.addSheet(daySheet.getKey().toString(), daySheet.getValue().join());
+                }
+                builder.write(out);
+            }
+        });
+    }
+
+    private static List<Object[]> toDaySheet(List<UserShiftRow> dayShifts) {
+        return dayShifts.stream()
+                .sorted(Comparator.comparing(UserShiftRow::getName, String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(UserShiftRow::getClockInAt))
+                .map(WorkSheetBuilder::toCells)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sums closed shifts per user, like the DailyUserTotals rollup; open shifts aren't counted.
+     */
+    private static List<UserHoursTotal> totalsByUser(List<UserShiftRow> userShifts) {
+        Map<String, UserHoursTotal> totals = new HashMap<>();
+        for (UserShiftRow row : userShifts) {
+            UserHoursTotal total = totals.computeIfAbsent(row.getUserId(), userId -> {
+                UserHoursTotal created = new UserHoursTotal();
+                created.setUserId(userId);
+                created.setName(row.getName());
+                return created;
+            });
+            if (row.getWorkedMinutes() != null) {
+                total.setWorkedMinutes(total.getWorkedMinutes() + row.getWorkedMinutes());
+                total.setShiftCount(total.getShiftCount() + 1);
+            }
+        }
+        return totals.values().stream()
+                .sorted(Comparator.comparing(UserHoursTotal::getName, String.CASE_INSENSITIVE_ORDER))
+                .collect(Collectors.toList());
+    }
+
+    public List<UserHoursTotal> findTotals(LocalDate from, LocalDate to) {
+        return shiftService.findTotals(from, to);
+    }
+
+    public int reconcileDailyTotals(LocalDate from, LocalDate to) {
+        return shiftService.reconcileDailyTotals(from, to);
     }
 
     public int countShiftsPriorToDate(LocalDate date) {
         return shiftService.countShiftsPriorToDate(date);
     }
 
-
+    @PreDestroy
+    public void shutdown() {
+        sheetPool.shutdownNow();
+    }
 }
\ No newline at end of file
@@ -1,12 +1,20 @@
 package timeclock.services;
 
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import timeclock.daos.HiddenUserDao;
 import timeclock.daos.UserDao;
+import timeclock.models.ChangeEvent;
 import timeclock.models.User;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.Arrays;
 
@@ -16,33 +24,31 @@ public class UserService {
     private final UserDao userDao;
     private final HiddenUserDao hiddenUserDao;
 
+    // The roster changes a few times a week but is read on every kiosk load and clock-in, so reads
+    // are served from an immutable snapshot. Every write bumps rosterVersion; a snapshot built for an
+    // older version is ignored and rebuilt on the next read.
+    private final AtomicLong rosterVersion = new AtomicLong();
+    private final AtomicReference<RosterSnapshot> roster = new AtomicReference<>();
+
     public UserService(UserDao userDao, HiddenUserDao hiddenUserDao) {
         this.userDao = userDao;
         this.hiddenUserDao = hiddenUserDao;
     }
 
     public List<User> getAllUsers() {
-        List<User> users = userDao.selectAllUsers();
-        List<String> hiddenUserIds = hiddenUserDao.getAllHiddenUserIds();
-        
-        // Filter out hidden users
-        users = users.stream()
-                .filter(user -> !hiddenUserIds.contains(user.getUserId()))
-                .sorted(Comparator.comparing(User::getName))
-                .collect(Collectors.toList());
-        
-        return users;
+        return roster().visibleUsers;
     }
 
     public List<User> getAllUsersIncludingHidden() {
-        List<User> users = userDao.selectAllUsers();
-        List<String> hiddenUserIds = hiddenUserDao.getAllHiddenUserIds();
-        
-        // Mark hidden users
-        users.forEach(user -> user.setHidden(hiddenUserIds.contains(user.getUserId())));
-        
-        users.sort(Comparator.comparing(User::getName));
-        return users;
+        return roster().allUsers;
+    }
+
+    /**
+     * Increases whenever a user is added, edited, hidden, unhidden or deleted, so callers
+     * holding a copy of the roster can tell when it is stale.
+     */
+    public long getRosterVersion() {
+        return rosterVersion.get();
     }
 
     public void insertUser(User user) {
@@ -53,6 +59,7 @@ public class UserService {
         
         String userId = userDao.insertUser(user);
         user.setUserId(userId);
+        invalidateRoster();
     }
 
     public void updateUser(User user) {
@@ -62,26 +69,108 @@ public class UserService {
         }
         
         userDao.updateUser(user);
+        invalidateRoster();
     }
 
     public User getUserById(String userId) {
-         return userDao.getUserById(userId);
+        User user = roster().usersById.get(userId);
+        // Fall back to the database so unknown ids fail the same way they always have
+        return user != null ? user : userDao.getUserById(userId);
+    }
+
+    public List<User> getUsersByIds(Collection<String> userIds) {
+        Map<String, User> usersById = roster().usersById;
+        List<User> users = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : userIds) {
+            User user = usersById.get(userId);
+            if (user != null) {
+                users.add(user);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            users.addAll(userDao.getUsersByIds(missing));
+        }
+        return users;
     }
 
     public boolean isUserHidden(String userId) {
-        return hiddenUserDao.isUserHidden(userId);
+        User user = roster().usersById.get(userId);
+        return user != null ? user.isHidden() : hiddenUserDao.isUserHidden(userId);
     }
 
     public void hideUser(String userId, String hiddenBy, String reason) {
         hiddenUserDao.hideUser(userId, hiddenBy, reason);
+        invalidateRoster();
     }
 
     public void unhideUser(String userId) {
         hiddenUserDao.unhideUser(userId);
+        invalidateRoster();
     }
     
     public void deleteUser(String userId) {
         userDao.deleteUser(userId);
+        invalidateRoster();
+    }
+
+    /**
+     * A user was written on some instance, possibly this one; the next read reloads the roster.
+     */
+    @EventListener
+    public void onChange(ChangeEvent change) {
+        if (change.getEntity() == ChangeEvent.Entity.USER) {
+            invalidateRoster();
+        }
+    }
+
+    private RosterSnapshot roster() {
+        RosterSnapshot snapshot = roster.get();
+        if (snapshot != null && snapshot.version == rosterVersion.get()) {
+            return snapshot;
+        }
+        synchronized (roster) {
+            snapshot = roster.get();
+            long version = rosterVersion.get();
+            if (snapshot == null || snapshot.version != version) {
+                snapshot = new RosterSnapshot(version, userDao.selectAllUsersWithHiddenFlag());
+                roster.set(snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Bumps the roster version now, and again once the surrounding transaction commits so a
+     * snapshot loaded before the commit became visible is not kept.
+     */
+    private void invalidateRoster() {
+        rosterVersion.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    rosterVersion.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private static final class RosterSnapshot {
+
+        private final long version;
+        private final List<User> allUsers;
+        private final List<User> visibleUsers;
+        private final Map<String, User> usersById;
+
+        private RosterSnapshot(long version, List<User> usersSortedByName) {
+            this.version = version;
+            this.allUsers = List.copyOf(usersSortedByName);
+            this.visibleUsers = allUsers.stream().filter(user -> !user.isHidden()).toList();
+            this.usersById = allUsers.stream().collect(Collectors.toUnmodifiableMap(User::getUserId, user -> user));
+        }
     }
     
     /**
@@ -92,17 +181,17 @@ public class UserService {
      *   "pat o'brien" -> "Pat O'Brien"
      *   "jean-paul" -> "Jean-Paul"
      */
-    private String formatNameToTitleCase(String name) {
+    static String formatNameToTitleCase(String name) {
         if (name == null || name.trim().isEmpty()) {
             return name;
         }
         
         return Arrays.stream(name.trim().split("\\s+"))
-            .map(this::capitalizeWord)
+            .map(UserService::capitalizeWord)
             .collect(Collectors.joining(" "));
     }
     
-    private String capitalizeWord(String word) {
+    private static String capitalizeWord(String word) {
         if (word == null || word.isEmpty()) {
             return word;
         }
@@ -110,7 +199,7 @@ public class UserService {
         // Handle hyphenated names (e.g., "Jean-Paul")
         if (word.contains("-")) {
             return Arrays.stream(word.split("-"))
-                .map(this::capitalizeWord)
+                .map(UserService::capitalizeWord)
                 .collect(Collectors.joining("-"));
         }
         
@@ -128,7 +217,7 @@ public class UserService {
         return capitalizeFirstLetter(word);
     }
     
-    private String capitalizeFirstLetter(String str) {
+    private static String capitalizeFirstLetter(String str) {
         if (str == null || str.isEmpty()) {
             return str;
         }
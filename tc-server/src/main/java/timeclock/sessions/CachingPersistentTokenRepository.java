@@ -0,0 +1,204 @@
+package timeclock.sessions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
+import timeclock.daos.RememberMeTokenDao;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits in front of the persistent_logins table so a remember-me sign-in doesn't cost a SELECT
+ * and an UPDATE each. Looked-up tokens are kept for a while, up to a fixed number, least
+ * recently used first out. The new token and last use written on each sign-in go to the cache
+ * at once and to the table in one batch per flush, however many times a series changed since.
+ * <p>
+ * New series are inserted and removals deleted straight away, and removals leave the cache
+ * before the table. Spring calls removeUserTokens when a presented token doesn't match its
+ * series, so a suspected theft signs the user out here immediately.
+ * <p>
+ * A token rotated here reaches other instances at the next flush, and one rotated elsewhere can
+ * be missed here until its cache entry runs out; either way the browser is taken for stolen and
+ * signed out. That needs the same browser to fall back on remember-me on two instances within
+ * moments, which sticky or shared sessions prevent. Rotations still pending when the process
+ * dies are lost the same way.
+ */
+public class CachingPersistentTokenRepository implements PersistentTokenRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingPersistentTokenRepository.class);
+
+    private final PersistentTokenRepository delegate;
+    private final RememberMeTokenDao rememberMeTokenDao;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    // Both guarded by cached. Pending tokens are newer than the table and win over cached ones.
+    private final LinkedHashMap<String, Entry> cached;
+    private final LinkedHashMap<String, PersistentRememberMeToken> pending = new LinkedHashMap<>();
+    // Goes up on every change, so a lookup that raced one doesn't cache what it read
+    private long version;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "remember-me-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CachingPersistentTokenRepository(PersistentTokenRepository delegate, RememberMeTokenDao rememberMeTokenDao,
+                                            int maxEntries, long ttlMillis, long flushMillis) {
+        this(delegate, rememberMeTokenDao, maxEntries, ttlMillis, flushMillis, Clock.systemUTC());
+    }
+
+    CachingPersistentTokenRepository(PersistentTokenRepository delegate, RememberMeTokenDao rememberMeTokenDao,
+                                     int maxEntries, long ttlMillis, long flushMillis, Clock clock) {
+        this.delegate = delegate;
+        this.rememberMeTokenDao = rememberMeTokenDao;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // Access-ordered, so the eldest entry is the least recently used
+        this.cached = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CachingPersistentTokenRepository.this.maxEntries;
+            }
+        };
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void createNewToken(PersistentRememberMeToken token) {
+        delegate.createNewToken(token);
+        synchronized (cached) {
+            version++;
+            cache(token);
+        }
+    }
+
+    /**
+     * Only called right after getTokenForSeries, so the series is normally cached and its
+     * username known. If it was evicted in between, the update is written straight through.
+     */
+    @Override
+    public void updateToken(String series, String tokenValue, Date lastUsed) {
+        synchronized (cached) {
+            version++;
+            PersistentRememberMeToken current = pending.get(series);
+            if (current == null) {
+                Entry entry = cached.get(series);
+                current = entry != null ? entry.token : null;
+            }
+            if (current != null) {
+                PersistentRememberMeToken updated = new PersistentRememberMeToken(current.getUsername(), series, tokenValue, lastUsed);
+                pending.put(series, updated);
+                cache(updated);
+                return;
+            }
+        }
+        delegate.updateToken(series, tokenValue, lastUsed);
+    }
+
+    @Override
+    public PersistentRememberMeToken getTokenForSeries(String seriesId) {
+        long readVersion;
+        synchronized (cached) {
+            PersistentRememberMeToken token = pending.get(seriesId);
+            if (token != null) {
+                return token;
+            }
+            Entry entry = cached.get(seriesId);
+            if (entry != null) {
+                if (clock.millis() - entry.cachedAt < ttlMillis) {
+                    return entry.token;
+                }
+                cached.remove(seriesId);
+            }
+            readVersion = version;
+        }
+
+        PersistentRememberMeToken token = delegate.getTokenForSeries(seriesId);
+        if (token != null) {
+            synchronized (cached) {
+                if (version == readVersion) {
+                    cache(token);
+                }
+            }
+        }
+        return token;
+    }
+
+    @Override
+    public void removeUserTokens(String username) {
+        synchronized (cached) {
+            version++;
+            cached.values().removeIf(entry -> entry.token.getUsername().equals(username));
+            pending.values().removeIf(token -> token.getUsername().equals(username));
+        }
+        delegate.removeUserTokens(username);
+    }
+
+    /**
+     * Writes the pending token rotations in one batch. Anything rotated again while the batch
+     * was being written stays pending for the next flush; on failure, everything does.
+     */
+    public void flush() {
+        List<PersistentRememberMeToken> batch;
+        synchronized (cached) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+        }
+
+        rememberMeTokenDao.updateTokens(batch);
+
+        synchronized (cached) {
+            for (PersistentRememberMeToken written : batch) {
+                pending.remove(written.getSeries(), written);
+            }
+        }
+    }
+
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushSafely();
+    }
+
+    int getPendingCount() {
+        synchronized (cached) {
+            return pending.size();
+        }
+    }
+
+    private void cache(PersistentRememberMeToken token) {
+        cached.put(token.getSeries(), new Entry(token, clock.millis()));
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Could not write remember-me token updates: {}", e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        private final PersistentRememberMeToken token;
+        private final long cachedAt;
+
+        Entry(PersistentRememberMeToken token, long cachedAt) {
+            this.token = token;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * session.mode=cookie: the whole session is the cookie, so no instance looks anything up.
+ * The username, roles and sign-in time are sealed with AES-GCM under a key derived from
+ * session.cookie-secret, which both hides them and makes any tampering fail to decrypt.
+ * <p>
+ * A cookie is good for the session timeout from sign-in, after which remember-me signs the
+ * browser in again and issues a fresh one. Signing out clears the cookie in that browser; a
+ * copied cookie stays valid until it runs out, so every instance must share the secret and
+ * changing it signs everybody out.
+ */
+public class CookieSecurityContextRepository implements SecurityContextRepository {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    // Sign-in times this far in the future are let through, for clock skew between instances
+    private static final long MAX_CLOCK_SKEW_SECONDS = 60;
+    // Cipher.getInstance costs several times what the decryption does, so ciphers are reused;
+    // a pool rather than a ThreadLocal so it also pays off on virtual threads
+    private static final int CIPHER_POOL_SIZE = 16;
+    private static final byte[] ASSOCIATED_DATA = (SessionCookies.COOKIE_NAME + ":" + FORMAT_VERSION).getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec key;
+    private final long lifetimeSeconds;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+    private final ArrayBlockingQueue<Cipher> ciphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+
+    public CookieSecurityContextRepository(String secret, long lifetimeSeconds) {
+        this(secret, lifetimeSeconds, Clock.systemUTC());
+    }
+
+    CookieSecurityContextRepository(String secret, long lifetimeSeconds, Clock clock) {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalStateException("session.cookie-secret must be at least 32 characters when session.mode is cookie");
+        }
+        this.key = new SecretKeySpec(sha256(secret.getBytes(StandardCharsets.UTF_8)), "AES");
+        this.lifetimeSeconds = lifetimeSeconds;
+        this.clock = clock;
+    }
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        return SessionCookies.deferred(() -> {
+            String value = SessionCookies.read(request);
+            return value != null ? open(value) : null;
+        });
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return loadDeferredContext(requestResponseHolder.getRequest()).get();
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        if (!SessionCookies.isSignedIn(context)) {
+            if (SessionCookies.read(request) != null) {
+                SessionCookies.clear(request, response);
+            }
+            return;
+        }
+        Authentication authentication = context.getAuthentication();
+        String value = seal(authentication.getName(), SessionCookies.authorityNames(authentication), clock.instant().getEpochSecond());
+        SessionCookies.write(request, response, value, (int) Math.min(lifetimeSeconds, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return SessionCookies.read(request) != null;
+    }
+
+    /**
+     * version | IV | AES-GCM(signedInAt, "username\nROLE_A,ROLE_B"), base64url.
+     */
+    String seal(String username, List<String> authorities, long signedInAt) {
+        byte[] text = (username + "\n" + String.join(",", authorities)).getBytes(StandardCharsets.UTF_8);
+        byte[] plaintext = ByteBuffer.allocate(Long.BYTES + text.length).putLong(signedInAt).put(text).array();
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = borrowCipher();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(ASSOCIATED_DATA);
+            byte[] sealed = cipher.doFinal(plaintext);
+            byte[] value = ByteBuffer.allocate(1 + IV_LENGTH + sealed.length).put(FORMAT_VERSION).put(iv).put(sealed).array();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal the session cookie", e);
+        } finally {
+            ciphers.offer(cipher);
+        }
+    }
+
+    /**
+     * The signed-in context, or null if the cookie was altered, sealed under another secret
+     * or has run out.
+     */
+    SecurityContext open(String value) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length < 1 + IV_LENGTH + TAG_BITS / 8 + Long.BYTES || bytes[0] != FORMAT_VERSION) {
+            return null;
+        }
+
+        byte[] plaintext;
+        Cipher cipher = borrowCipher();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 1, IV_LENGTH));
+            cipher.updateAAD(ASSOCIATED_DATA);
+            plaintext = cipher.doFinal(bytes, 1 + IV_LENGTH, bytes.length - 1 - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            return null;
+        } finally {
+            ciphers.offer(cipher);
+        }
+
+        long signedInAt = ByteBuffer.wrap(plaintext).getLong();
+        long now = clock.instant().getEpochSecond();
+        if (now - signedInAt >= lifetimeSeconds || signedInAt - now > MAX_CLOCK_SKEW_SECONDS) {
+            return null;
+        }
+        String text = new String(plaintext, Long.BYTES, plaintext.length - Long.BYTES, StandardCharsets.UTF_8);
+        int newline = text.indexOf('\n');
+        String roles = text.substring(newline + 1);
+        return SessionCookies.signedIn(text.substring(0, newline), roles.isEmpty() ? List.of() : Arrays.asList(roles.split(",")));
+    }
+
+    /**
+     * Every use re-initializes the cipher with a fresh IV, so one left in any state is fine.
+     */
+    private Cipher borrowCipher() {
+        Cipher cipher = ciphers.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import timeclock.daos.WebSessionDao;
+import timeclock.models.WebSession;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * session.mode=jdbc: sessions live in the WebSessions table, so any instance can serve any
+ * browser and a redeploy signs nobody out. The cookie holds a random session id; the table
+ * holds its SHA-256.
+ * <p>
+ * Each request reads its session by primary key. Instead of writing lastAccessedAt back on
+ * every request, the sessions seen are collected and touched in one UPDATE per flush, which
+ * also deletes sessions past the idle timeout. A session can therefore look up to one flush
+ * interval older than it is.
+ */
+public class JdbcSecurityContextRepository implements SecurityContextRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSecurityContextRepository.class);
+
+    private static final String ISSUED_ATTRIBUTE = JdbcSecurityContextRepository.class.getName() + ".ISSUED";
+
+    private final WebSessionDao webSessionDao;
+    private final long idleTimeoutMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Set<String> pendingTouches = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JdbcSecurityContextRepository(WebSessionDao webSessionDao, long idleTimeoutMillis, long flushMillis) {
+        this.webSessionDao = webSessionDao;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        return SessionCookies.deferred(() -> load(request));
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return loadDeferredContext(requestResponseHolder.getRequest()).get();
+    }
+
+    /**
+     * Starts a new session on every sign-in, so an id planted in the browser beforehand is
+     * worthless afterwards, and ends the current one on sign-out.
+     */
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        String current = SessionCookies.read(request);
+        if (!SessionCookies.isSignedIn(context)) {
+            if (current != null) {
+                end(current);
+                SessionCookies.clear(request, response);
+            }
+            return;
+        }
+
+        Authentication authentication = context.getAuthentication();
+        if (authentication.getName().equals(request.getAttribute(ISSUED_ATTRIBUTE))) {
+            return;
+        }
+        if (current != null) {
+            end(current);
+        }
+        String sessionId = newSessionId();
+        webSessionDao.insert(hash(sessionId), authentication.getName(), SessionCookies.authorityNames(authentication));
+        request.setAttribute(ISSUED_ATTRIBUTE, authentication.getName());
+        SessionCookies.write(request, response, sessionId, -1);
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return SessionCookies.read(request) != null;
+    }
+
+    /**
+     * Writes the pending lastAccessedAt updates and deletes idle sessions.
+     */
+    public void flush() {
+        List<String> touched = new ArrayList<>();
+        for (Iterator<String> iterator = pendingTouches.iterator(); iterator.hasNext(); ) {
+            touched.add(iterator.next());
+            iterator.remove();
+        }
+        if (!touched.isEmpty()) {
+            try {
+                webSessionDao.touch(touched);
+            } catch (RuntimeException e) {
+                // Try again next flush rather than let live sessions idle out
+                pendingTouches.addAll(touched);
+                throw e;
+            }
+        }
+        int expired = webSessionDao.deleteIdle(idleTimeoutMillis);
+        if (expired > 0) {
+            logger.info("Deleted {} idle sessions", expired);
+        }
+    }
+
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushSafely();
+    }
+
+    private SecurityContext load(HttpServletRequest request) {
+        String sessionId = SessionCookies.read(request);
+        if (sessionId == null) {
+            return null;
+        }
+        String sessionIdHash = hash(sessionId);
+        WebSession session = webSessionDao.selectActive(sessionIdHash, idleTimeoutMillis);
+        if (session == null) {
+            return null;
+        }
+        pendingTouches.add(sessionIdHash);
+        return SessionCookies.signedIn(session.getUsername(), session.getAuthorities());
+    }
+
+    private void end(String sessionId) {
+        String sessionIdHash = hash(sessionId);
+        pendingTouches.remove(sessionIdHash);
+        webSessionDao.delete(sessionIdHash);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Could not flush session activity: {}", e.getMessage());
+        }
+    }
+
+    private String newSessionId() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    static String hash(String sessionId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sessionId.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cookie handling and principal rebuilding shared by the cookie and JDBC session modes.
+ */
+final class SessionCookies {
+
+    static final String COOKIE_NAME = "TC_SESSION";
+
+    private SessionCookies() {
+    }
+
+    static String read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * maxAgeSeconds of -1 makes a browser-session cookie.
+     */
+    static void write(HttpServletRequest request, HttpServletResponse response, String value, int maxAgeSeconds) {
+        Cookie cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setMaxAge(maxAgeSeconds);
+        cookie.setAttribute("SameSite", "Lax");
+        response.addCookie(cookie);
+    }
+
+    static void clear(HttpServletRequest request, HttpServletResponse response) {
+        write(request, response, "", 0);
+    }
+
+    /**
+     * True for a real sign-in; an empty or anonymous context means signed out.
+     */
+    static boolean isSignedIn(SecurityContext context) {
+        Authentication authentication = context != null ? context.getAuthentication() : null;
+        return authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken);
+    }
+
+    static List<String> authorityNames(Authentication authentication) {
+        return AuthorityUtils.authorityListToSet(authentication.getAuthorities()).stream().sorted().toList();
+    }
+
+    /**
+     * The signed-in context a session stands for. The principal carries no password; nothing
+     * after sign-in needs one.
+     */
+    static SecurityContext signedIn(String username, Collection<String> authorityNames) {
+        List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList(authorityNames);
+        User principal = new User(username, "", authorities);
+        SecurityContext context = SecurityContextHolder.getContextHolderStrategy().createEmptyContext();
+        context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(principal, null, authorities));
+        return context;
+    }
+
+    /**
+     * Looks the session up on first use, so requests that never check who is signed in (static
+     * assets, the login page) don't pay for it. A null from the loader means signed out.
+     */
+    static DeferredSecurityContext deferred(Supplier<SecurityContext> loader) {
+        return new DeferredSecurityContext() {
+
+            private SecurityContext context;
+            private boolean generated;
+
+            @Override
+            public SecurityContext get() {
+                if (context == null) {
+                    context = loader.get();
+                    if (context == null) {
+                        context = SecurityContextHolder.getContextHolderStrategy().createEmptyContext();
+                        generated = true;
+                    }
+                }
+                return context;
+            }
+
+            @Override
+            public boolean isGenerated() {
+                get();
+                return generated;
+            }
+        };
+    }
+}
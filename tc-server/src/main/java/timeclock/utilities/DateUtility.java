@@ -6,24 +6,57 @@ import java.time.format.DateTimeFormatter;
 
 public class DateUtility {
 
+    public static final ZoneId CENTRAL_TIME = ZoneId.of("America/Chicago");
+
+    private static final DateTimeFormatter CLOCK_TIME_FORMATTER = DateTimeFormatter.ofPattern("h:mm a");
+
+    /**
+     * Minutes between two "h:mm a" times, or -1 if either can't be read.
+     * @deprecated use {@link DurationEngine#parseClockTime} and {@link DurationEngine#shiftMinutes}
+     */
+    @Deprecated
     public static long timeSpentInMinutes(String clockIn, String clockOut) {
-        try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("h:mm a");
-            LocalTime clockInTime = LocalTime.parse(clockIn, formatter);
-            LocalTime clockOutTime = LocalTime.parse(clockOut, formatter);
-            return Duration.between(clockInTime, clockOutTime).toMinutes();
-        } catch (Exception e) {
-            return -1;
-        }
+        return TimeCalculatorUtility.calculateMinutesSpent(clockIn, clockOut);
     }
 
 
     public static Timestamp now() {
-        return Timestamp.from(ZonedDateTime.now(ZoneId.of("America/Chicago")).toInstant());
+        return Timestamp.from(ZonedDateTime.now(CENTRAL_TIME).toInstant());
+    }
+
+    /**
+     * Formats a shift time the way the kiosk displays it, e.g. "8:05 AM".
+     */
+    public static String formatClockTime(Instant instant) {
+        return CLOCK_TIME_FORMATTER.format(instant.atZone(CENTRAL_TIME));
+    }
+
+    /**
+     * Reads a time typed in the kiosk's "h:mm a" form back into a time of day.
+     */
+    public static LocalTime parseClockTime(String clockTime) {
+        return LocalTime.parse(clockTime.trim(), CLOCK_TIME_FORMATTER);
+    }
+
+    public static LocalDate centralDate(Instant instant) {
+        return instant.atZone(CENTRAL_TIME).toLocalDate();
+    }
+
+    public static Instant atCentralTime(LocalDate localDate, LocalTime localTime) {
+        return localDate.atTime(localTime).atZone(CENTRAL_TIME).toInstant();
     }
 
     public static LocalDate todayCentralTime() {
-        return ZonedDateTime.now(ZoneId.of("America/Chicago")).toLocalDate();
+        return ZonedDateTime.now(CENTRAL_TIME).toLocalDate();
+    }
+
+    /**
+     * The instant a business day starts in Central Time. Paired with the start of the
+     * following day this gives the half-open [start, end) range for that day, which
+     * lets queries compare clockIn directly instead of wrapping it in DATE().
+     */
+    public static Instant startOfDayCentralTime(LocalDate localDate) {
+        return localDate.atStartOfDay(CENTRAL_TIME).toInstant();
     }
 
 
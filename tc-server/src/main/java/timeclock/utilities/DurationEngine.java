@@ -0,0 +1,286 @@
+package timeclock.utilities;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shift durations in Central Time on plain longs and ints: instants as epoch seconds and times
+ * of day as packed minute-of-day ints (hour * 60 + minute). Nothing on the calculation paths
+ * allocates, and formatted durations for anything under two days come from a shared table.
+ * <p>
+ * Daylight saving is handled exactly. The America/Chicago transitions for 1970 to 2100 are read
+ * from the zone rules once, so converting between local and epoch time is a binary search
+ * instead of a ZonedDateTime. Local times that fall in the spring-forward gap move forward by
+ * the gap and the repeated hour in the fall resolves to the earlier offset, the same as
+ * ZonedDateTime.of.
+ */
+public final class DurationEngine {
+
+    public static final ZoneId ZONE = DateUtility.CENTRAL_TIME;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final ZoneRules RULES = ZONE.getRules();
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final LocalDate FIRST_DAY = LocalDate.of(1970, 1, 1);
+    private static final LocalDate END_DAY = LocalDate.of(2101, 1, 1);
+    private static final long TABLE_START = FIRST_DAY.atStartOfDay(ZONE).toEpochSecond();
+    private static final long TABLE_END = END_DAY.atStartOfDay(ZONE).toEpochSecond();
+    // The same range as wall clock seconds since 1970-01-01T00:00
+    private static final long LOCAL_START = FIRST_DAY.toEpochDay() * SECONDS_PER_DAY;
+    private static final long LOCAL_END = END_DAY.toEpochDay() * SECONDS_PER_DAY;
+
+    // Transition i happens at TRANSITION_SECONDS[i], from OFFSET_BEFORE[i] to OFFSET_AFTER[i];
+    // LOCAL_BOUNDARY[i] is the wall clock reading at that moment under the old offset
+    private static final long[] TRANSITION_SECONDS;
+    private static final long[] LOCAL_BOUNDARY;
+    private static final int[] OFFSET_BEFORE;
+    private static final int[] OFFSET_AFTER;
+    private static final int INITIAL_OFFSET;
+
+    // Formatted durations up to two days, filled as they are first asked for
+    private static final int FORMAT_CACHE_MINUTES = 2 * MINUTES_PER_DAY;
+    private static final String[] FORMATTED = new String[FORMAT_CACHE_MINUTES];
+
+    static {
+        List<ZoneOffsetTransition> transitions = new ArrayList<>();
+        ZoneOffsetTransition next = RULES.nextTransition(Instant.ofEpochSecond(TABLE_START - 1));
+        while (next != null && next.toEpochSecond() < TABLE_END) {
+            transitions.add(next);
+            next = RULES.nextTransition(next.getInstant());
+        }
+
+        TRANSITION_SECONDS = new long[transitions.size()];
+        LOCAL_BOUNDARY = new long[transitions.size()];
+        OFFSET_BEFORE = new int[transitions.size()];
+        OFFSET_AFTER = new int[transitions.size()];
+        for (int i = 0; i < transitions.size(); i++) {
+            ZoneOffsetTransition transition = transitions.get(i);
+            TRANSITION_SECONDS[i] = transition.toEpochSecond();
+            OFFSET_BEFORE[i] = transition.getOffsetBefore().getTotalSeconds();
+            OFFSET_AFTER[i] = transition.getOffsetAfter().getTotalSeconds();
+            LOCAL_BOUNDARY[i] = TRANSITION_SECONDS[i] + OFFSET_BEFORE[i];
+        }
+        INITIAL_OFFSET = RULES.getOffset(Instant.ofEpochSecond(TABLE_START)).getTotalSeconds();
+    }
+
+    private DurationEngine() {
+    }
+
+    public static int minuteOfDay(int hour, int minute) {
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            throw new IllegalArgumentException("Not a time of day: " + hour + ":" + minute);
+        }
+        return hour * 60 + minute;
+    }
+
+    public static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    /**
+     * Reads a kiosk time such as "8:05 AM" or "12:30 pm" into a minute of the day, or returns
+     * -1 if it isn't one.
+     */
+    public static int parseClockTime(CharSequence text) {
+        int end = text.length();
+        int i = 0;
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        while (end > i && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        int hour = 0;
+        int hourDigits = 0;
+        while (i < end && hourDigits < 2 && isDigit(text.charAt(i))) {
+            hour = hour * 10 + (text.charAt(i++) - '0');
+            hourDigits++;
+        }
+        if (hourDigits == 0 || hour < 1 || hour > 12 || i + 3 > end || text.charAt(i++) != ':'
+                || !isDigit(text.charAt(i)) || !isDigit(text.charAt(i + 1))) {
+            return -1;
+        }
+        int minute = (text.charAt(i) - '0') * 10 + (text.charAt(i + 1) - '0');
+        i += 2;
+        if (minute > 59) {
+            return -1;
+        }
+
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        if (end - i != 2 || Character.toUpperCase(text.charAt(i + 1)) != 'M') {
+            return -1;
+        }
+        char meridiem = Character.toUpperCase(text.charAt(i));
+        if (meridiem != 'A' && meridiem != 'P') {
+            return -1;
+        }
+        return (hour % 12 + (meridiem == 'P' ? 12 : 0)) * 60 + minute;
+    }
+
+    /**
+     * Minutes from a time of day to a later one, into the next day when the end is before the
+     * start. Wall clock only: use {@link #shiftMinutes} when the date is known.
+     */
+    public static int wallClockMinutes(int startMinuteOfDay, int endMinuteOfDay) {
+        int minutes = endMinuteOfDay - startMinuteOfDay;
+        return minutes >= 0 ? minutes : minutes + MINUTES_PER_DAY;
+    }
+
+    /**
+     * The epoch second a Central Time date and minute of the day happened at.
+     */
+    public static long epochSecond(long epochDay, int minuteOfDay) {
+        long local = epochDay * SECONDS_PER_DAY + minuteOfDay * 60L;
+        if (local < LOCAL_START || local >= LOCAL_END) {
+            return fallbackEpochSecond(epochDay, minuteOfDay);
+        }
+        int i = lastAtOrBefore(LOCAL_BOUNDARY, local);
+        if (i < 0) {
+            return local - INITIAL_OFFSET;
+        }
+        long epochSecond = local - OFFSET_AFTER[i];
+        // In the spring-forward gap the wall time doesn't exist; read it with the old offset,
+        // which lands the same distance past the transition
+        if (epochSecond < TRANSITION_SECONDS[i]) {
+            epochSecond = local - OFFSET_BEFORE[i];
+        }
+        return epochSecond;
+    }
+
+    public static long epochSecond(LocalDate date, int minuteOfDay) {
+        return epochSecond(date.toEpochDay(), minuteOfDay);
+    }
+
+    /**
+     * The Central Time UTC offset in seconds at an epoch second.
+     */
+    public static int offsetSeconds(long epochSecond) {
+        if (epochSecond < TABLE_START || epochSecond >= TABLE_END) {
+            return RULES.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        }
+        int i = lastAtOrBefore(TRANSITION_SECONDS, epochSecond);
+        return i < 0 ? INITIAL_OFFSET : OFFSET_AFTER[i];
+    }
+
+    /**
+     * The Central Time date an epoch second falls on, as an epoch day.
+     */
+    public static long epochDay(long epochSecond) {
+        return Math.floorDiv(epochSecond + offsetSeconds(epochSecond), SECONDS_PER_DAY);
+    }
+
+    /**
+     * The Central Time minute of the day an epoch second falls in.
+     */
+    public static int minuteOfDayAt(long epochSecond) {
+        return (int) (Math.floorMod(epochSecond + offsetSeconds(epochSecond), SECONDS_PER_DAY) / 60);
+    }
+
+    /**
+     * Whole minutes worked by a shift that clocked in at a time of day on a Central Time date
+     * and out at a later time of day, the next day if it is before the clock in. Days with a
+     * daylight saving change are 23 or 25 hours long, and the result follows the real clock.
+     */
+    public static long shiftMinutes(long epochDay, int clockInMinuteOfDay, int clockOutMinuteOfDay) {
+        long clockIn = epochSecond(epochDay, clockInMinuteOfDay);
+        long clockOut = epochSecond(clockOutEpochDay(epochDay, clockInMinuteOfDay, clockOutMinuteOfDay), clockOutMinuteOfDay);
+        return minutesBetween(clockIn, clockOut);
+    }
+
+    /**
+     * The date a clock out falls on: the clock-in date, or the day after for a shift that
+     * runs past midnight.
+     */
+    public static long clockOutEpochDay(long epochDay, int clockInMinuteOfDay, int clockOutMinuteOfDay) {
+        return clockOutMinuteOfDay >= clockInMinuteOfDay ? epochDay : epochDay + 1;
+    }
+
+    /**
+     * Whole minutes from one epoch second to a later one.
+     */
+    public static long minutesBetween(long startEpochSecond, long endEpochSecond) {
+        if (endEpochSecond <= startEpochSecond) {
+            throw new IllegalArgumentException("Invalid - Clock out before clock in");
+        }
+        return (endEpochSecond - startEpochSecond) / 60;
+    }
+
+    /**
+     * Whole minutes from clock in to clock out, counting the sub-second parts, like
+     * Duration.between(clockIn, clockOut).toMinutes() without the Duration.
+     */
+    public static long minutesBetween(Instant clockIn, Instant clockOut) {
+        if (!clockIn.isBefore(clockOut)) {
+            throw new IllegalArgumentException("Invalid - Clock out before clock in");
+        }
+        long seconds = clockOut.getEpochSecond() - clockIn.getEpochSecond();
+        if (clockOut.getNano() < clockIn.getNano()) {
+            seconds--;
+        }
+        return seconds / 60;
+    }
+
+    /**
+     * Display form of worked minutes, e.g. 425 -> "7h 05m". Anything under two days is built
+     * once and then shared.
+     */
+    public static String formatMinutes(long minutes) {
+        if (minutes >= 0 && minutes < FORMAT_CACHE_MINUTES) {
+            String formatted = FORMATTED[(int) minutes];
+            if (formatted == null) {
+                formatted = appendMinutes(new StringBuilder(8), minutes).toString();
+                // Strings are immutable, so a racing thread at worst builds the same one again
+                FORMATTED[(int) minutes] = formatted;
+            }
+            return formatted;
+        }
+        return appendMinutes(new StringBuilder(12), minutes).toString();
+    }
+
+    /**
+     * Appends the display form of worked minutes to a caller's builder.
+     */
+    public static StringBuilder appendMinutes(StringBuilder out, long minutes) {
+        long remainder = minutes % 60;
+        if (minutes < 0) {
+            out.append('-');
+            remainder = -remainder;
+        }
+        out.append(Math.abs(minutes / 60)).append("h ");
+        if (remainder < 10) {
+            out.append('0');
+        }
+        return out.append(remainder).append('m');
+    }
+
+    private static int lastAtOrBefore(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static long fallbackEpochSecond(long epochDay, int minuteOfDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay().plusMinutes(minuteOfDay).atZone(ZONE).toEpochSecond();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
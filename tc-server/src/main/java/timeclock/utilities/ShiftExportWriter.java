@@ -0,0 +1,173 @@
+package timeclock.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import timeclock.models.UserShiftRow;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes shift rows one at a time as CSV or newline-delimited JSON for payroll imports. Nothing
+ * is kept per row, so an export of any size runs in the memory of the write buffer.
+ * Times are ISO-8601 with the Central Time offset; workDate is the Central Time clock-in date.
+ */
+public class ShiftExportWriter implements Flushable {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String fileExtension;
+
+        Format(String contentType, String fileExtension) {
+            this.contentType = contentType;
+            this.fileExtension = fileExtension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+
+        /**
+         * "csv" or "ndjson"; without one, falls back to the Accept header and then CSV.
+         */
+        public static Format resolve(String format, String accept) {
+            if (format != null) {
+                return switch (format.toLowerCase()) {
+                    case "csv" -> CSV;
+                    case "ndjson", "jsonl" -> NDJSON;
+                    default -> throw new IllegalArgumentException("Unsupported export format: " + format);
+                };
+            }
+            return accept != null && accept.contains(NDJSON.contentType) ? NDJSON : CSV;
+        }
+    }
+
+    private static final String[] COLUMNS = {"shiftId", "userId", "name", "email", "phoneNumber", "mailingAddress",
+            "workDate", "clockIn", "clockOut", "workedMinutes"};
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+    private final Format format;
+    private final Writer writer;
+    private final JsonGenerator json;
+
+    public ShiftExportWriter(OutputStream outputStream, Format format) throws IOException {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.NDJSON) {
+            // Rows end in our own newline rather than Jackson's root separator, and only
+            // flush() below pushes bytes to the client, not every row
+            this.json = JSON_FACTORY.createGenerator(writer).disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            this.json.setRootValueSeparator(null);
+        } else {
+            this.json = null;
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+    }
+
+    public void write(UserShiftRow row) throws IOException {
+        if (format == Format.NDJSON) {
+            writeJson(row);
+        } else {
+            writeCsv(row);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(UserShiftRow row) throws IOException {
+        writer.write(Integer.toString(row.getShiftId()));
+        writer.write(',');
+        writeCsvField(row.getUserId());
+        writer.write(',');
+        writeCsvField(row.getName());
+        writer.write(',');
+        writeCsvField(row.getEmail());
+        writer.write(',');
+        writeCsvField(row.getPhoneNumber());
+        writer.write(',');
+        writeCsvField(row.getMailingAddress());
+        writer.write(',');
+        writeCsvField(workDate(row));
+        writer.write(',');
+        writeCsvField(formatTime(row.getClockInAt()));
+        writer.write(',');
+        writeCsvField(formatTime(row.getClockOutAt()));
+        writer.write(',');
+        if (row.getWorkedMinutes() != null) {
+            writer.write(Integer.toString(row.getWorkedMinutes()));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * RFC 4180: quote fields holding a comma, quote or line break, doubling any quotes.
+     */
+    private void writeCsvField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void writeJson(UserShiftRow row) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("shiftId", row.getShiftId());
+        json.writeStringField("userId", row.getUserId());
+        json.writeStringField("name", row.getName());
+        json.writeStringField("email", row.getEmail());
+        json.writeStringField("phoneNumber", row.getPhoneNumber());
+        json.writeStringField("mailingAddress", row.getMailingAddress());
+        json.writeStringField("workDate", workDate(row));
+        json.writeStringField("clockIn", formatTime(row.getClockInAt()));
+        json.writeStringField("clockOut", formatTime(row.getClockOutAt()));
+        if (row.getWorkedMinutes() != null) {
+            json.writeNumberField("workedMinutes", row.getWorkedMinutes());
+        } else {
+            json.writeNullField("workedMinutes");
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static String workDate(UserShiftRow row) {
+        return row.getClockInAt() != null ? DateUtility.centralDate(row.getClockInAt()).toString() : null;
+    }
+
+    private static String formatTime(Instant instant) {
+        return instant != null ? TIME_FORMATTER.format(instant.atZone(DateUtility.CENTRAL_TIME)) : null;
+    }
+}
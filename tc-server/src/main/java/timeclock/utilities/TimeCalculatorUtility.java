@@ -1,48 +1,68 @@
 package timeclock.utilities;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Date;
 
+/**
+ * The original string and LocalDateTime entry points, kept for existing callers. New code
+ * should use {@link DurationEngine}, which these delegate to where they overlap.
+ */
+@Deprecated
 public class TimeCalculatorUtility {
 
     public static String calculateTimeSpent(String startTime, String endTime) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("h:mm a");
-        try {
-            Date start = dateFormat.parse(startTime);
-            Date end = dateFormat.parse(endTime);
-
-            // Calculate the time difference in milliseconds
-            long difference = end.getTime() - start.getTime();
-            if (difference < 0) {
-                // If the end time is before the start time, assume it's the next day
-                difference += 24 * 60 * 60 * 1000; // Add 24 hours in milliseconds
-            }
-
-            // Convert the difference back into hours and minutes
-            long diffHours = difference / (60 * 60 * 1000);
-            long diffMinutes = (difference / (60 * 1000)) % 60;
-
-            return String.format("%dh %02dm", diffHours, diffMinutes);
-        } catch (ParseException e) {
-            e.printStackTrace();
+        long minutes = calculateMinutesSpent(startTime, endTime);
+        if (minutes < 0) {
             return "Invalid time format";
         }
+        return formatMinutes(minutes);
+    }
+
+    /**
+     * Minutes between two "h:mm a" times, assuming the next day when the end is before the start.
+     * Returns -1 when either time cannot be parsed. Wall clock only, so a daylight saving change
+     * in between is not counted; use {@link DurationEngine#shiftMinutes} when the date is known.
+     */
+    public static long calculateMinutesSpent(String startTime, String endTime) {
+        int start = DurationEngine.parseClockTime(startTime);
+        int end = DurationEngine.parseClockTime(endTime);
+        if (start < 0 || end < 0) {
+            return -1;
+        }
+        return DurationEngine.wallClockMinutes(start, end);
     }
 
     public static String calculateTimeSpent(LocalDateTime clockInTimeUpdated, LocalDateTime clockOutTimeUpdated) {
+        Long minutes = calculateMinutesSpent(clockInTimeUpdated, clockOutTimeUpdated);
+        return minutes == null ? "" : formatMinutes(minutes);
+    }
+
+    /**
+     * Minutes between clock in and clock out, or null while the shift is still open.
+     */
+    public static Long calculateMinutesSpent(LocalDateTime clockInTimeUpdated, LocalDateTime clockOutTimeUpdated) {
         if(clockOutTimeUpdated == null)
-            return "";
+            return null;
 
         if(clockInTimeUpdated.isBefore(clockOutTimeUpdated)) {
-            Duration duration = Duration.between(clockInTimeUpdated, clockOutTimeUpdated);
-            long diffHours = duration.toHours();
-            long diffMinutes = duration.toMinutes() % 60;
-            return String.format("%dh %02dm", diffHours, diffMinutes);
+            return Duration.between(clockInTimeUpdated, clockOutTimeUpdated).toMinutes();
         }
 
         throw new RuntimeException("Invalid - Clock out before clock in");
     }
-}
\ No newline at end of file
+
+    /**
+     * Whole minutes from clock in to clock out, or null while the shift is still open.
+     */
+    public static Long calculateMinutesSpent(Instant clockIn, Instant clockOut) {
+        return clockOut != null ? DurationEngine.minutesBetween(clockIn, clockOut) : null;
+    }
+
+    /**
+     * Display form of worked minutes, e.g. 425 -> "7h 05m".
+     */
+    public static String formatMinutes(long minutes) {
+        return DurationEngine.formatMinutes(minutes);
+    }
+}
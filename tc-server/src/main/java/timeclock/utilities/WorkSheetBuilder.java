@@ -2,25 +2,82 @@ package timeclock.utilities;
 
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.core.io.ByteArrayResource;
+import timeclock.models.UserHoursTotal;
 import timeclock.models.UserShiftRow;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
-public class WorkSheetBuilder {
+public class WorkSheetBuilder implements AutoCloseable {
 
-    private final XSSFWorkbook workbook;
+    private static final String[] COLUMNS = {"Full Name", "Phone Number", "Email", "Mailing Address", "Clocked In", "Clocked Out", "Time Worked", "Total Mins Worked"};
+
+    // Streaming mode can't measure cells, so columns get fixed widths (1/256ths of a character)
+    private static final int[] COLUMN_WIDTHS = {24 * 256, 16 * 256, 30 * 256, 40 * 256, 12 * 256, 12 * 256, 12 * 256, 18 * 256};
+
+    private static final String[] TOTALS_COLUMNS = {"Full Name", "Shifts", "Time Worked", "Total Mins Worked"};
+    private static final int[] TOTALS_COLUMN_WIDTHS = {24 * 256, 8 * 256, 12 * 256, 18 * 256};
+
+    private final Workbook workbook;
+    private final boolean streaming;
+    private Sheet sheet;
+    private int rowNum;
 
     public WorkSheetBuilder() {
         this.workbook = new XSSFWorkbook();
+        this.streaming = false;
+    }
+
+    private WorkSheetBuilder(int rowWindow) {
+        SXSSFWorkbook sxssfWorkbook = new SXSSFWorkbook(rowWindow);
+        sxssfWorkbook.setCompressTempFiles(true);
+        this.workbook = sxssfWorkbook;
+        this.streaming = true;
+    }
+
+    /**
+     * A builder that keeps at most rowWindow rows in memory and flushes older ones to a temp
+     * file, so memory stays flat however many rows are added. Add rows with addRow, then
+     * write to the destination and close to delete the temp file.
+     */
+    public static WorkSheetBuilder streaming(int rowWindow) {
+        return new WorkSheetBuilder(rowWindow);
     }
 
     public WorkSheetBuilder populateWorkbook(List<UserShiftRow> userShiftRows) {
-        Sheet sheet = workbook.createSheet("Shifts Summary");
-        sheet.setColumnWidth(0, 6000);
-        sheet.setColumnWidth(1, 4000);
+        startSheet();
+        for (UserShiftRow usr : userShiftRows) {
+            addRow(usr);
+        }
+
+        // Resize all columns to fit the content size
+        if (!streaming) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                sheet.autoSizeColumn(i);
+            }
+        }
+
+        return this;
+    }
+
+    public WorkSheetBuilder startSheet() {
+        return startSheet("Shifts Summary");
+    }
+
+    public WorkSheetBuilder startSheet(String sheetName) {
+        return startSheet(sheetName, COLUMNS, COLUMN_WIDTHS);
+    }
+
+    private WorkSheetBuilder startSheet(String sheetName, String[] columns, int[] columnWidths) {
+        sheet = workbook.createSheet(sheetName);
+        for (int i = 0; i < columns.length; i++) {
+            sheet.setColumnWidth(i, columnWidths[i]);
+        }
 
         // Create a Font for styling header cells
         Font headerFont = workbook.createFont();
@@ -35,34 +92,72 @@ public class WorkSheetBuilder {
         Row headerRow = sheet.createRow(0);
 
         // Creating header cells and setting the header names
-        String[] columns = {"Full Name", "Phone Number", "Email", "Mailing Address", "Clocked In", "Clocked Out", "Time Worked", "Total Mins Worked"};
         for (int i = 0; i < columns.length; i++) {
             Cell cell = headerRow.createCell(i);
             cell.setCellValue(columns[i]);
             cell.setCellStyle(headerCellStyle);
         }
 
-        // Create Other rows and cells with user data
-        int rowNum = 1;
-        for (UserShiftRow usr : userShiftRows) {
-            Row row = sheet.createRow(rowNum++);
-
-            row.createCell(0).setCellValue(usr.getName());
-            row.createCell(1).setCellValue(usr.getPhoneNumber());
-            row.createCell(2).setCellValue(usr.getEmail());
-            row.createCell(3).setCellValue(usr.getMailingAddress());
-            row.createCell(4).setCellValue(usr.getClockIn());
-            row.createCell(5).setCellValue(usr.getClockOut());
-            row.createCell(6).setCellValue(usr.getTimeWorked());
-            row.createCell(7).setCellValue(String.valueOf(DateUtility.timeSpentInMinutes(usr.getClockIn(), usr.getClockOut())));
+        rowNum = 1;
+        return this;
+    }
+
+    public void addRow(UserShiftRow usr) {
+        addCells(toCells(usr));
+    }
+
+    /**
+     * Adds a sheet of rows already turned into cells by toCells.
+     */
+    public WorkSheetBuilder addSheet(String sheetName, List<Object[]> rows) {
+        startSheet(sheetName);
+        rows.forEach(this::addCells);
+        return this;
+    }
+
+    /**
+     * Adds a sheet with one row per user: shift count and total worked time.
+     */
+    public WorkSheetBuilder addTotalsSheet(String sheetName, List<UserHoursTotal> totals) {
+        startSheet(sheetName, TOTALS_COLUMNS, TOTALS_COLUMN_WIDTHS);
+        for (UserHoursTotal total : totals) {
+            addCells(new Object[]{total.getName(), total.getShiftCount(), total.getTimeWorked(), total.getWorkedMinutes()});
         }
+        return this;
+    }
 
-        // Resize all columns to fit the content size
-        for (int i = 0; i < columns.length; i++) {
-            sheet.autoSizeColumn(i);
+    /**
+     * The cell values of one shift row in column order. Needs no workbook, so callers can
+     * prepare many rows in parallel before adding them; POI workbooks are not thread safe.
+     */
+    public static Object[] toCells(UserShiftRow usr) {
+        // Worked time is formatted here from the stored minutes; open shifts leave both cells blank
+        Integer workedMinutes = usr.getWorkedMinutes();
+        return new Object[]{
+                usr.getName(),
+                usr.getPhoneNumber(),
+                usr.getEmail(),
+                usr.getMailingAddress(),
+                usr.getClockIn(),
+                usr.getClockOut(),
+                workedMinutes != null ? DurationEngine.formatMinutes(workedMinutes) : null,
+                workedMinutes
+        };
+    }
+
+    private void addCells(Object[] cells) {
+        Row row = sheet.createRow(rowNum++);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] instanceof Number number) {
+                row.createCell(i).setCellValue(number.doubleValue());
+            } else if (cells[i] != null) {
+                row.createCell(i).setCellValue(cells[i].toString());
+            }
         }
+    }
 
-        return this;
+    public void write(OutputStream outputStream) throws IOException {
+        workbook.write(outputStream);
     }
 
     public ByteArrayResource toFile() {
@@ -75,4 +170,9 @@ public class WorkSheetBuilder {
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    public void close() throws IOException {
+        workbook.close();
+    }
+
+}
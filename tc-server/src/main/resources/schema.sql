@@ -17,6 +17,7 @@ CREATE TABLE IF NOT EXISTS Shifts (
     clockIn TIMESTAMP NOT NULL,
     clockOut TIMESTAMP NULL,
     timeWorked VARCHAR(255) NULL,
+    workedMinutes INT NULL,
     FOREIGN KEY (userId) REFERENCES Users(userId)
 );
 
@@ -42,3 +43,116 @@ CREATE TABLE IF NOT EXISTS HiddenUsers (
     reason VARCHAR(500) NULL,
     FOREIGN KEY (userId) REFERENCES Users(userId)
 );
+
+-- Kiosk and admin user lists are ordered by name
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_users_name ON Users (name)', 'DO 0')
+            FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'Users' AND index_name = 'idx_users_name');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Closed-shift minutes per user per Central Time day, maintained by ShiftService and rebuilt by the reconcile job
+CREATE TABLE IF NOT EXISTS DailyUserTotals (
+    userId VARCHAR(255) NOT NULL,
+    workDate DATE NOT NULL,
+    minutes INT NOT NULL DEFAULT 0,
+    shiftCount INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (userId, workDate),
+    INDEX idx_daily_totals_workDate (workDate)
+);
+
+-- Worked time as integer minutes; timeWorked is kept only as a legacy display column.
+SET @addWorkedMinutes = (SELECT COUNT(*) = 0
+                         FROM information_schema.columns
+                         WHERE table_schema = DATABASE() AND table_name = 'Shifts' AND column_name = 'workedMinutes');
+SET @ddl = IF(@addWorkedMinutes, 'ALTER TABLE Shifts ADD COLUMN workedMinutes INT NULL AFTER timeWorked', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Backfill closed shifts recorded before workedMinutes existed, only on the boot that adds the column;
+-- nothing indexes workedMinutes IS NULL, so running it every startup would scan all of Shifts
+SET @ddl = IF(@addWorkedMinutes, 'UPDATE Shifts SET workedMinutes = TIMESTAMPDIFF(MINUTE, clockIn, clockOut) WHERE workedMinutes IS NULL AND clockOut IS NOT NULL AND clockOut >= clockIn', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Shift lookups are half-open clockIn ranges, so index clockIn (and userId, clockIn for per-user history).
+-- shiftId comes next so shift history pages, ordered by (clockIn, shiftId), are read in index order without
+-- a filesort; InnoDB would only append the primary key after clockOut. clockOut is included so the
+-- open/closed filter is answered from the index alone.
+-- MySQL has no CREATE INDEX IF NOT EXISTS, so check information_schema before creating.
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_shifts_history ON Shifts (clockIn, shiftId, clockOut)', 'DO 0')
+            FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'Shifts' AND index_name = 'idx_shifts_history');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_shifts_user_history ON Shifts (userId, clockIn, shiftId, clockOut)', 'DO 0')
+            FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'Shifts' AND index_name = 'idx_shifts_user_history');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Summary emails waiting to be sent, one row per report date (see EmailOutboxDao)
+CREATE TABLE IF NOT EXISTS EmailOutbox (
+    outboxId INT PRIMARY KEY AUTO_INCREMENT,
+    reportDate DATE NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt TIMESTAMP NOT NULL,
+    claimedAt TIMESTAMP(3) NULL,
+    createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sentAt TIMESTAMP NULL,
+    lastLatencyMs BIGINT NULL,
+    lastError VARCHAR(1000) NULL,
+    UNIQUE KEY uq_email_outbox_report_date (reportDate),
+    INDEX idx_email_outbox_due (status, nextAttemptAt)
+);
+
+-- When a worker took the row for sending, so a claim abandoned by a dead instance can be told from a live one
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE EmailOutbox ADD COLUMN claimedAt TIMESTAMP(3) NULL AFTER nextAttemptAt', 'DO 0')
+            FROM information_schema.columns
+            WHERE table_schema = DATABASE() AND table_name = 'EmailOutbox' AND column_name = 'claimedAt');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- One row per scheduled job: who holds its lease, until when, and how the last run went (see JobLockDao)
+CREATE TABLE IF NOT EXISTS JobLocks (
+    jobName VARCHAR(64) PRIMARY KEY,
+    owner VARCHAR(128) NULL,
+    leaseUntil TIMESTAMP(3) NULL,
+    fencingToken BIGINT NOT NULL DEFAULT 0,
+    lastStartedAt TIMESTAMP(3) NULL,
+    lastFinishedAt TIMESTAMP(3) NULL,
+    lastDurationMs BIGINT NULL,
+    lastOwner VARCHAR(128) NULL,
+    lastOutcome VARCHAR(16) NULL,
+    lastError VARCHAR(1000) NULL
+);
+
+-- Every user and shift write, appended in the writing transaction and tailed by each instance
+-- to drop stale in-memory copies (see ChangeLogDao)
+CREATE TABLE IF NOT EXISTS ChangeLog (
+    seq BIGINT PRIMARY KEY AUTO_INCREMENT,
+    entity VARCHAR(16) NOT NULL,
+    entityId VARCHAR(64) NULL,
+    op VARCHAR(16) NOT NULL,
+    workDate DATE NULL,
+    changedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_change_log_changed_at (changedAt)
+);
+
+-- Signed-in browsers when session.mode is jdbc, keyed by a hash of the session cookie (see WebSessionDao)
+CREATE TABLE IF NOT EXISTS WebSessions (
+    sessionIdHash CHAR(64) PRIMARY KEY,
+    username VARCHAR(64) NOT NULL,
+    authorities VARCHAR(255) NOT NULL,
+    createdAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    lastAccessedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_web_sessions_last_accessed (lastAccessedAt)
+);
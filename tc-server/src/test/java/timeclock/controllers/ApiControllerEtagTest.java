@@ -0,0 +1,145 @@
+package timeclock.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import timeclock.daos.DailyUserTotalsDao;
+import timeclock.daos.DatabaseBulkhead;
+import timeclock.daos.HiddenUserDao;
+import timeclock.daos.ShiftDao;
+import timeclock.daos.UserDao;
+import timeclock.metrics.MetricsRegistry;
+import timeclock.metrics.WorksheetMetrics;
+import timeclock.models.Shift;
+import timeclock.models.User;
+import timeclock.services.AdminService;
+import timeclock.services.EmailOutboxService;
+import timeclock.services.JobLockService;
+import timeclock.services.ReportCache;
+import timeclock.services.ShiftEventBroadcaster;
+import timeclock.services.ShiftPurgeService;
+import timeclock.services.ShiftService;
+import timeclock.services.TimeclockService;
+import timeclock.services.UserService;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 200/304 transitions of the ETag'd read endpoints around clock-in, clock-out and user edits.
+ * The real services run over mocked DAOs so version changes come from the actual write paths.
+ */
+class ApiControllerEtagTest {
+
+    private ShiftDao shiftDao;
+    private UserDao userDao;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        shiftDao = Mockito.mock(ShiftDao.class);
+        userDao = Mockito.mock(UserDao.class);
+        Mockito.when(shiftDao.selectOpenShifts()).thenReturn(List.of());
+        Mockito.when(shiftDao.selectShiftsByDate(any(LocalDate.class))).thenReturn(List.of());
+        Mockito.when(shiftDao.insertNewShift(any(User.class), any(Instant.class))).thenReturn(1);
+        Mockito.when(userDao.selectAllUsersWithHiddenFlag()).thenReturn(List.of(user()));
+        Shift open = new Shift();
+        open.setShiftId(1);
+        open.setUserId("u1");
+        open.setName("Avery Braune");
+        open.setClockInAt(Instant.now().minusSeconds(3600));
+        Mockito.when(shiftDao.selectShiftById(1)).thenReturn(open);
+
+        ShiftService shiftService = new ShiftService(shiftDao, Mockito.mock(DailyUserTotalsDao.class), Mockito.mock(ApplicationEventPublisher.class));
+        shiftService.loadOpenShifts();
+        UserService userService = new UserService(userDao, Mockito.mock(HiddenUserDao.class));
+        TimeclockService timeclockService = new TimeclockService(userService, shiftService,
+                Mockito.mock(EmailOutboxService.class), Mockito.mock(ShiftPurgeService.class), Mockito.mock(ShiftEventBroadcaster.class),
+                new ReportCache(1 << 20, 1 << 20, 1 << 20, null), new WorksheetMetrics(new MetricsRegistry()));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new ApiController(timeclockService, Mockito.mock(AdminService.class),
+                new DatabaseBulkhead(5, 1000), Mockito.mock(JobLockService.class), 2)).build();
+    }
+
+    @Test
+    void shiftsRevalidateAcrossClockInAndClockOut() throws Exception {
+        String before = mockMvc.perform(get("/api/shifts"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/shifts").header("If-None-Match", before))
+                .andExpect(status().isNotModified());
+        Mockito.verify(shiftDao, Mockito.times(1)).selectShiftsByDate(any(LocalDate.class));
+
+        mockMvc.perform(post("/api/clockin").param("userId", "u1"))
+                .andExpect(status().isOk());
+
+        String afterClockIn = mockMvc.perform(get("/api/shifts").header("If-None-Match", before))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/shifts").header("If-None-Match", afterClockIn))
+                .andExpect(status().isNotModified());
+
+        String openBeforeClockOut = mockMvc.perform(get("/api/shifts/open"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/shifts/open").header("If-None-Match", openBeforeClockOut))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/clockout")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"shiftId\":1,\"userId\":\"u1\",\"name\":\"Avery Braune\",\"clockIn\":\"8:00 AM\",\"clockOut\":\"4:30 PM\",\"timeWorked\":null}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/shifts").header("If-None-Match", afterClockIn))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/shifts/open").header("If-None-Match", openBeforeClockOut))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void usersRevalidateAfterUserEdit() throws Exception {
+        String before = mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/users").header("If-None-Match", before))
+                .andExpect(status().isNotModified());
+
+        // Clock-ins don't touch the roster
+        mockMvc.perform(post("/api/clockin").param("userId", "u1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/users").header("If-None-Match", before))
+                .andExpect(status().isNotModified());
+        Mockito.verify(userDao, Mockito.times(1)).selectAllUsersWithHiddenFlag();
+
+        mockMvc.perform(put("/api/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"u1\",\"name\":\"avery braune\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users").header("If-None-Match", before))
+                .andExpect(status().isOk());
+    }
+
+    private User user() {
+        User user = new User();
+        user.setUserId("u1");
+        user.setName("Avery Braune");
+        return user;
+    }
+}
@@ -0,0 +1,65 @@
+package timeclock.controllers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import timeclock.daos.DatabaseBulkhead;
+import timeclock.services.AdminService;
+import timeclock.services.JobLockService;
+import timeclock.services.TimeclockService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * The cap on concurrent shift exports: each one holds a connection until its body has been
+ * written, so requests past the cap are turned away before they borrow one.
+ */
+class ApiControllerExportTest {
+
+    private TimeclockService timeclockService;
+    private ApiController controller;
+
+    @BeforeEach
+    void setUp() {
+        timeclockService = Mockito.mock(TimeclockService.class);
+        Mockito.when(timeclockService.exportFileName(any(), any(), any())).thenReturn("shifts.csv");
+        controller = new ApiController(timeclockService, Mockito.mock(AdminService.class), new DatabaseBulkhead(5, 1000),
+                Mockito.mock(JobLockService.class), 1);
+    }
+
+    @Test
+    void exportPastTheCapIsRefusedUntilTheRunningOneFinishes() throws Exception {
+        ResponseEntity<StreamingResponseBody> first = export();
+        Assertions.assertEquals(HttpStatus.OK, first.getStatusCode());
+
+        ResponseEntity<StreamingResponseBody> second = export();
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getStatusCode());
+        Assertions.assertNotNull(second.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        first.getBody().writeTo(new ByteArrayOutputStream());
+        Assertions.assertEquals(HttpStatus.OK, export().getStatusCode());
+    }
+
+    @Test
+    void failedExportStillFreesItsSlot() throws Exception {
+        Mockito.doThrow(new IOException("client went away"))
+                .when(timeclockService).exportShifts(any(), any(), any(), any());
+
+        ResponseEntity<StreamingResponseBody> first = export();
+        Assertions.assertThrows(IOException.class, () -> first.getBody().writeTo(new ByteArrayOutputStream()));
+
+        Assertions.assertEquals(HttpStatus.OK, export().getStatusCode());
+    }
+
+    private ResponseEntity<StreamingResponseBody> export() {
+        return controller.exportShifts("2024-01-01", "2024-01-14", "csv", null);
+    }
+}
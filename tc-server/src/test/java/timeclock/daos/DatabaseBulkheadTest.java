@@ -0,0 +1,143 @@
+package timeclock.daos;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import timeclock.models.BulkheadStats;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bulkhead in front of a fake pool whose connections just sleep. The platform against
+ * virtual thread throughput comparison is DatabaseBulkheadBenchmark in tc-bench.
+ */
+class DatabaseBulkheadTest {
+
+    private static final int PERMITS = 5;
+    private static final int REQUESTS = 200;
+
+    @Test
+    void closingTheConnectionReturnsThePermitOnce() throws SQLException {
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 50);
+        DataSource dataSource = new BulkheadDataSource(new SleepingDataSource(0), bulkhead);
+
+        Connection connection = dataSource.getConnection();
+        Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        connection.close();
+        connection.close();
+
+        try (Connection again = dataSource.getConnection()) {
+            Assertions.assertEquals(1, bulkhead.snapshot().getInUse());
+        }
+        BulkheadStats stats = bulkhead.snapshot();
+        Assertions.assertEquals(0, stats.getInUse());
+        Assertions.assertEquals(2, stats.getAcquired());
+        Assertions.assertEquals(1, stats.getRejected());
+        Assertions.assertTrue(stats.getMaxWaitMs() >= 50);
+    }
+
+    @Test
+    void failedBorrowReturnsThePermit() {
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 50);
+        DataSource failing = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    throw new SQLException("pool closed");
+                });
+        DataSource dataSource = new BulkheadDataSource(failing, bulkhead);
+
+        Assertions.assertThrows(SQLException.class, dataSource::getConnection);
+        Assertions.assertEquals(0, bulkhead.snapshot().getInUse());
+    }
+
+    @Test
+    void concurrentRequestsNeverHoldMoreThanThePermits() throws Exception {
+        LoadResult result = runLoad(5000, 2);
+        Assertions.assertTrue(result.maxInUse() <= PERMITS, "held more connections than the bulkhead allows");
+        Assertions.assertEquals(0, result.rejected(), "should not time out with a 5 s budget");
+    }
+
+    @Test
+    void shortTimeoutShedsLoadInsteadOfQueueing() throws Exception {
+        LoadResult result = runLoad(5, 20);
+        Assertions.assertTrue(result.rejected() > 0);
+        Assertions.assertTrue(result.maxInUse() <= PERMITS);
+    }
+
+    /**
+     * Every request borrows a connection at once, on its own virtual thread, and holds it for
+     * queryMillis.
+     */
+    private LoadResult runLoad(long acquireTimeoutMillis, long queryMillis) throws Exception {
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead(PERMITS, acquireTimeoutMillis);
+        SleepingDataSource pool = new SleepingDataSource(queryMillis);
+        DataSource dataSource = new BulkheadDataSource(pool, bulkhead);
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>(REQUESTS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < REQUESTS; i++) {
+                futures.add(executor.submit(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        connection.isValid(0);
+                    } catch (SQLTransientConnectionException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return new LoadResult(rejected.get(), pool.maxInUse.get());
+    }
+
+    private record LoadResult(int rejected, int maxInUse) {
+    }
+
+    /**
+     * A pool with no limit of its own whose connections sleep on isValid, standing in for a query.
+     */
+    private static class SleepingDataSource extends AbstractDataSource {
+
+        private final long queryMillis;
+        private final AtomicInteger inUse = new AtomicInteger();
+        private final AtomicInteger maxInUse = new AtomicInteger();
+
+        SleepingDataSource(long queryMillis) {
+            this.queryMillis = queryMillis;
+        }
+
+        @Override
+        public Connection getConnection() {
+            maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "isValid" -> {
+                            Thread.sleep(queryMillis);
+                            yield true;
+                        }
+                        case "close" -> {
+                            inUse.decrementAndGet();
+                            yield null;
+                        }
+                        default -> null;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+}
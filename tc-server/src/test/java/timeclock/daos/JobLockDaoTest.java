@@ -0,0 +1,105 @@
+package timeclock.daos;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import timeclock.models.JobLock;
+
+import java.util.UUID;
+
+/**
+ * Runs the JobLockDao statements against the local database: the upsert that creates the row,
+ * the lease arithmetic on the database clock, and the owner and fencing token guards. The
+ * in-memory table in JobLockServiceTest mirrors these rules; this is what keeps it honest.
+ * Tagged mysql, so it only runs under mysqlTest. Each test uses its own job name and deletes
+ * the row afterwards.
+ */
+@Tag("mysql")
+@SpringBootTest
+@ActiveProfiles({"local", "secret"})
+class JobLockDaoTest {
+
+    private static final long LEASE_MS = 60_000;
+
+    @Autowired
+    private JobLockDao jobLockDao;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final String jobName = "test-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @AfterEach
+    void deleteRow() {
+        namedParameterJdbcTemplate.update("DELETE FROM JobLocks WHERE jobName = :jobName",
+                new MapSqlParameterSource("jobName", jobName));
+    }
+
+    @Test
+    void secondOwnerIsRefusedWhileTheLeaseIsHeld() {
+        Long token = jobLockDao.acquire(jobName, "replica-a", LEASE_MS, 0);
+
+        Assertions.assertEquals(1L, token);
+        Assertions.assertNull(jobLockDao.acquire(jobName, "replica-b", LEASE_MS, 0));
+        Assertions.assertTrue(jobLockDao.isHeld(jobName, "replica-a", token));
+        Assertions.assertFalse(jobLockDao.isHeld(jobName, "replica-b", token));
+        Assertions.assertTrue(jobLockDao.renew(jobName, "replica-a", token, LEASE_MS));
+        Assertions.assertFalse(jobLockDao.renew(jobName, "replica-b", token, LEASE_MS));
+    }
+
+    @Test
+    void releaseRecordsTheRunAndFreesTheLease() {
+        Long token = jobLockDao.acquire(jobName, "replica-a", LEASE_MS, 0);
+
+        Assertions.assertTrue(jobLockDao.release(jobName, "replica-a", token, 42, JobLock.Outcome.FAILED, "smtp down"));
+        Assertions.assertFalse(jobLockDao.isHeld(jobName, "replica-a", token));
+
+        JobLock row = row();
+        Assertions.assertNull(row.getOwner());
+        Assertions.assertNull(row.getLeaseUntil());
+        Assertions.assertEquals("replica-a", row.getLastOwner());
+        Assertions.assertEquals(JobLock.Outcome.FAILED, row.getLastOutcome());
+        Assertions.assertEquals(42L, row.getLastDurationMs());
+        Assertions.assertEquals("smtp down", row.getLastError());
+
+        Assertions.assertEquals(2L, jobLockDao.acquire(jobName, "replica-b", LEASE_MS, 0));
+    }
+
+    @Test
+    void jobThatJustStartedIsNotTakenAgainWithinTheInterval() {
+        Long token = jobLockDao.acquire(jobName, "replica-a", LEASE_MS, 0);
+        jobLockDao.release(jobName, "replica-a", token, 0, JobLock.Outcome.SUCCEEDED, null);
+
+        Assertions.assertNull(jobLockDao.acquire(jobName, "replica-b", LEASE_MS, 60_000));
+        Assertions.assertEquals(2L, jobLockDao.acquire(jobName, "replica-b", LEASE_MS, 0));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheOldHolderIsFencedOut() throws InterruptedException {
+        Long stale = jobLockDao.acquire(jobName, "replica-a", 200, 0);
+        Thread.sleep(400);
+
+        Assertions.assertFalse(jobLockDao.isHeld(jobName, "replica-a", stale));
+        Long token = jobLockDao.acquire(jobName, "replica-b", LEASE_MS, 0);
+        Assertions.assertEquals(stale + 1, token);
+
+        Assertions.assertFalse(jobLockDao.renew(jobName, "replica-a", stale, LEASE_MS));
+        Assertions.assertFalse(jobLockDao.release(jobName, "replica-a", stale, 0, JobLock.Outcome.SUCCEEDED, null));
+        JobLock row = row();
+        Assertions.assertEquals("replica-b", row.getOwner());
+        Assertions.assertNull(row.getLastOutcome());
+    }
+
+    private JobLock row() {
+        return jobLockDao.selectAll().stream()
+                .filter(jobLock -> jobLock.getJobName().equals(jobName))
+                .findFirst()
+                .orElseThrow();
+    }
+}
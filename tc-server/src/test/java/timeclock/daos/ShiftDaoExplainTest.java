@@ -0,0 +1,124 @@
+package timeclock.daos;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import timeclock.utilities.DateUtility;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verifies the ShiftDao date lookups are planned as index range scans on clockIn
+ * rather than full table scans, and shift history pages without a filesort. Runs EXPLAIN
+ * against the local database, so it is tagged mysql and only runs under mysqlTest.
+ */
+@Tag("mysql")
+@SpringBootTest
+@ActiveProfiles({"local", "secret"})
+class ShiftDaoExplainTest {
+
+    private static final Set<String> CLOCK_IN_INDEXES = Set.of("idx_shifts_history", "idx_shifts_user_history");
+
+    // A single day long before any real data keeps the optimizer from preferring a scan on a small table
+    private static final LocalDate DAY = LocalDate.of(2000, 1, 3);
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Test
+    void selectShiftsBetweenUsesRangeScan() {
+        assertRangeScan(explain(ShiftDao.SELECT_SHIFTS_BETWEEN, dayRange()));
+    }
+
+    @Test
+    void selectUserShiftRowsBetweenUsesRangeScan() {
+        assertRangeScan(explain(ShiftDao.SELECT_USER_SHIFT_ROWS_BETWEEN, dayRange()));
+    }
+
+    @Test
+    void countShiftsPriorToUsesRangeScan() {
+        assertRangeScan(explain(ShiftDao.COUNT_SHIFTS_PRIOR_TO, cutoff()));
+    }
+
+    @Test
+    void selectShiftIdsPriorToUsesRangeScan() {
+        MapSqlParameterSource params = cutoff();
+        params.addValue("limit", 500);
+        assertRangeScan(explain(ShiftDao.SELECT_SHIFT_IDS_PRIOR_TO, params));
+    }
+
+    @Test
+    void shiftHistoryPagesAreReadInIndexOrder() {
+        Instant cursor = DateUtility.startOfDayCentralTime(DAY);
+        assertNoFilesort(explainHistoryPage(null, null, null, null, null));
+        assertNoFilesort(explainHistoryPage(null, false, null, cursor, 9));
+        assertNoFilesort(explainHistoryPage("u1", null, null, null, null));
+        assertNoFilesort(explainHistoryPage("u1", true, DAY.minusDays(30), cursor, 9));
+    }
+
+    private List<Map<String, Object>> explainHistoryPage(String userId, Boolean open, LocalDate from,
+                                                         Instant afterClockIn, Integer afterShiftId) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = ShiftDao.shiftHistoryPageQuery(userId, from != null ? DateUtility.startOfDayCentralTime(from) : null,
+                null, open, afterClockIn, afterShiftId, 51, params);
+        return explain(sql, params);
+    }
+
+    /**
+     * The inner page query (table Shifts, not the joined alias s) walks a history index in order.
+     * The outer ORDER BY only re-sorts the page itself.
+     */
+    private void assertNoFilesort(List<Map<String, Object>> plan) {
+        Map<String, Object> shiftsRow = shiftsRow(plan);
+
+        Assertions.assertTrue(CLOCK_IN_INDEXES.contains(String.valueOf(shiftsRow.get("key"))),
+                "Expected a history index: " + shiftsRow);
+        Assertions.assertFalse(String.valueOf(shiftsRow.get("Extra")).contains("Using filesort"),
+                "Expected no filesort: " + shiftsRow);
+    }
+
+    private List<Map<String, Object>> explain(String sql, MapSqlParameterSource params) {
+        return namedParameterJdbcTemplate.queryForList("EXPLAIN " + sql, params);
+    }
+
+    /**
+     * Finds the plan row for the Shifts table and checks it is a range scan over one of the clockIn indexes.
+     */
+    private void assertRangeScan(List<Map<String, Object>> plan) {
+        Map<String, Object> shiftsRow = shiftsRow(plan);
+
+        Assertions.assertEquals("range", shiftsRow.get("type"), "Expected a range scan: " + shiftsRow);
+        Assertions.assertTrue(CLOCK_IN_INDEXES.contains(String.valueOf(shiftsRow.get("key"))),
+                "Expected a clockIn index: " + shiftsRow);
+    }
+
+    private static Map<String, Object> shiftsRow(List<Map<String, Object>> plan) {
+        return plan.stream()
+                .filter(row -> "Shifts".equalsIgnoreCase(String.valueOf(row.get("table"))))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No Shifts row in plan: " + plan));
+    }
+
+    private MapSqlParameterSource dayRange() {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("start", Timestamp.from(DateUtility.startOfDayCentralTime(DAY)));
+        params.addValue("end", Timestamp.from(DateUtility.startOfDayCentralTime(DAY.plusDays(1))));
+        return params;
+    }
+
+    private MapSqlParameterSource cutoff() {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("cutoff", Timestamp.from(DateUtility.startOfDayCentralTime(DAY)));
+        return params;
+    }
+}
@@ -0,0 +1,38 @@
+package timeclock.daos;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import timeclock.models.UserShiftRow;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+class ShiftDaoStreamingTest {
+
+    private static final Instant START = Instant.parse("2025-02-05T06:00:00Z");
+
+    @Test
+    void streamedRowsAreMappedWithoutAskingTheResultSetForItsPosition() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1, "u1", "Avery Braune", Timestamp.from(START.plusSeconds(7200)), Timestamp.from(START.plusSeconds(37800)), 510,
+                "555-0100", "avery@example.com", "12 Elm St"});
+        rows.add(new Object[]{2, "u2", "Molly Pieper", Timestamp.from(START.plusSeconds(10800)), null, null, null, null, null});
+        StreamingResultSetDataSource dataSource = new StreamingResultSetDataSource(rows);
+        ShiftDao shiftDao = new ShiftDao(new NamedParameterJdbcTemplate(dataSource), null);
+
+        List<UserShiftRow> streamed = new ArrayList<>();
+        shiftDao.streamUserShiftRowsBetween(START, START.plusSeconds(86400), streamed::add);
+
+        Assertions.assertEquals(Integer.MIN_VALUE, dataSource.getLastFetchSize(), "read as a Connector/J stream");
+        Assertions.assertEquals(2, streamed.size());
+        Assertions.assertEquals("Avery Braune", streamed.get(0).getName());
+        Assertions.assertEquals(510, streamed.get(0).getWorkedMinutes());
+        Assertions.assertEquals("12 Elm St", streamed.get(0).getMailingAddress());
+        Assertions.assertEquals(2, streamed.get(1).getShiftId());
+        Assertions.assertNull(streamed.get(1).getClockOutAt());
+        Assertions.assertNull(streamed.get(1).getWorkedMinutes());
+    }
+}
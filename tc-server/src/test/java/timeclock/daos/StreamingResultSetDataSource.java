@@ -0,0 +1,96 @@
+package timeclock.daos;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Answers every query with the given rows the way Connector/J streams them (fetch size
+ * Integer.MIN_VALUE): forward only, one row at a time, and getRow() throws because a streaming
+ * result set can't tell where it is. Columns are read by position, as the row mappers do.
+ */
+public class StreamingResultSetDataSource extends AbstractDataSource {
+
+    private final List<Object[]> rows;
+    private int lastFetchSize;
+
+    public StreamingResultSetDataSource(List<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    public int getLastFetchSize() {
+        return lastFetchSize;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return proxy(Connection.class, (method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> preparedStatement();
+            default -> defaultValue(method);
+        });
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) {
+        return getConnection();
+    }
+
+    private PreparedStatement preparedStatement() {
+        return proxy(PreparedStatement.class, (method, args) -> switch (method.getName()) {
+            case "setFetchSize" -> {
+                lastFetchSize = (int) args[0];
+                yield null;
+            }
+            case "executeQuery" -> resultSet();
+            default -> defaultValue(method);
+        });
+    }
+
+    private ResultSet resultSet() {
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        return proxy(ResultSet.class, (method, args) -> switch (method.getName()) {
+            case "next" -> ++cursor[0] < rows.size();
+            case "getRow" -> throw new SQLException("Operation not supported for streaming result sets");
+            case "getType" -> ResultSet.TYPE_FORWARD_ONLY;
+            case "wasNull" -> wasNull[0];
+            case "getInt", "getString", "getTimestamp" -> {
+                Object value = rows.get(cursor[0])[(int) args[0] - 1];
+                wasNull[0] = value == null;
+                if (method.getName().equals("getInt")) {
+                    yield value == null ? 0 : (Integer) value;
+                }
+                yield method.getName().equals("getTimestamp") ? (Timestamp) value : (String) value;
+            }
+            default -> defaultValue(method);
+        });
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        return type == long.class ? 0L : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method, args));
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+}
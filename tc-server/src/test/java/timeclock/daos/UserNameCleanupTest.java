@@ -1,5 +1,6 @@
 package timeclock.daos;
 
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -21,6 +22,7 @@ import java.util.stream.Collectors;
  * 2. Filter users with improper name formatting
  * 3. Update their names to proper Title Case format
  */
+@Tag("mysql")
 @SpringBootTest
 @ActiveProfiles({"local", "secret"})
 class UserNameCleanupTest {
@@ -0,0 +1,68 @@
+package timeclock.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.framework.ProxyFactory;
+import timeclock.daos.HiddenUserDao;
+import timeclock.daos.UserDao;
+import timeclock.services.UserService;
+
+class MetricsRegistryTest {
+
+    @Test
+    void histogramBucketsAreCumulative() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Histogram histogram = registry.histogram("op_seconds", "Op latency", new double[]{0.1, 1},
+                "operation", "clockIn", "outcome", "success");
+        histogram.observe(0.05);
+        histogram.observe(0.1);
+        histogram.observe(0.5);
+        histogram.observe(3);
+
+        String scrape = registry.scrape();
+        Assertions.assertTrue(scrape.contains("# TYPE op_seconds histogram\n"));
+        Assertions.assertTrue(scrape.contains("op_seconds_bucket{operation=\"clockIn\",outcome=\"success\",le=\"0.1\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("op_seconds_bucket{operation=\"clockIn\",outcome=\"success\",le=\"1\"} 3\n"));
+        Assertions.assertTrue(scrape.contains("op_seconds_bucket{operation=\"clockIn\",outcome=\"success\",le=\"+Inf\"} 4\n"));
+        Assertions.assertTrue(scrape.contains("op_seconds_sum{operation=\"clockIn\",outcome=\"success\"} 3.65\n"));
+        Assertions.assertTrue(scrape.contains("op_seconds_count{operation=\"clockIn\",outcome=\"success\"} 4\n"));
+    }
+
+    @Test
+    void sameNameAndLabelsIsTheSameMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("sent_total", "Sent", "outcome", "failure").increment();
+        registry.counter("sent_total", "Sent", "outcome", "failure").increment();
+        registry.gauge("pool_active", "Active", () -> Double.NaN);
+
+        String scrape = registry.scrape();
+        Assertions.assertTrue(scrape.contains("sent_total{outcome=\"failure\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("pool_active NaN\n"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.gauge("sent_total", "Sent", () -> 1));
+    }
+
+    @Test
+    void labelValuesAreEscaped() {
+        Assertions.assertEquals("uri=\"/a\\\"b\\\\c\"", MetricsRegistry.renderLabels("uri", "/a\"b\\c"));
+    }
+
+    @Test
+    void interceptorRecordsOutcomeByMethodNotArguments() {
+        MetricsRegistry registry = new MetricsRegistry();
+        UserDao userDao = Mockito.mock(UserDao.class);
+        Mockito.when(userDao.getUserById("missing")).thenThrow(new IllegalStateException("no such user"));
+        ProxyFactory proxyFactory = new ProxyFactory(new UserService(userDao, Mockito.mock(HiddenUserDao.class)));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TimedMethodInterceptor(() -> registry, "op_seconds", "Op latency", "component", "operation"));
+        UserService userService = (UserService) proxyFactory.getProxy();
+
+        userService.getAllUsers();
+        Assertions.assertThrows(IllegalStateException.class, () -> userService.getUserById("missing"));
+
+        String scrape = registry.scrape();
+        Assertions.assertTrue(scrape.contains("op_seconds_count{component=\"UserService\",operation=\"getAllUsers\",outcome=\"success\"} 1\n"));
+        Assertions.assertTrue(scrape.contains("op_seconds_count{component=\"UserService\",operation=\"getUserById\",outcome=\"failure\"} 1\n"));
+        Assertions.assertFalse(scrape.contains("missing"));
+    }
+}
@@ -0,0 +1,247 @@
+package timeclock.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import timeclock.daos.ChangeLogDao;
+import timeclock.daos.DailyUserTotalsDao;
+import timeclock.daos.HiddenUserDao;
+import timeclock.daos.ShiftDao;
+import timeclock.daos.UserDao;
+import timeclock.models.ChangeEvent;
+import timeclock.models.Shift;
+import timeclock.models.ShiftEvent;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stands in for the instance that did not make the write: the change reaches its services only
+ * through the shared ChangeLog table.
+ */
+class ChangeLogPollerTest {
+
+    private final SharedChangeLog changeLog = new SharedChangeLog();
+    private final List<ChangeEvent> published = new ArrayList<>();
+    private ShiftDao shiftDao;
+    private UserDao userDao;
+    private ShiftService shiftService;
+    private UserService userService;
+    private ShiftEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        shiftDao = Mockito.mock(ShiftDao.class);
+        Mockito.when(shiftDao.selectOpenShifts()).thenReturn(List.of());
+        userDao = Mockito.mock(UserDao.class);
+        Mockito.when(userDao.selectAllUsersWithHiddenFlag()).thenReturn(List.of());
+        shiftService = new ShiftService(shiftDao, Mockito.mock(DailyUserTotalsDao.class), Mockito.mock(ApplicationEventPublisher.class));
+        shiftService.loadOpenShifts();
+        userService = new UserService(userDao, Mockito.mock(HiddenUserDao.class));
+        broadcaster = new ShiftEventBroadcaster(new ObjectMapper(), 16, 16, 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void startsAtTheEndOfTheLog() {
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.USER, "u1", ChangeEvent.Op.INSERT, null));
+        ChangeLogPoller poller = poller(60_000);
+
+        poller.poll();
+        poller.poll();
+
+        Assertions.assertTrue(published.isEmpty());
+    }
+
+    @Test
+    void clockInAndOutElsewhereUpdateTheOpenShifts() {
+        ChangeLogPoller poller = poller(60_000);
+        poller.poll();
+        long version = shiftService.getShiftVersion();
+
+        Shift shift = shift(42, "u1", null);
+        Mockito.when(shiftDao.selectShiftById(42)).thenReturn(shift);
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.SHIFT, "42", ChangeEvent.Op.INSERT, LocalDate.now()));
+        poller.poll();
+
+        Assertions.assertTrue(shiftService.hasOpenShift("u1"));
+        Assertions.assertTrue(shiftService.getShiftVersion() > version);
+
+        Mockito.when(shiftDao.selectShiftById(42)).thenReturn(shift(42, "u1", Instant.now()));
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.SHIFT, "42", ChangeEvent.Op.UPDATE, LocalDate.now()));
+        poller.poll();
+
+        Assertions.assertFalse(shiftService.hasOpenShift("u1"));
+    }
+
+    @Test
+    void shiftStreamCarriesChangesFromElsewhereButNotItsOwnTwice() throws Exception {
+        ChangeLogPoller poller = poller(60_000);
+        poller.poll();
+        EventNames stream = new EventNames();
+        broadcaster.subscribe(stream, null);
+
+        // Clock-in here: broadcast as it commits, then read back from the log
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.CLOCK_IN, 42, "u1", "u1", LocalDate.now()));
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.SHIFT, "42", ChangeEvent.Op.INSERT, LocalDate.now()));
+        // Clock-in and a purge on another instance
+        Mockito.when(shiftDao.selectShiftById(43)).thenReturn(shift(43, "u2", null));
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.SHIFT, "43", ChangeEvent.Op.INSERT, LocalDate.now()));
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.SHIFT, null, ChangeEvent.Op.PURGE, LocalDate.now().minusYears(1)));
+        poller.poll();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stream.names.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        Assertions.assertEquals(List.of("clock-in", "clock-in", "purge"), stream.names);
+        Assertions.assertTrue(stream.data.get(1).contains("\"shiftId\":43"));
+    }
+
+    @Test
+    void userChangeElsewhereReloadsTheRoster() {
+        ChangeLogPoller poller = poller(60_000);
+        poller.poll();
+        userService.getAllUsers();
+
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.USER, "u1", ChangeEvent.Op.HIDE, null));
+        poller.poll();
+        userService.getAllUsers();
+
+        Mockito.verify(userDao, Mockito.times(2)).selectAllUsersWithHiddenFlag();
+    }
+
+    @Test
+    void changeThatCommitsLateIsStillPublished() {
+        ChangeLogPoller poller = poller(60_000);
+        poller.poll();
+
+        long slow = changeLog.reserve(ChangeEvent.Entity.USER, "u1", ChangeEvent.Op.UPDATE, null);
+        long fast = changeLog.reserve(ChangeEvent.Entity.USER, "u2", ChangeEvent.Op.UPDATE, null);
+        changeLog.commit(fast);
+        poller.poll();
+        changeLog.commit(slow);
+        poller.poll();
+        poller.poll();
+
+        Assertions.assertEquals(List.of(fast, slow), published.stream().map(ChangeEvent::getSeq).toList());
+    }
+
+    @Test
+    void gapThatNeverCommitsIsGivenUp() {
+        ChangeLogPoller poller = poller(0);
+        poller.poll();
+
+        long rolledBack = changeLog.reserve(ChangeEvent.Entity.USER, "u1", ChangeEvent.Op.UPDATE, null);
+        changeLog.commit(changeLog.reserve(ChangeEvent.Entity.USER, "u2", ChangeEvent.Op.UPDATE, null));
+        poller.poll();
+        Assertions.assertTrue(changeLog.lastMissingSeqs.isEmpty());
+        poller.poll();
+        Assertions.assertTrue(changeLog.lastMissingSeqs.contains(rolledBack));
+        poller.poll();
+
+        Assertions.assertFalse(changeLog.lastMissingSeqs.contains(rolledBack));
+        Assertions.assertEquals(1, poller.getPublishedCount());
+        Assertions.assertTrue(poller.getLagSeconds() < 60);
+    }
+
+    private ChangeLogPoller poller(long gapTimeoutMillis) {
+        ApplicationEventPublisher publisher = event -> {
+            ChangeEvent change = (ChangeEvent) event;
+            published.add(change);
+            shiftService.onChange(change);
+            userService.onChange(change);
+            broadcaster.onChange(change);
+        };
+        return new ChangeLogPoller(changeLog, publisher, 1000, gapTimeoutMillis, 24);
+    }
+
+    private static Shift shift(int shiftId, String userId, Instant clockOutAt) {
+        Shift shift = new Shift();
+        shift.setShiftId(shiftId);
+        shift.setUserId(userId);
+        shift.setName(userId);
+        shift.setClockInAt(Instant.now().minusSeconds(3600));
+        shift.setClockOutAt(clockOutAt);
+        return shift;
+    }
+
+    /**
+     * A /api/shifts/stream client: keeps the name and data of each event it is sent.
+     */
+    private static class EventNames extends SseEmitter {
+
+        private static final Pattern EVENT = Pattern.compile("event:([a-z-]+)\n(?:.*\n)*?data:(.*)");
+
+        private final List<String> names = new CopyOnWriteArrayList<>();
+        private final List<String> data = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder frame = new StringBuilder();
+            builder.build().forEach(part -> frame.append(part.getData()));
+            Matcher matcher = EVENT.matcher(frame);
+            if (matcher.find()) {
+                names.add(matcher.group(1));
+                data.add(matcher.group(2));
+            }
+        }
+    }
+
+    /**
+     * The ChangeLog table. A reserved seq is invisible until committed, like an insert whose
+     * transaction is still open.
+     */
+    private static class SharedChangeLog extends ChangeLogDao {
+
+        private final TreeMap<Long, ChangeEvent> rows = new TreeMap<>();
+        private final TreeMap<Long, ChangeEvent> uncommitted = new TreeMap<>();
+        private Collection<Long> lastMissingSeqs = List.of();
+        private long nextSeq = 1;
+
+        SharedChangeLog() {
+            super(null);
+        }
+
+        long reserve(ChangeEvent.Entity entity, String entityId, ChangeEvent.Op op, LocalDate workDate) {
+            long seq = nextSeq++;
+            uncommitted.put(seq, new ChangeEvent(seq, entity, entityId, op, workDate));
+            return seq;
+        }
+
+        void commit(long seq) {
+            rows.put(seq, uncommitted.remove(seq));
+        }
+
+        @Override
+        public long selectMaxSeq() {
+            return rows.isEmpty() ? 0 : rows.lastKey();
+        }
+
+        @Override
+        public List<ChangeEvent> selectAfter(long afterSeq, Collection<Long> missingSeqs, int limit) {
+            lastMissingSeqs = missingSeqs;
+            return rows.values().stream()
+                    .filter(row -> row.getSeq() > afterSeq || missingSeqs.contains(row.getSeq()))
+                    .limit(limit)
+                    .toList();
+        }
+    }
+}
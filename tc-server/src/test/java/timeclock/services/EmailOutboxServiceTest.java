@@ -0,0 +1,402 @@
+package timeclock.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import timeclock.daos.EmailOutboxDao;
+import timeclock.metrics.MetricsRegistry;
+import timeclock.metrics.WorksheetMetrics;
+import timeclock.models.EmailOutboxEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class EmailOutboxServiceTest {
+
+    private static final LocalDate REPORT_DATE = LocalDate.of(2025, 2, 5);
+    private static final long BASE_BACKOFF_MS = 60_000;
+    private static final long CLAIM_TIMEOUT_MS = 600_000;
+
+    private SmtpStandIn smtp;
+    private InMemoryEmailOutboxDao outboxDao;
+    private EmailService emailService;
+    private ShiftService shiftService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new SmtpStandIn();
+        outboxDao = new InMemoryEmailOutboxDao();
+        shiftService = Mockito.mock(ShiftService.class);
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.getPort());
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.from", "timeclock@localhost");
+        properties.setProperty("mail.smtp.connectiontimeout", "5000");
+        properties.setProperty("mail.smtp.timeout", "5000");
+        mailSender.setJavaMailProperties(properties);
+        emailService = new EmailService(mailSender);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void enqueueReturnsAtOnceAndTheWorkerSends() throws Exception {
+        EmailOutboxService outboxService = outboxService(8);
+        try {
+            EmailOutboxEntry queued = outboxService.enqueue(REPORT_DATE);
+            Assertions.assertEquals(EmailOutboxEntry.Status.PENDING, queued.getStatus());
+
+            EmailOutboxEntry sent = awaitStatus(EmailOutboxEntry.Status.SENT);
+            Assertions.assertEquals(1, sent.getAttempts());
+            Assertions.assertNotNull(sent.getSentAt());
+            Assertions.assertNotNull(sent.getLastLatencyMs());
+            Assertions.assertEquals(1, smtp.getMessages().size());
+            Assertions.assertTrue(smtp.getMessages().get(0).contains("Timesheet"));
+        } finally {
+            outboxService.shutdown();
+        }
+    }
+
+    @Test
+    void failedSendIsRetriedAfterBackoff() {
+        EmailOutboxService outboxService = stoppedOutboxService(8);
+        smtp.rejectNext(1);
+        outboxService.enqueue(REPORT_DATE);
+
+        Instant beforeAttempt = Instant.now();
+        outboxService.dispatchDue();
+        EmailOutboxEntry failed = outboxDao.selectByReportDate(REPORT_DATE);
+        Assertions.assertEquals(EmailOutboxEntry.Status.PENDING, failed.getStatus());
+        Assertions.assertEquals(1, failed.getAttempts());
+        Assertions.assertNotNull(failed.getLastError());
+        Assertions.assertFalse(failed.getNextAttemptAt().isBefore(beforeAttempt.plusMillis(BASE_BACKOFF_MS)));
+
+        // Not due yet, so nothing is sent
+        outboxService.dispatchDue();
+        Assertions.assertEquals(0, smtp.getMessages().size());
+
+        outboxDao.makeDue(REPORT_DATE);
+        outboxService.dispatchDue();
+        EmailOutboxEntry sent = outboxDao.selectByReportDate(REPORT_DATE);
+        Assertions.assertEquals(EmailOutboxEntry.Status.SENT, sent.getStatus());
+        Assertions.assertEquals(2, sent.getAttempts());
+        Assertions.assertNull(sent.getLastError());
+        Assertions.assertEquals(1, smtp.getMessages().size());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        EmailOutboxService outboxService = stoppedOutboxService(2);
+        smtp.rejectNext(Integer.MAX_VALUE);
+        outboxService.enqueue(REPORT_DATE);
+
+        outboxService.dispatchDue();
+        outboxDao.makeDue(REPORT_DATE);
+        outboxService.dispatchDue();
+
+        EmailOutboxEntry entry = outboxDao.selectByReportDate(REPORT_DATE);
+        Assertions.assertEquals(EmailOutboxEntry.Status.FAILED, entry.getStatus());
+        Assertions.assertEquals(2, entry.getAttempts());
+
+        // Asking again starts the date over
+        EmailOutboxEntry requeued = outboxService.enqueue(REPORT_DATE);
+        Assertions.assertEquals(EmailOutboxEntry.Status.PENDING, requeued.getStatus());
+        Assertions.assertEquals(0, requeued.getAttempts());
+    }
+
+    @Test
+    void repeatedRequestsForADateSendOnce() {
+        EmailOutboxService outboxService = stoppedOutboxService(8);
+        EmailOutboxEntry first = outboxService.enqueue(REPORT_DATE);
+        EmailOutboxEntry second = outboxService.enqueue(REPORT_DATE);
+        Assertions.assertEquals(first.getOutboxId(), second.getOutboxId());
+
+        outboxService.dispatchDue();
+        outboxService.dispatchDue();
+        Assertions.assertEquals(1, smtp.getMessages().size());
+    }
+
+    @Test
+    void claimIsOnlyTakenBackOnceItTimesOut() {
+        EmailOutboxService outboxService = stoppedOutboxService(8);
+        EmailOutboxEntry queued = outboxService.enqueue(REPORT_DATE);
+        // Another instance, still running during a rolling deploy, is sending it
+        Assertions.assertTrue(outboxDao.claim(queued.getOutboxId()));
+
+        outboxService.dispatchDue();
+        Assertions.assertEquals(EmailOutboxEntry.Status.SENDING, outboxDao.selectByReportDate(REPORT_DATE).getStatus());
+        Assertions.assertEquals(0, smtp.getMessages().size());
+
+        // That instance died without finishing
+        outboxDao.ageClaim(REPORT_DATE, CLAIM_TIMEOUT_MS);
+        outboxService.dispatchDue();
+        EmailOutboxEntry sent = outboxDao.selectByReportDate(REPORT_DATE);
+        Assertions.assertEquals(EmailOutboxEntry.Status.SENT, sent.getStatus());
+        Assertions.assertEquals(2, sent.getAttempts());
+        Assertions.assertEquals(1, smtp.getMessages().size());
+    }
+
+    @Test
+    void backoffDoublesUpToTheCap() {
+        EmailOutboxService outboxService = stoppedOutboxService(8);
+        Assertions.assertEquals(BASE_BACKOFF_MS, outboxService.backoffMillis(1));
+        Assertions.assertEquals(2 * BASE_BACKOFF_MS, outboxService.backoffMillis(2));
+        Assertions.assertEquals(8 * BASE_BACKOFF_MS, outboxService.backoffMillis(4));
+        Assertions.assertEquals(3_600_000, outboxService.backoffMillis(20));
+    }
+
+    private EmailOutboxService outboxService(int maxAttempts) {
+        return new EmailOutboxService(outboxDao, shiftService, emailService, new WorksheetMetrics(new MetricsRegistry()), maxAttempts, BASE_BACKOFF_MS, 3_600_000, CLAIM_TIMEOUT_MS);
+    }
+
+    // No background worker: the test drives dispatchDue itself
+    private EmailOutboxService stoppedOutboxService(int maxAttempts) {
+        EmailOutboxService outboxService = outboxService(maxAttempts);
+        outboxService.shutdown();
+        return outboxService;
+    }
+
+    private EmailOutboxEntry awaitStatus(EmailOutboxEntry.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            EmailOutboxEntry entry = outboxDao.selectByReportDate(REPORT_DATE);
+            if (entry.getStatus() == status) {
+                return entry;
+            }
+            Thread.sleep(20);
+        }
+        Assertions.fail("Outbox entry never reached " + status);
+        return null;
+    }
+
+    /**
+     * Mirrors the state transitions of the SQL in EmailOutboxDao.
+     */
+    private static class InMemoryEmailOutboxDao extends EmailOutboxDao {
+
+        private final Map<LocalDate, EmailOutboxEntry> entries = new LinkedHashMap<>();
+        private final Map<Integer, Instant> claimedAt = new HashMap<>();
+        private int nextId = 1;
+
+        InMemoryEmailOutboxDao() {
+            super(null);
+        }
+
+        @Override
+        public synchronized EmailOutboxEntry enqueue(LocalDate reportDate, Instant now) {
+            EmailOutboxEntry entry = entries.get(reportDate);
+            if (entry == null) {
+                entry = new EmailOutboxEntry();
+                entry.setOutboxId(nextId++);
+                entry.setReportDate(reportDate);
+                entry.setCreatedAt(now);
+                entries.put(reportDate, entry);
+            } else if (entry.getStatus() != EmailOutboxEntry.Status.PENDING && entry.getStatus() != EmailOutboxEntry.Status.SENDING) {
+                entry.setAttempts(0);
+                entry.setLastError(null);
+            }
+            entry.setNextAttemptAt(now);
+            entry.setStatus(EmailOutboxEntry.Status.PENDING);
+            return copy(entry);
+        }
+
+        @Override
+        public synchronized EmailOutboxEntry selectByReportDate(LocalDate reportDate) {
+            EmailOutboxEntry entry = entries.get(reportDate);
+            return entry != null ? copy(entry) : null;
+        }
+
+        synchronized void makeDue(LocalDate reportDate) {
+            entries.get(reportDate).setNextAttemptAt(Instant.now());
+        }
+
+        synchronized void ageClaim(LocalDate reportDate, long millis) {
+            claimedAt.computeIfPresent(entries.get(reportDate).getOutboxId(), (outboxId, at) -> at.minusMillis(millis));
+        }
+
+        @Override
+        public synchronized List<EmailOutboxEntry> selectDue(Instant now, int limit) {
+            List<EmailOutboxEntry> due = new ArrayList<>();
+            for (EmailOutboxEntry entry : entries.values()) {
+                if (entry.getStatus() == EmailOutboxEntry.Status.PENDING && !entry.getNextAttemptAt().isAfter(now) && due.size() < limit) {
+                    due.add(copy(entry));
+                }
+            }
+            return due;
+        }
+
+        @Override
+        public synchronized boolean claim(int outboxId) {
+            EmailOutboxEntry entry = byId(outboxId, EmailOutboxEntry.Status.PENDING);
+            if (entry == null) {
+                return false;
+            }
+            entry.setStatus(EmailOutboxEntry.Status.SENDING);
+            entry.setAttempts(entry.getAttempts() + 1);
+            claimedAt.put(outboxId, Instant.now());
+            return true;
+        }
+
+        @Override
+        public synchronized void markSent(int outboxId, long latencyMs, Instant sentAt) {
+            EmailOutboxEntry entry = byId(outboxId, EmailOutboxEntry.Status.SENDING);
+            if (entry != null) {
+                entry.setStatus(EmailOutboxEntry.Status.SENT);
+                entry.setSentAt(sentAt);
+                entry.setLastLatencyMs(latencyMs);
+                entry.setLastError(null);
+            }
+        }
+
+        @Override
+        public synchronized void markFailed(int outboxId, long latencyMs, String error, Instant nextAttemptAt, boolean giveUp) {
+            EmailOutboxEntry entry = byId(outboxId, EmailOutboxEntry.Status.SENDING);
+            if (entry != null) {
+                entry.setStatus(giveUp ? EmailOutboxEntry.Status.FAILED : EmailOutboxEntry.Status.PENDING);
+                entry.setNextAttemptAt(nextAttemptAt);
+                entry.setLastLatencyMs(latencyMs);
+                entry.setLastError(error);
+            }
+        }
+
+        @Override
+        public synchronized int requeueAbandoned(long claimTimeoutMs) {
+            Instant cutoff = Instant.now().minusMillis(claimTimeoutMs);
+            int requeued = 0;
+            for (EmailOutboxEntry entry : entries.values()) {
+                Instant claimed = claimedAt.get(entry.getOutboxId());
+                if (entry.getStatus() == EmailOutboxEntry.Status.SENDING && (claimed == null || claimed.isBefore(cutoff))) {
+                    entry.setStatus(EmailOutboxEntry.Status.PENDING);
+                    requeued++;
+                }
+            }
+            return requeued;
+        }
+
+        // Callers get a snapshot, as they would from a query
+        private static EmailOutboxEntry copy(EmailOutboxEntry entry) {
+            EmailOutboxEntry copy = new EmailOutboxEntry();
+            copy.setOutboxId(entry.getOutboxId());
+            copy.setReportDate(entry.getReportDate());
+            copy.setStatus(entry.getStatus());
+            copy.setAttempts(entry.getAttempts());
+            copy.setNextAttemptAt(entry.getNextAttemptAt());
+            copy.setCreatedAt(entry.getCreatedAt());
+            copy.setSentAt(entry.getSentAt());
+            copy.setLastLatencyMs(entry.getLastLatencyMs());
+            copy.setLastError(entry.getLastError());
+            return copy;
+        }
+
+        private EmailOutboxEntry byId(int outboxId, EmailOutboxEntry.Status status) {
+            return entries.values().stream()
+                    .filter(entry -> entry.getOutboxId() == outboxId && entry.getStatus() == status)
+                    .findFirst().orElse(null);
+        }
+    }
+
+    /**
+     * Just enough of an SMTP server for JavaMail: accepts every command, keeps each message
+     * body, and can answer the end of DATA with a temporary failure instead.
+     */
+    private static class SmtpStandIn implements AutoCloseable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final AtomicInteger rejectsRemaining = new AtomicInteger();
+
+        SmtpStandIn() throws IOException {
+            Thread acceptor = new Thread(this::acceptLoop, "smtp-stand-in");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        List<String> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+
+        void rejectNext(int count) {
+            rejectsRemaining.set(count);
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    converse(socket);
+                } catch (IOException e) {
+                    // Closed by the test or the client hung up
+                }
+            }
+        }
+
+        private void converse(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+            reply(out, "220 localhost SMTP stand-in");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder message = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            message.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                        }
+                        if (rejectsRemaining.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                            reply(out, "451 Try again later");
+                        } else {
+                            messages.add(message.toString());
+                            reply(out, "250 Queued");
+                        }
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "250 OK");
+                }
+            }
+        }
+
+        private static void reply(Writer out, String response) throws IOException {
+            out.write(response + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
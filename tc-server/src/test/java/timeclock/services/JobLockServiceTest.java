@@ -0,0 +1,293 @@
+package timeclock.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import timeclock.config.CronConfig;
+import timeclock.daos.JobLockDao;
+import timeclock.models.JobLock;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two application contexts stand in for two replicas. They share one JobLocks table, an
+ * in-memory copy of it that applies each statement's conditions atomically the way a single
+ * row UPDATE does in MySQL, with a clock the test can move forward.
+ */
+class JobLockServiceTest {
+
+    private final SharedJobLocks jobLocks = new SharedJobLocks();
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+
+    @AfterEach
+    void closeContexts() {
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    void nightlyReportIsSentByOneReplica() throws Exception {
+        AnnotationConfigApplicationContext first = replica("replica-a", 60_000);
+        AnnotationConfigApplicationContext second = replica("replica-b", 60_000);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> runs = new ArrayList<>();
+        for (AnnotationConfigApplicationContext context : List.of(first, second)) {
+            runs.add(executor.submit(() -> {
+                start.await();
+                context.getBean(CronConfig.class).sendReport();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> run : runs) {
+            run.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // The replica whose clock is a little behind fires after the first has finished
+        second.getBean(CronConfig.class).sendReport();
+        first.getBean(CronConfig.class).sendReport();
+
+        int sends = 0;
+        for (AnnotationConfigApplicationContext context : List.of(first, second)) {
+            sends += Mockito.mockingDetails(context.getBean(TimeclockService.class)).getInvocations().size();
+        }
+        Assertions.assertEquals(1, sends);
+
+        JobLock sendReport = first.getBean(JobLockService.class).getJobLocks().get(0);
+        Assertions.assertEquals("send-report", sendReport.getJobName());
+        Assertions.assertNull(sendReport.getOwner());
+        Assertions.assertEquals(JobLock.Outcome.SUCCEEDED, sendReport.getLastOutcome());
+        Assertions.assertNotNull(sendReport.getLastDurationMs());
+        Assertions.assertTrue(sendReport.getLastOwner().startsWith("replica-"));
+    }
+
+    @Test
+    void nextDaysRunCanGoToEitherReplica() {
+        JobLockService first = replica("replica-a", 60_000).getBean(JobLockService.class);
+        JobLockService second = replica("replica-b", 60_000).getBean(JobLockService.class);
+
+        Assertions.assertTrue(first.runExclusively("send-report", 3_600_000, () -> { }));
+        jobLocks.advance(24 * 3_600_000L);
+        Assertions.assertTrue(second.runExclusively("send-report", 3_600_000, () -> { }));
+        Assertions.assertEquals(second.getOwner(), second.getJobLocks().get(0).getLastOwner());
+    }
+
+    @Test
+    void runningJobKeepsItsLeaseByRenewing() throws Exception {
+        JobLockService first = replica("replica-a", 150).getBean(JobLockService.class);
+        JobLockService second = replica("replica-b", 150).getBean(JobLockService.class);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Thread job = new Thread(() -> first.runExclusively("purge", 0, () -> {
+            running.countDown();
+            await(finish);
+        }));
+        job.start();
+        running.await();
+
+        // Several leases' worth of time passes while the job works
+        Thread.sleep(500);
+        Assertions.assertFalse(second.runExclusively("purge", 0, () -> Assertions.fail("ran twice")));
+        finish.countDown();
+        job.join();
+        Assertions.assertTrue(second.runExclusively("purge", 0, () -> { }));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheOldHolderIsFencedOut() throws Exception {
+        JobLockService first = replica("replica-a", 60_000).getBean(JobLockService.class);
+        JobLockService second = replica("replica-b", 60_000).getBean(JobLockService.class);
+        AtomicInteger secondRuns = new AtomicInteger();
+
+        first.runExclusively("reconcile", 0, lease -> {
+            long token = lease.getFencingToken();
+            // This replica stalls past its lease and the other one takes the job
+            jobLocks.advance(61_000);
+            Assertions.assertTrue(second.runExclusively("reconcile", 0, takeover -> {
+                Assertions.assertEquals(token + 1, takeover.getFencingToken());
+                secondRuns.incrementAndGet();
+            }));
+            Assertions.assertFalse(lease.isHeld());
+        });
+
+        Assertions.assertEquals(1, secondRuns.get());
+        JobLock reconcile = second.getJobLocks().get(0);
+        Assertions.assertEquals(second.getOwner(), reconcile.getLastOwner(), "the stale holder's release must not overwrite the run");
+    }
+
+    @Test
+    void failedRunIsRecordedAndRethrown() {
+        JobLockService service = replica("replica-a", 60_000).getBean(JobLockService.class);
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> service.runExclusively("send-report", 0, () -> { throw new IllegalStateException("smtp down"); }));
+        JobLock sendReport = service.getJobLocks().get(0);
+        Assertions.assertEquals(JobLock.Outcome.FAILED, sendReport.getLastOutcome());
+        Assertions.assertTrue(sendReport.getLastError().contains("smtp down"));
+        Assertions.assertNull(sendReport.getOwner());
+    }
+
+    @Test
+    void failedReleaseDoesNotHideTheJobsFailure() {
+        JobLockService service = replica("replica-a", 60_000).getBean(JobLockService.class);
+        jobLocks.failReleases(new IllegalStateException("database gone"));
+
+        IllegalStateException thrown = Assertions.assertThrows(IllegalStateException.class,
+                () -> service.runExclusively("send-report", 0, () -> { throw new IllegalStateException("smtp down"); }));
+        Assertions.assertEquals("smtp down", thrown.getMessage());
+        Assertions.assertEquals(1, thrown.getSuppressed().length);
+        Assertions.assertEquals("database gone", thrown.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void failedReleaseAfterASuccessfulRunStillReportsTheRun() {
+        JobLockService service = replica("replica-a", 60_000).getBean(JobLockService.class);
+        jobLocks.failReleases(new IllegalStateException("database gone"));
+        AtomicInteger runs = new AtomicInteger();
+
+        Assertions.assertTrue(service.runExclusively("send-report", 0, runs::incrementAndGet));
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    private AnnotationConfigApplicationContext replica(String owner, long leaseMillis) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(JobLockDao.class, () -> jobLocks);
+        context.registerBean(TimeclockService.class, () -> Mockito.mock(TimeclockService.class));
+        context.registerBean(JobLockService.class, () -> new JobLockService(jobLocks, leaseMillis, owner));
+        context.registerBean(ChangeLogPoller.class, () -> Mockito.mock(ChangeLogPoller.class));
+        context.register(CronConfig.class);
+        context.refresh();
+        contexts.add(context);
+        return context;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The JobLocks table, one lock for the whole table standing in for MySQL's row locks.
+     */
+    private static class SharedJobLocks extends JobLockDao {
+
+        private final Map<String, JobLock> rows = new HashMap<>();
+        private long clockOffsetMillis;
+        private RuntimeException releaseFailure;
+
+        SharedJobLocks() {
+            super(null);
+        }
+
+        synchronized void advance(long millis) {
+            clockOffsetMillis += millis;
+        }
+
+        synchronized void failReleases(RuntimeException failure) {
+            releaseFailure = failure;
+        }
+
+        private Instant now() {
+            return Instant.now().plusMillis(clockOffsetMillis);
+        }
+
+        @Override
+        public synchronized Long acquire(String jobName, String owner, long leaseMillis, long minIntervalMillis) {
+            JobLock row = rows.computeIfAbsent(jobName, name -> {
+                JobLock created = new JobLock();
+                created.setJobName(name);
+                return created;
+            });
+            Instant now = now();
+            boolean free = row.getOwner() == null || row.getLeaseUntil().isBefore(now);
+            boolean due = row.getLastStartedAt() == null || !row.getLastStartedAt().isAfter(now.minusMillis(minIntervalMillis));
+            if (!free || !due) {
+                return null;
+            }
+            row.setOwner(owner);
+            row.setLeaseUntil(now.plusMillis(leaseMillis));
+            row.setFencingToken(row.getFencingToken() + 1);
+            row.setLastStartedAt(now);
+            return row.getFencingToken();
+        }
+
+        @Override
+        public synchronized boolean renew(String jobName, String owner, long fencingToken, long leaseMillis) {
+            JobLock row = held(jobName, owner, fencingToken);
+            if (row == null) {
+                return false;
+            }
+            row.setLeaseUntil(now().plusMillis(leaseMillis));
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isHeld(String jobName, String owner, long fencingToken) {
+            JobLock row = held(jobName, owner, fencingToken);
+            return row != null && row.getLeaseUntil().isAfter(now());
+        }
+
+        @Override
+        public synchronized boolean release(String jobName, String owner, long fencingToken, long durationMs,
+                                            JobLock.Outcome outcome, String error) {
+            if (releaseFailure != null) {
+                throw releaseFailure;
+            }
+            JobLock row = held(jobName, owner, fencingToken);
+            if (row == null) {
+                return false;
+            }
+            row.setOwner(null);
+            row.setLeaseUntil(null);
+            row.setLastFinishedAt(now());
+            row.setLastDurationMs(durationMs);
+            row.setLastOwner(owner);
+            row.setLastOutcome(outcome);
+            row.setLastError(error);
+            return true;
+        }
+
+        @Override
+        public synchronized List<JobLock> selectAll() {
+            return rows.values().stream().map(SharedJobLocks::copy).toList();
+        }
+
+        private JobLock held(String jobName, String owner, long fencingToken) {
+            JobLock row = rows.get(jobName);
+            return row != null && owner.equals(row.getOwner()) && row.getFencingToken() == fencingToken ? row : null;
+        }
+
+        private static JobLock copy(JobLock row) {
+            JobLock copy = new JobLock();
+            copy.setJobName(row.getJobName());
+            copy.setOwner(row.getOwner());
+            copy.setLeaseUntil(row.getLeaseUntil());
+            copy.setFencingToken(row.getFencingToken());
+            copy.setLastStartedAt(row.getLastStartedAt());
+            copy.setLastFinishedAt(row.getLastFinishedAt());
+            copy.setLastDurationMs(row.getLastDurationMs());
+            copy.setLastOwner(row.getLastOwner());
+            copy.setLastOutcome(row.getLastOutcome());
+            copy.setLastError(row.getLastError());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package timeclock.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import timeclock.models.ShiftEvent;
+import timeclock.utilities.DateUtility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+class ReportCacheTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 2, 3);
+    private static final long ROSTER = 1;
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void storedReportIsServedUntilItsDateChanges() throws IOException {
+        ReportCache cache = new ReportCache(1 << 20, 1 << 20, 1 << 20, null);
+        build(cache, DAY, report(100, 'a'));
+
+        Assertions.assertArrayEquals(report(100, 'a'), read(cache, DAY, ROSTER));
+        Assertions.assertNull(read(cache, DAY, ROSTER + 1), "a roster change makes the report stale");
+
+        cache.onShiftEvent(new ShiftEvent(ShiftEvent.Type.EDIT, 1, "u1", "Avery Braune", DAY));
+        Assertions.assertNull(read(cache, DAY, ROSTER));
+        Assertions.assertEquals(0, cache.getMemoryBytes());
+    }
+
+    @Test
+    void reportBuiltAcrossAChangeIsNotStored() throws IOException {
+        ReportCache cache = new ReportCache(1 << 20, 1 << 20, 1 << 20, null);
+        ReportCache.Recording recording = cache.record(DAY, ROSTER, new ByteArrayOutputStream());
+        recording.write(report(100, 'a'));
+        cache.onShiftEvent(new ShiftEvent(ShiftEvent.Type.DELETE, 1, "u1", "Avery Braune", DAY));
+        recording.store();
+
+        Assertions.assertNull(read(cache, DAY, ROSTER));
+    }
+
+    @Test
+    void purgeDropsEveryEarlierDay() throws IOException {
+        ReportCache cache = new ReportCache(1 << 20, 1 << 20, 1 << 20, null);
+        build(cache, DAY, report(10, 'a'));
+        build(cache, DAY.plusDays(1), report(10, 'b'));
+        build(cache, DAY.plusDays(2), report(10, 'c'));
+
+        cache.onShiftEvent(new ShiftEvent(ShiftEvent.Type.PURGE, 0, null, null, DAY.plusDays(2)));
+        Assertions.assertNull(read(cache, DAY, ROSTER));
+        Assertions.assertNull(read(cache, DAY.plusDays(1), ROSTER));
+        Assertions.assertArrayEquals(report(10, 'c'), read(cache, DAY.plusDays(2), ROSTER));
+    }
+
+    @Test
+    void oversizedReportPassesThroughWithoutBeingKept() throws IOException {
+        ReportCache cache = new ReportCache(1 << 20, 50, 1 << 20, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportCache.Recording recording = cache.record(DAY, ROSTER, out);
+        recording.write(report(100, 'a'));
+        recording.store();
+
+        Assertions.assertEquals(100, out.size());
+        Assertions.assertNull(read(cache, DAY, ROSTER));
+    }
+
+    @Test
+    void leastRecentlyUsedReportIsDroppedWithoutASpillDirectory() throws IOException {
+        ReportCache cache = new ReportCache(250, 1 << 20, 1 << 20, null);
+        build(cache, DAY, report(100, 'a'));
+        build(cache, DAY.plusDays(1), report(100, 'b'));
+        read(cache, DAY, ROSTER);
+        build(cache, DAY.plusDays(2), report(100, 'c'));
+
+        Assertions.assertNotNull(read(cache, DAY, ROSTER));
+        Assertions.assertNull(read(cache, DAY.plusDays(1), ROSTER));
+        Assertions.assertEquals(200, cache.getMemoryBytes());
+    }
+
+    @Test
+    void reportsPushedOutOfMemorySpillToDisk() throws IOException {
+        ReportCache cache = new ReportCache(150, 1 << 20, 150, spillDirectory.toString());
+        build(cache, DAY, report(100, 'a'));
+        build(cache, DAY.plusDays(1), report(100, 'b'));
+
+        Assertions.assertEquals(100, cache.getMemoryBytes());
+        Assertions.assertEquals(100, cache.getDiskBytes());
+        Assertions.assertArrayEquals(report(100, 'a'), read(cache, DAY, ROSTER));
+
+        // b spills to make room for c, which puts disk over budget; the read above left b
+        // as the least recently used file, so it is the one deleted
+        build(cache, DAY.plusDays(2), report(100, 'c'));
+        Assertions.assertNull(read(cache, DAY.plusDays(1), ROSTER));
+        Assertions.assertArrayEquals(report(100, 'a'), read(cache, DAY, ROSTER));
+        Assertions.assertArrayEquals(report(100, 'c'), read(cache, DAY.plusDays(2), ROSTER));
+
+        cache.invalidate(DAY);
+        Assertions.assertEquals(0, cache.getDiskBytes());
+        try (var files = Files.list(spillDirectory)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void onlyFinishedDaysAreCacheable() {
+        ReportCache cache = new ReportCache(1 << 20, 1 << 20, 1 << 20, null);
+        Assertions.assertTrue(cache.isCacheable(DAY));
+        Assertions.assertFalse(cache.isCacheable(DateUtility.todayCentralTime()));
+    }
+
+    private static void build(ReportCache cache, LocalDate date, byte[] report) throws IOException {
+        ReportCache.Recording recording = cache.record(date, ROSTER, new ByteArrayOutputStream());
+        recording.write(report);
+        recording.store();
+    }
+
+    private static byte[] read(ReportCache cache, LocalDate date, long rosterVersion) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return cache.writeTo(date, rosterVersion, out) ? out.toByteArray() : null;
+    }
+
+    private static byte[] report(int size, char fill) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) fill);
+        return bytes;
+    }
+}
@@ -0,0 +1,152 @@
+package timeclock.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import timeclock.models.ShiftEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+class ShiftEventBroadcasterTest {
+
+    private static final Pattern EVENT_LINE = Pattern.compile("event:([a-z-]+)");
+    private static final Pattern ID_LINE = Pattern.compile("id:(\\d+)");
+
+    private ShiftEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new ShiftEventBroadcaster(new ObjectMapper(), 4, 64, 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void hundredsOfIdleSubscribersReceiveEventsInOrder() throws Exception {
+        int platformThreadsBefore = Thread.getAllStackTraces().size();
+        List<RecordingEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            RecordingEmitter emitter = new RecordingEmitter();
+            broadcaster.subscribe(emitter, null);
+            emitters.add(emitter);
+        }
+
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.CLOCK_IN, 1, "u1", "Avery Braune"));
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.EDIT, 1, "u1", "Avery Braune"));
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.CLOCK_OUT, 1, "u1", "Avery Braune"));
+
+        awaitUntil(() -> emitters.stream().allMatch(emitter -> emitter.eventNames().size() == 3));
+        for (RecordingEmitter emitter : emitters) {
+            Assertions.assertEquals(List.of("clock-in", "edit", "clock-out"), emitter.eventNames());
+        }
+
+        // Idle subscribers hold no threads; sends ran on short-lived virtual threads
+        Assertions.assertEquals(500, broadcaster.getSubscriberCount());
+        Assertions.assertTrue(Thread.getAllStackTraces().size() - platformThreadsBefore < 50);
+    }
+
+    @Test
+    void resumeReplaysOnlyMissedEvents() throws Exception {
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(first, null);
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.CLOCK_IN, 1, "u1", "Avery Braune"));
+        awaitUntil(() -> first.ids().size() == 1);
+        String seen = first.ids().get(0);
+
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.CLOCK_IN, 2, "u2", "Molly Pieper"));
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.DELETE, 2, "u2", "Molly Pieper"));
+
+        RecordingEmitter resumed = new RecordingEmitter();
+        broadcaster.subscribe(resumed, seen);
+        awaitUntil(() -> resumed.eventNames().size() == 2);
+        Assertions.assertEquals(List.of("clock-in", "delete"), resumed.eventNames());
+    }
+
+    @Test
+    void resumeFromBeyondTheBufferGetsReset() throws Exception {
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(first, null);
+        broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.CLOCK_IN, 1, "u1", "Avery Braune"));
+        awaitUntil(() -> first.ids().size() == 1);
+        String seen = first.ids().get(0);
+
+        for (int i = 0; i < 5; i++) {
+            broadcaster.onShiftEvent(new ShiftEvent(ShiftEvent.Type.EDIT, 1, "u1", "Avery Braune"));
+        }
+
+        RecordingEmitter stale = new RecordingEmitter();
+        broadcaster.subscribe(stale, seen);
+        RecordingEmitter restarted = new RecordingEmitter();
+        broadcaster.subscribe(restarted, "12");
+        awaitUntil(() -> stale.eventNames().size() == 1 && restarted.eventNames().size() == 1);
+        Assertions.assertEquals(List.of("reset"), stale.eventNames());
+        Assertions.assertEquals(List.of("reset"), restarted.eventNames());
+    }
+
+    @Test
+    void failedSendDropsSubscriber() throws Exception {
+        RecordingEmitter gone = new RecordingEmitter();
+        gone.failing = true;
+        broadcaster.subscribe(gone, null);
+        broadcaster.sendHeartbeat();
+
+        awaitUntil(() -> broadcaster.getSubscriberCount() == 0);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for delivery");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Captures the serialized SSE frames instead of writing to a response.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> frames = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            frames.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        List<String> eventNames() {
+            return matches(EVENT_LINE);
+        }
+
+        List<String> ids() {
+            return matches(ID_LINE);
+        }
+
+        private List<String> matches(Pattern pattern) {
+            List<String> values = new ArrayList<>();
+            for (String frame : frames) {
+                Matcher matcher = pattern.matcher(frame);
+                if (matcher.find()) {
+                    values.add(matcher.group(1));
+                }
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package timeclock.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import timeclock.models.ShiftPurgeJob;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class ShiftPurgeServiceTest {
+
+    private static final LocalDate CUTOFF = LocalDate.of(2025, 1, 1);
+    private static final int BATCH_SIZE = 500;
+    private static final long PAUSE_MS = 100;
+
+    private ShiftService shiftService;
+    private ShiftPurgeService purgeService;
+
+    @BeforeEach
+    void setUp() {
+        shiftService = Mockito.mock(ShiftService.class);
+        Mockito.when(shiftService.countShiftsPriorToDate(CUTOFF)).thenReturn(1120);
+        purgeService = new ShiftPurgeService(shiftService, BATCH_SIZE, PAUSE_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        purgeService.shutdown();
+    }
+
+    @Test
+    void deletesInBatchesWithAPauseBetweenThem() throws Exception {
+        Mockito.when(shiftService.deleteShiftBatchPriorToDate(CUTOFF, BATCH_SIZE)).thenReturn(500, 500, 120);
+
+        ShiftPurgeJob job = awaitFinished(purgeService.startPurge(CUTOFF));
+
+        Assertions.assertEquals(ShiftPurgeJob.Status.COMPLETED, job.getStatus());
+        Assertions.assertEquals(1120, job.getTotalShifts());
+        Assertions.assertEquals(1120, job.getDeletedShifts());
+        Mockito.verify(shiftService, Mockito.times(3)).deleteShiftBatchPriorToDate(CUTOFF, BATCH_SIZE);
+        Mockito.verify(shiftService).deleteDailyTotalsPriorToDate(CUTOFF);
+        Mockito.verify(shiftService, Mockito.timeout(1000)).loadOpenShifts();
+        Assertions.assertTrue(Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis() >= 2 * PAUSE_MS,
+                "two pauses between three batches");
+    }
+
+    @Test
+    void cancelStopsBeforeTheNextBatch() throws Exception {
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        Mockito.when(shiftService.deleteShiftBatchPriorToDate(CUTOFF, BATCH_SIZE)).thenAnswer(invocation -> {
+            firstBatch.countDown();
+            return BATCH_SIZE;
+        });
+
+        ShiftPurgeJob job = purgeService.startPurge(CUTOFF);
+        Assertions.assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+        Assertions.assertSame(job, purgeService.cancel(job.getJobId()));
+        awaitFinished(job);
+
+        Assertions.assertEquals(ShiftPurgeJob.Status.CANCELLED, job.getStatus());
+        Mockito.verify(shiftService, Mockito.never()).deleteDailyTotalsPriorToDate(Mockito.any());
+        Mockito.verify(shiftService, Mockito.timeout(1000)).loadOpenShifts();
+    }
+
+    @Test
+    void failureIsReportedWithWhatWasDeleted() throws Exception {
+        Mockito.when(shiftService.deleteShiftBatchPriorToDate(CUTOFF, BATCH_SIZE))
+                .thenReturn(BATCH_SIZE)
+                .thenThrow(new IllegalStateException("lock wait timeout"));
+
+        ShiftPurgeJob job = awaitFinished(purgeService.startPurge(CUTOFF));
+
+        Assertions.assertEquals(ShiftPurgeJob.Status.FAILED, job.getStatus());
+        Assertions.assertEquals(BATCH_SIZE, job.getDeletedShifts());
+        Assertions.assertEquals("lock wait timeout", job.getError());
+        Mockito.verify(shiftService, Mockito.never()).deleteDailyTotalsPriorToDate(Mockito.any());
+        Mockito.verify(shiftService, Mockito.timeout(1000)).loadOpenShifts();
+    }
+
+    @Test
+    void onlyOnePurgeRunsAtATime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(shiftService.deleteShiftBatchPriorToDate(CUTOFF, BATCH_SIZE)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 0;
+        });
+
+        ShiftPurgeJob job = purgeService.startPurge(CUTOFF);
+        Assertions.assertThrows(IllegalStateException.class, () -> purgeService.startPurge(CUTOFF));
+        release.countDown();
+        awaitFinished(job);
+    }
+
+    @Test
+    void onlyTheMostRecentFinishedJobsAreKept() throws Exception {
+        Mockito.when(shiftService.deleteShiftBatchPriorToDate(CUTOFF, BATCH_SIZE)).thenReturn(0);
+
+        List<ShiftPurgeJob> started = new ArrayList<>();
+        for (int i = 0; i < ShiftPurgeService.MAX_FINISHED_JOBS + 5; i++) {
+            ShiftPurgeJob job = awaitFinished(purgeService.startPurge(CUTOFF));
+            started.add(job);
+            // Distinct start times, so "most recent" is well defined
+            Thread.sleep(2);
+        }
+
+        long kept = started.stream().filter(job -> purgeService.getJob(job.getJobId()) != null).count();
+        Assertions.assertEquals(ShiftPurgeService.MAX_FINISHED_JOBS + 1, kept);
+        Assertions.assertNull(purgeService.getJob(started.get(0).getJobId()));
+        Assertions.assertNotNull(purgeService.getJob(started.get(started.size() - 1).getJobId()));
+    }
+
+    private static ShiftPurgeJob awaitFinished(ShiftPurgeJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.getFinishedAt() == null) {
+            if (System.nanoTime() > deadline) {
+                Assertions.fail("Purge " + job.getJobId() + " did not finish");
+            }
+            Thread.sleep(5);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,302 @@
+package timeclock.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import timeclock.daos.DailyUserTotalsDao;
+import timeclock.daos.ShiftDao;
+import timeclock.models.Shift;
+import timeclock.models.ShiftHistoryPage;
+import timeclock.models.User;
+import timeclock.utilities.DateUtility;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+
+class ShiftServiceTest {
+
+    private ShiftDao shiftDao;
+    private DailyUserTotalsDao dailyUserTotalsDao;
+    private ShiftService shiftService;
+
+    @BeforeEach
+    void setUp() {
+        shiftDao = Mockito.mock(ShiftDao.class);
+        Mockito.when(shiftDao.selectOpenShifts()).thenReturn(List.of());
+        dailyUserTotalsDao = Mockito.mock(DailyUserTotalsDao.class);
+        shiftService = new ShiftService(shiftDao, dailyUserTotalsDao, Mockito.mock(ApplicationEventPublisher.class));
+        shiftService.loadOpenShifts();
+    }
+
+    @Test
+    void duplicateClockInIsRejectedWithoutInsert() {
+        User user = user("u1", "Grace Lightfoot");
+        Mockito.when(shiftDao.insertNewShift(eq(user), any(Instant.class))).thenReturn(42);
+
+        shiftService.startNewShift(user);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> shiftService.startNewShift(user));
+        Mockito.verify(shiftDao, Mockito.times(1)).insertNewShift(eq(user), any(Instant.class));
+        Assertions.assertEquals(42, shiftService.getOpenShifts().get(0).getShiftId());
+    }
+
+    @Test
+    void removeShiftFreesUserToClockInAgain() {
+        User user = user("u1", "Grace Lightfoot");
+        Mockito.when(shiftDao.insertNewShift(eq(user), any(Instant.class))).thenReturn(42, 43);
+
+        shiftService.startNewShift(user);
+        shiftService.removeShift(42);
+
+        Assertions.assertFalse(shiftService.hasOpenShift("u1"));
+        shiftService.startNewShift(user);
+        Assertions.assertEquals(43, shiftService.getOpenShifts().get(0).getShiftId());
+    }
+
+    @Test
+    void failedInsertReleasesReservation() {
+        User user = user("u1", "Grace Lightfoot");
+        Mockito.when(shiftDao.insertNewShift(eq(user), any(Instant.class))).thenThrow(new RuntimeException("db down"));
+
+        Assertions.assertThrows(RuntimeException.class, () -> shiftService.startNewShift(user));
+        Assertions.assertFalse(shiftService.hasOpenShift("u1"));
+    }
+
+    @Test
+    void batchClockInMapsEachShiftIdBackToItsUser() {
+        User grace = user("u1", "Grace Lightfoot");
+        User molly = user("u2", "Molly Pieper");
+        User avery = user("u3", "Avery Braune");
+        Mockito.when(shiftDao.insertNewShift(eq(molly), any(Instant.class))).thenReturn(40);
+        shiftService.startNewShift(molly);
+        Mockito.when(shiftDao.insertNewShifts(eq(List.of(grace, avery)), any(Instant.class))).thenReturn(List.of(41, 42));
+
+        Map<String, String> rejected = new LinkedHashMap<>();
+        Map<String, Integer> shiftIds = shiftService.startNewShifts(List.of(grace, molly, avery), rejected);
+
+        Assertions.assertEquals(Map.of("u1", 41, "u3", 42), shiftIds);
+        Assertions.assertEquals(Map.of("u2", "Already clocked in"), rejected);
+        Assertions.assertEquals(List.of(40, 41, 42), shiftService.getOpenShifts().stream().map(Shift::getShiftId).toList());
+        Assertions.assertEquals("u3", shiftService.getOpenShifts().get(2).getUserId());
+    }
+
+    @Test
+    void batchClockInWithEveryoneClockedInSkipsTheInsert() {
+        User grace = user("u1", "Grace Lightfoot");
+        Mockito.when(shiftDao.insertNewShift(eq(grace), any(Instant.class))).thenReturn(40);
+        shiftService.startNewShift(grace);
+
+        Map<String, String> rejected = new LinkedHashMap<>();
+        Assertions.assertTrue(shiftService.startNewShifts(List.of(grace), rejected).isEmpty());
+
+        Assertions.assertEquals(Map.of("u1", "Already clocked in"), rejected);
+        Mockito.verify(shiftDao, Mockito.never()).insertNewShifts(any(), any());
+    }
+
+    @Test
+    void failedBatchInsertReleasesEveryReservation() {
+        User grace = user("u1", "Grace Lightfoot");
+        User molly = user("u2", "Molly Pieper");
+        Mockito.when(shiftDao.insertNewShifts(any(), any(Instant.class))).thenThrow(new RuntimeException("db down"));
+
+        Assertions.assertThrows(RuntimeException.class, () -> shiftService.startNewShifts(List.of(grace, molly), new LinkedHashMap<>()));
+
+        Assertions.assertFalse(shiftService.hasOpenShift("u1"));
+        Assertions.assertFalse(shiftService.hasOpenShift("u2"));
+    }
+
+    @Test
+    void openShiftsAreLoadedAtStartup() {
+        Shift open = new Shift();
+        open.setShiftId(7);
+        open.setUserId("u2");
+        open.setName("Molly Pieper");
+        Mockito.when(shiftDao.selectOpenShifts()).thenReturn(List.of(open));
+
+        shiftService.loadOpenShifts();
+
+        Assertions.assertTrue(shiftService.hasOpenShift("u2"));
+        Assertions.assertThrows(IllegalStateException.class, () -> shiftService.startNewShift(user("u2", "Molly Pieper")));
+    }
+
+    @Test
+    void clockOutMeasuresFromStoredClockIn() {
+        Shift open = historyShift(7, "2025-02-05 22:00:00");
+        open.setClockInAt(Instant.now().minusSeconds(90 * 60 + 20));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(open);
+
+        Assertions.assertEquals("1h 30m", shiftService.clockOutShift(7));
+        Mockito.verify(shiftDao).clockOutShift(eq(7), any(Instant.class), eq("1h 30m"), eq(90));
+    }
+
+    @Test
+    void clockOutOfAShiftThatStartsLaterCountsNoTime() {
+        Shift open = historyShift(7, "2025-02-05 22:00:00");
+        Instant clockIn = Instant.now().plusSeconds(3600);
+        open.setClockInAt(clockIn);
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(open);
+
+        Assertions.assertEquals("0h 00m", shiftService.clockOutShift(7));
+        Mockito.verify(shiftDao).clockOutShift(7, clockIn, "0h 00m", 0);
+    }
+
+    @Test
+    void reopeningAShiftWithAClockInStillAheadIsRefused() {
+        Shift before = historyShift(7, "2025-02-05 20:00:00");
+        // A shift on tomorrow's date, so any clock in on it is still ahead
+        before.setClockInAt(DateUtility.atCentralTime(DateUtility.todayCentralTime().plusDays(1), LocalTime.of(8, 0)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(before);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> shiftService.updateShift(7, LocalTime.of(9, 0), null));
+        Mockito.verify(shiftDao, Mockito.never()).updateShift(anyInt(), any(), any(), any(), any());
+    }
+
+    @Test
+    void editKeepsShiftOnItsOwnDay() {
+        Shift before = historyShift(7, "2025-02-05 20:00:00");
+        before.setClockInAt(DateUtility.atCentralTime(LocalDate.of(2025, 2, 5), LocalTime.of(20, 0)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(before);
+
+        Assertions.assertEquals("2h 30m", shiftService.updateShift(7, LocalTime.of(21, 0), LocalTime.of(23, 30)));
+        Mockito.verify(shiftDao).updateShift(7,
+                Instant.parse("2025-02-06T03:00:00Z"), Instant.parse("2025-02-06T05:30:00Z"), "2h 30m", 150);
+    }
+
+    @Test
+    void editWithClockOutBeforeClockInEndsNextMorning() {
+        Shift before = historyShift(7, "2025-03-08 22:00:00");
+        before.setClockInAt(DateUtility.atCentralTime(LocalDate.of(2025, 3, 8), LocalTime.of(22, 0)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(before);
+
+        // Daylight saving starts overnight, so 10 PM to 6 AM is seven hours
+        Assertions.assertEquals("7h 00m", shiftService.updateShift(7, LocalTime.of(22, 0), LocalTime.of(6, 0)));
+        Mockito.verify(shiftDao).updateShift(7,
+                Instant.parse("2025-03-09T04:00:00Z"), Instant.parse("2025-03-09T11:00:00Z"), "7h 00m", 420);
+    }
+
+    @Test
+    void clockOutRefreshesTheDayTheShiftStarted() {
+        Shift open = historyShift(7, "2025-02-05 22:00:00");
+        open.setUserId("u1");
+        // 11:30 PM Central, so clocking out now is on a later day
+        open.setClockInAt(DateUtility.atCentralTime(LocalDate.of(2025, 2, 5), LocalTime.of(23, 30)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(open);
+
+        shiftService.clockOutShift(7);
+
+        Mockito.verify(dailyUserTotalsDao).refreshUserDay("u1", LocalDate.of(2025, 2, 5));
+        Mockito.verifyNoMoreInteractions(dailyUserTotalsDao);
+    }
+
+    @Test
+    void editRefreshesTheShiftsOwnDay() {
+        Shift before = historyShift(7, "2025-02-05 20:00:00");
+        before.setUserId("u1");
+        before.setClockInAt(DateUtility.atCentralTime(LocalDate.of(2025, 2, 5), LocalTime.of(20, 0)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(before);
+
+        shiftService.updateShift(7, LocalTime.of(9, 0), LocalTime.of(17, 0));
+
+        Mockito.verify(dailyUserTotalsDao).refreshUserDay("u1", LocalDate.of(2025, 2, 5));
+        Mockito.verifyNoMoreInteractions(dailyUserTotalsDao);
+    }
+
+    @Test
+    void editRunningPastMidnightStillCountsOnTheClockInDay() {
+        Shift before = historyShift(7, "2025-02-05 20:00:00");
+        before.setUserId("u1");
+        before.setClockInAt(DateUtility.atCentralTime(LocalDate.of(2025, 2, 5), LocalTime.of(20, 0)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(before);
+
+        // Clock out moves to 2 AM on the 6th; the minutes still belong to the 5th
+        shiftService.updateShift(7, LocalTime.of(22, 0), LocalTime.of(2, 0));
+
+        Mockito.verify(dailyUserTotalsDao).refreshUserDay("u1", LocalDate.of(2025, 2, 5));
+        Mockito.verify(dailyUserTotalsDao, Mockito.never()).refreshUserDay("u1", LocalDate.of(2025, 2, 6));
+    }
+
+    @Test
+    void deleteRefreshesTheRemovedShiftsDay() {
+        Shift removed = historyShift(7, "2025-02-05 09:00:00");
+        removed.setUserId("u1");
+        removed.setClockInAt(DateUtility.atCentralTime(LocalDate.of(2025, 2, 5), LocalTime.of(9, 0)));
+        Mockito.when(shiftDao.selectShiftById(7)).thenReturn(removed);
+
+        shiftService.removeShift(7);
+
+        Mockito.verify(dailyUserTotalsDao).refreshUserDay("u1", LocalDate.of(2025, 2, 5));
+    }
+
+    @Test
+    void purgeDropsTotalsBeforeTheCutoff() {
+        Mockito.when(dailyUserTotalsDao.deletePriorToDate(LocalDate.of(2025, 1, 1))).thenReturn(12);
+
+        Assertions.assertEquals(12, shiftService.deleteDailyTotalsPriorToDate(LocalDate.of(2025, 1, 1)));
+    }
+
+    @Test
+    void reconcileRebuildsEveryDayInTheRange() {
+        Mockito.when(dailyUserTotalsDao.rebuildDay(any())).thenReturn(3);
+
+        Assertions.assertEquals(9, shiftService.reconcileDailyTotals(LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 2)));
+
+        Mockito.verify(dailyUserTotalsDao).rebuildDay(LocalDate.of(2025, 2, 28));
+        Mockito.verify(dailyUserTotalsDao).rebuildDay(LocalDate.of(2025, 3, 1));
+        Mockito.verify(dailyUserTotalsDao).rebuildDay(LocalDate.of(2025, 3, 2));
+        Mockito.verifyNoMoreInteractions(dailyUserTotalsDao);
+    }
+
+    @Test
+    void historyCursorSeeksPastLastRow() {
+        Shift newest = historyShift(9, "2025-02-06 15:00:00");
+        Shift older = historyShift(8, "2025-02-06 09:00:00");
+        Shift oldest = historyShift(5, "2025-02-05 09:00:00");
+        Mockito.when(shiftDao.selectShiftHistoryPage(any(), any(), any(), any(), any(), any(), anyInt()))
+                .thenReturn(new ArrayList<>(List.of(newest, older, oldest)));
+
+        ShiftHistoryPage page = shiftService.findShiftHistory(null, null, null, null, null, 2);
+
+        Assertions.assertEquals(2, page.getShifts().size());
+        Assertions.assertNotNull(page.getNextCursor());
+
+        shiftService.findShiftHistory(null, null, null, null, page.getNextCursor(), 2);
+        Mockito.verify(shiftDao).selectShiftHistoryPage(null, null, null, null,
+                older.getClockInAt(), 8, 3);
+    }
+
+    @Test
+    void lastHistoryPageHasNoCursor() {
+        Mockito.when(shiftDao.selectShiftHistoryPage(any(), any(), any(), any(), any(), any(), anyInt()))
+                .thenReturn(new ArrayList<>(List.of(historyShift(1, "2025-02-06 09:00:00"))));
+
+        Assertions.assertNull(shiftService.findShiftHistory(null, null, null, null, null, 2).getNextCursor());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> shiftService.findShiftHistory(null, null, null, null, "not-a-cursor", 2));
+    }
+
+    private Shift historyShift(int shiftId, String clockIn) {
+        Shift shift = new Shift();
+        shift.setShiftId(shiftId);
+        shift.setClockInAt(Timestamp.valueOf(clockIn).toInstant());
+        return shift;
+    }
+
+    private User user(String userId, String name) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setName(name);
+        return user;
+    }
+}
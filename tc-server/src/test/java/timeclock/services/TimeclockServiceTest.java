@@ -1,17 +1,192 @@
 package timeclock.services;
 
-//@SpringBootTest
-//@ActiveProfiles({"local", "secret"})
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import timeclock.daos.DailyUserTotalsDao;
+import timeclock.daos.ShiftDao;
+import timeclock.daos.StreamingResultSetDataSource;
+import timeclock.metrics.MetricsRegistry;
+import timeclock.metrics.WorksheetMetrics;
+import timeclock.models.ShiftEvent;
+import timeclock.models.User;
+import timeclock.models.UserShiftRow;
+import timeclock.utilities.DateUtility;
+import timeclock.utilities.ShiftExportWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
 class TimeclockServiceTest {
 
+    private static final LocalDate FROM = LocalDate.of(2025, 2, 3);
+    private static final LocalDate TO = LocalDate.of(2025, 2, 5);
+
+    private UserService userService;
+    private ShiftService shiftService;
+    private ReportCache reportCache;
+    private TimeclockService timeclockService;
+
+    @BeforeEach
+    void setUp() {
+        userService = Mockito.mock(UserService.class);
+        shiftService = Mockito.mock(ShiftService.class);
+        reportCache = new ReportCache(1 << 20, 1 << 20, 1 << 20, null);
+        timeclockService = new TimeclockService(userService, shiftService,
+                Mockito.mock(EmailOutboxService.class), Mockito.mock(ShiftPurgeService.class), Mockito.mock(ShiftEventBroadcaster.class),
+                reportCache, new WorksheetMetrics(new MetricsRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        timeclockService.shutdown();
+    }
+
+    @Test
+    void periodWorkbookHasSummaryAndOneSheetPerDay() throws Exception {
+        Mockito.when(shiftService.retrieveUserShifts(FROM, TO)).thenReturn(List.of(
+                row("u2", "Molly Pieper", FROM, 9, 480),
+                row("u1", "Avery Braune", FROM, 8, 240),
+                row("u1", "Avery Braune", TO, 8, 300),
+                row("u1", "Avery Braune", TO, 23, null)
+        ));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        timeclockService.writePeriodSpreadsheet(FROM, TO, out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Assertions.assertEquals(4, workbook.getNumberOfSheets());
+            Assertions.assertEquals("Summary", workbook.getSheetName(0));
+            Assertions.assertEquals("2025-02-03", workbook.getSheetName(1));
+            Assertions.assertEquals("2025-02-05", workbook.getSheetName(3));
+
+            Sheet summary = workbook.getSheetAt(0);
+            Assertions.assertEquals("Avery Braune", summary.getRow(1).getCell(0).getStringCellValue());
+            Assertions.assertEquals(2, summary.getRow(1).getCell(1).getNumericCellValue());
+            Assertions.assertEquals(540, summary.getRow(1).getCell(3).getNumericCellValue());
+            Assertions.assertEquals("8h 00m", summary.getRow(2).getCell(2).getStringCellValue());
+
+            Sheet firstDay = workbook.getSheetAt(1);
+            Assertions.assertEquals("Avery Braune", firstDay.getRow(1).getCell(0).getStringCellValue());
+            Assertions.assertEquals("Molly Pieper", firstDay.getRow(2).getCell(0).getStringCellValue());
+            Assertions.assertEquals(0, workbook.getSheetAt(2).getLastRowNum());
+            Assertions.assertEquals(2, workbook.getSheetAt(3).getLastRowNum());
+        }
+        Mockito.verify(shiftService, Mockito.times(1)).retrieveUserShifts(FROM, TO);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchClockInRejectsBlankDuplicateAndUnknownIds() {
+        User avery = user("u1", "Avery Braune");
+        User molly = user("u2", "Molly Pieper");
+        Mockito.when(userService.getUsersByIds(Mockito.anyCollection())).thenReturn(List.of(molly, avery));
+        Mockito.when(shiftService.startNewShifts(Mockito.anyList(), Mockito.anyMap())).thenAnswer(invocation -> {
+            Map<String, String> rejected = invocation.getArgument(1);
+            rejected.put("u2", "Already clocked in");
+            return Map.of("u1", 41);
+        });
+
+        Map<String, Object> result = timeclockService.clockInBatch(Arrays.asList("u1", " ", null, "u1", "u9", "u2"));
+
+        Mockito.verify(userService).getUsersByIds(Set.of("u1", "u9", "u2"));
+        Mockito.verify(shiftService).startNewShifts(Mockito.eq(List.of(avery, molly)), Mockito.anyMap());
+        Assertions.assertEquals(Map.of("u1", 41), result.get("shiftIds"));
+        Map<String, String> errors = (Map<String, String>) result.get("errors");
+        Assertions.assertEquals("Missing userId", errors.get(" "));
+        Assertions.assertEquals("Missing userId", errors.get("null"));
+        Assertions.assertEquals("Duplicate userId in batch", errors.get("u1"));
+        Assertions.assertEquals("User not found", errors.get("u9"));
+        Assertions.assertEquals("Already clocked in", errors.get("u2"));
+    }
+
+    @Test
+    void periodIsBounded() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> timeclockService.validateSpreadsheetPeriod(TO, FROM));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> timeclockService.validateSpreadsheetPeriod(FROM, FROM.plusDays(31)));
+        Assertions.assertDoesNotThrow(() -> timeclockService.validateSpreadsheetPeriod(FROM, FROM.plusDays(13)));
+    }
+
+    @Test
+    void finishedDayIsBuiltOnceUntilItChanges() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<UserShiftRow> consumer = invocation.getArgument(1);
+            consumer.accept(row("u1", "Avery Braune", FROM, 8, 240));
+            return null;
+        }).when(shiftService).streamUserShifts(Mockito.eq(FROM), Mockito.any());
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        timeclockService.writeSpreadsheet(FROM, first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        timeclockService.writeSpreadsheet(FROM, second);
+        Assertions.assertArrayEquals(first.toByteArray(), second.toByteArray());
+        Mockito.verify(shiftService, Mockito.times(1)).streamUserShifts(Mockito.eq(FROM), Mockito.any());
+
+        reportCache.onShiftEvent(new ShiftEvent(ShiftEvent.Type.EDIT, 1, "u1", "Avery Braune", FROM));
+        timeclockService.writeSpreadsheet(FROM, new ByteArrayOutputStream());
+        Mockito.verify(shiftService, Mockito.times(2)).streamUserShifts(Mockito.eq(FROM), Mockito.any());
+    }
+
+    @Test
+    void csvExportReadsTheShiftsOffAStreamingResultSet() throws Exception {
+        Timestamp clockIn = Timestamp.from(DateUtility.atCentralTime(FROM, LocalTime.of(8, 0)));
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1, "u1", "Avery Braune", clockIn, Timestamp.from(clockIn.toInstant().plusSeconds(240 * 60)), 240,
+                null, "avery@example.com", null});
+        rows.add(new Object[]{2, "u2", "Molly Pieper", clockIn, null, null, null, null, null});
+        ShiftService streamingShiftService = new ShiftService(
+                new ShiftDao(new NamedParameterJdbcTemplate(new StreamingResultSetDataSource(rows)), null),
+                Mockito.mock(DailyUserTotalsDao.class), Mockito.mock(ApplicationEventPublisher.class));
+        TimeclockService exporter = new TimeclockService(userService, streamingShiftService,
+                Mockito.mock(EmailOutboxService.class), Mockito.mock(ShiftPurgeService.class), Mockito.mock(ShiftEventBroadcaster.class),
+                reportCache, new WorksheetMetrics(new MetricsRegistry()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            exporter.exportShifts(FROM, TO, ShiftExportWriter.Format.CSV, out);
+        } finally {
+            exporter.shutdown();
+        }
 
-//    @Autowired
-    TimeclockService timeclockService;
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertTrue(lines[1].startsWith("1,u1,Avery Braune,avery@example.com,"));
+        Assertions.assertTrue(lines[1].endsWith(",240"));
+        Assertions.assertTrue(lines[2].startsWith("2,u2,Molly Pieper,"));
+    }
 
-//    @Test
-//    void sendDailySummaryEmailTest() {
-//        LocalDate localDate = LocalDate.of(2025, Month.FEBRUARY, 6);
-//        timeclockService.sendDailySummaryEmail(localDate);
-//    }
+    private User user(String userId, String name) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setName(name);
+        return user;
+    }
 
-}
\ No newline at end of file
+    private UserShiftRow row(String userId, String name, LocalDate day, int hour, Integer workedMinutes) {
+        UserShiftRow row = new UserShiftRow();
+        row.setUserId(userId);
+        row.setName(name);
+        row.setClockInAt(DateUtility.atCentralTime(day, LocalTime.of(hour, 0)));
+        if (workedMinutes != null) {
+            row.setClockOutAt(row.getClockInAt().plusSeconds(workedMinutes * 60L));
+            row.setWorkedMinutes(workedMinutes);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,76 @@
+package timeclock.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import timeclock.daos.HiddenUserDao;
+import timeclock.daos.UserDao;
+import timeclock.models.User;
+
+import java.util.List;
+
+class UserServiceTest {
+
+    private UserDao userDao;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userDao = Mockito.mock(UserDao.class);
+        userService = new UserService(userDao, Mockito.mock(HiddenUserDao.class));
+        Mockito.when(userDao.selectAllUsersWithHiddenFlag())
+                .thenReturn(List.of(user("u1", "Avery Braune", false), user("u2", "Molly Pieper", true)));
+    }
+
+    @Test
+    void rosterReadsShareOneQuery() {
+        Assertions.assertEquals(1, userService.getAllUsers().size());
+        Assertions.assertEquals(2, userService.getAllUsersIncludingHidden().size());
+        Assertions.assertEquals("Avery Braune", userService.getUserById("u1").getName());
+        Assertions.assertTrue(userService.isUserHidden("u2"));
+
+        Mockito.verify(userDao, Mockito.times(1)).selectAllUsersWithHiddenFlag();
+        Mockito.verify(userDao, Mockito.never()).getUserById(Mockito.anyString());
+    }
+
+    @Test
+    void writesBumpVersionAndReloadRoster() {
+        userService.getAllUsers();
+        long version = userService.getRosterVersion();
+
+        userService.unhideUser("u2");
+
+        Assertions.assertTrue(userService.getRosterVersion() > version);
+        userService.getAllUsers();
+        Mockito.verify(userDao, Mockito.times(2)).selectAllUsersWithHiddenFlag();
+    }
+
+    @Test
+    void insertFormatsNameAndInvalidatesRoster() {
+        Mockito.when(userDao.insertUser(Mockito.any())).thenReturn("u3");
+        userService.getAllUsers();
+        long version = userService.getRosterVersion();
+
+        User user = new User();
+        user.setName("pat o'brien");
+        userService.insertUser(user);
+
+        Assertions.assertEquals("Pat O'Brien", user.getName());
+        Assertions.assertEquals(version + 1, userService.getRosterVersion());
+    }
+
+    @Test
+    void rosterListsAreImmutable() {
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> userService.getAllUsers().add(new User()));
+    }
+
+    private User user(String userId, String name, boolean hidden) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setName(name);
+        user.setHidden(hidden);
+        return user;
+    }
+}
@@ -0,0 +1,216 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.security.web.authentication.rememberme.InMemoryTokenRepositoryImpl;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenBasedRememberMeServices;
+import timeclock.daos.RememberMeTokenDao;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+class CachingPersistentTokenRepositoryTest {
+
+    private final CountingTokens table = new CountingTokens();
+    private final BatchedTokens batches = new BatchedTokens(table);
+    private final MutableClock clock = new MutableClock();
+    // Flushes only when the test asks
+    private final CachingPersistentTokenRepository repository =
+            new CachingPersistentTokenRepository(table, batches, 2, 60_000, 3_600_000, clock);
+
+    @AfterEach
+    void shutdown() {
+        repository.shutdown();
+    }
+
+    @Test
+    void lookupsAreCachedUntilTheyRunOut() {
+        table.createNewToken(token("mike", "s1", "t1"));
+
+        repository.getTokenForSeries("s1");
+        repository.getTokenForSeries("s1");
+        Assertions.assertEquals(1, table.lookups);
+
+        clock.advance(60_000);
+        repository.getTokenForSeries("s1");
+        Assertions.assertEquals(2, table.lookups);
+    }
+
+    @Test
+    void leastRecentlyUsedLookupIsEvicted() {
+        table.createNewToken(token("mike", "s1", "t1"));
+        table.createNewToken(token("anna", "s2", "t2"));
+        table.createNewToken(token("lee", "s3", "t3"));
+
+        repository.getTokenForSeries("s1");
+        repository.getTokenForSeries("s2");
+        repository.getTokenForSeries("s1");
+        repository.getTokenForSeries("s3");
+        Assertions.assertEquals(3, table.lookups);
+
+        repository.getTokenForSeries("s1");
+        Assertions.assertEquals(3, table.lookups);
+        repository.getTokenForSeries("s2");
+        Assertions.assertEquals(4, table.lookups);
+    }
+
+    @Test
+    void rotationsAreWrittenInOneBatchWithTheLatestOfEach() {
+        repository.createNewToken(token("mike", "s1", "t1"));
+        repository.createNewToken(token("anna", "s2", "t2"));
+
+        repository.updateToken("s1", "t1b", new Date(1_000));
+        repository.updateToken("s1", "t1c", new Date(2_000));
+        repository.updateToken("s2", "t2b", new Date(3_000));
+        Assertions.assertEquals("t1", table.getTokenForSeries("s1").getTokenValue(), "nothing is written before a flush");
+        Assertions.assertEquals("t1c", repository.getTokenForSeries("s1").getTokenValue());
+
+        repository.flush();
+        Assertions.assertEquals(1, batches.written.size());
+        Assertions.assertEquals(2, batches.written.get(0).size());
+        Assertions.assertEquals("t1c", table.getTokenForSeries("s1").getTokenValue());
+        Assertions.assertEquals(new Date(2_000), batches.written.get(0).get(0).getDate());
+        Assertions.assertEquals(0, repository.getPendingCount());
+
+        repository.flush();
+        Assertions.assertEquals(1, batches.written.size(), "nothing left to write");
+    }
+
+    @Test
+    void failedFlushKeepsTheRotations() {
+        repository.createNewToken(token("mike", "s1", "t1"));
+        repository.updateToken("s1", "t1b", new Date());
+
+        batches.down = true;
+        Assertions.assertThrows(IllegalStateException.class, repository::flush);
+        batches.down = false;
+        repository.flush();
+
+        Assertions.assertEquals("t1b", table.getTokenForSeries("s1").getTokenValue());
+    }
+
+    @Test
+    void updateOfAnUncachedSeriesIsWrittenStraightThrough() {
+        table.createNewToken(token("mike", "s1", "t1"));
+
+        repository.updateToken("s1", "t1b", new Date());
+
+        Assertions.assertEquals("t1b", table.getTokenForSeries("s1").getTokenValue());
+        Assertions.assertEquals(0, repository.getPendingCount());
+    }
+
+    @Test
+    void removingAUsersTokensDropsWhatIsCachedAndPending() {
+        repository.createNewToken(token("mike", "s1", "t1"));
+        repository.updateToken("s1", "t1b", new Date());
+
+        repository.removeUserTokens("mike");
+
+        Assertions.assertNull(repository.getTokenForSeries("s1"));
+        repository.flush();
+        Assertions.assertTrue(batches.written.isEmpty());
+    }
+
+    @Test
+    void stolenTokenSignsTheUserOutEverywhere() {
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(
+                User.withUsername("mike").password("unused").roles("USER").build());
+        PersistentTokenBasedRememberMeServices rememberMe = new PersistentTokenBasedRememberMeServices("key", users, repository);
+        repository.createNewToken(token("mike", "s1", "t1"));
+
+        // The real browser signs in again and is issued a new token
+        Assertions.assertNotNull(rememberMe.autoLogin(rememberMeRequest("s1", "t1"), new MockHttpServletResponse()));
+        // A copy of the old cookie turns up
+        Assertions.assertThrows(CookieTheftException.class,
+                () -> rememberMe.autoLogin(rememberMeRequest("s1", "t1"), new MockHttpServletResponse()));
+
+        Assertions.assertNull(repository.getTokenForSeries("s1"));
+        Assertions.assertNull(table.getTokenForSeries("s1"));
+    }
+
+    private static PersistentRememberMeToken token(String username, String series, String tokenValue) {
+        return new PersistentRememberMeToken(username, series, tokenValue, new Date());
+    }
+
+    private static MockHttpServletRequest rememberMeRequest(String series, String tokenValue) {
+        String value = Base64.getEncoder().withoutPadding()
+                .encodeToString((series + ":" + tokenValue).getBytes(StandardCharsets.UTF_8));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("remember-me", value));
+        return request;
+    }
+
+    private static class CountingTokens extends InMemoryTokenRepositoryImpl {
+
+        private int lookups;
+
+        @Override
+        public synchronized PersistentRememberMeToken getTokenForSeries(String seriesId) {
+            lookups++;
+            return super.getTokenForSeries(seriesId);
+        }
+    }
+
+    private static class BatchedTokens extends RememberMeTokenDao {
+
+        private final InMemoryTokenRepositoryImpl table;
+        private final List<List<PersistentRememberMeToken>> written = new ArrayList<>();
+        private boolean down;
+
+        BatchedTokens(InMemoryTokenRepositoryImpl table) {
+            super(null);
+            this.table = table;
+        }
+
+        @Override
+        public synchronized void updateTokens(Collection<PersistentRememberMeToken> tokens) {
+            if (down) {
+                throw new IllegalStateException("database down");
+            }
+            written.add(List.copyOf(tokens));
+            for (PersistentRememberMeToken token : tokens) {
+                table.updateToken(token.getSeries(), token.getTokenValue(), token.getDate());
+            }
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-02-05T14:00:00Z");
+
+        void advance(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
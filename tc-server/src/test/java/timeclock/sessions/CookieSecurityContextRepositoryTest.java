@@ -0,0 +1,85 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+
+class CookieSecurityContextRepositoryTest {
+
+    private static final String SECRET = "correct horse battery staple, twice over";
+    private static final Instant NOW = Instant.parse("2025-02-05T14:00:00Z");
+
+    private final CookieSecurityContextRepository repository = repository(SECRET, NOW);
+
+    @Test
+    void signInRoundTripsThroughTheCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveContext(signedIn("mike"), new MockHttpServletRequest(), response);
+
+        Cookie cookie = response.getCookie(SessionCookies.COOKIE_NAME);
+        Assertions.assertTrue(cookie.isHttpOnly());
+        Assertions.assertEquals(12 * 3600, cookie.getMaxAge());
+        Assertions.assertFalse(cookie.getValue().contains("mike"), "the cookie must not show who is signed in");
+
+        SecurityContext loaded = repository.loadDeferredContext(requestWith(cookie.getValue())).get();
+        Assertions.assertEquals("mike", loaded.getAuthentication().getName());
+        Assertions.assertEquals(List.of("ROLE_USER"), SessionCookies.authorityNames(loaded.getAuthentication()));
+    }
+
+    @Test
+    void alteredForeignAndExpiredCookiesAreSignedOut() {
+        String value = repository.seal("mike", List.of("ROLE_USER"), NOW.getEpochSecond());
+        byte[] bytes = Base64.getUrlDecoder().decode(value);
+        bytes[bytes.length - 20] ^= 1;
+        String altered = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Assertions.assertNull(repository.open(altered));
+        Assertions.assertNull(repository.open("not base64 at all!"));
+        Assertions.assertNull(repository(SECRET.toUpperCase(), NOW).open(value));
+        Assertions.assertNull(repository(SECRET, NOW.plusSeconds(12 * 3600)).open(value));
+        Assertions.assertNotNull(repository(SECRET, NOW.plusSeconds(12 * 3600 - 1)).open(value));
+        Assertions.assertTrue(repository.loadDeferredContext(requestWith(altered)).isGenerated());
+    }
+
+    @Test
+    void signOutClearsTheCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String value = repository.seal("mike", List.of("ROLE_USER"), NOW.getEpochSecond());
+
+        repository.saveContext(new SecurityContextImpl(), requestWith(value), response);
+
+        Assertions.assertEquals(0, response.getCookie(SessionCookies.COOKIE_NAME).getMaxAge());
+    }
+
+    @Test
+    void shortSecretIsRefused() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new CookieSecurityContextRepository("root", 3600));
+    }
+
+    private static CookieSecurityContextRepository repository(String secret, Instant now) {
+        return new CookieSecurityContextRepository(secret, 12 * 3600, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static MockHttpServletRequest requestWith(String cookieValue) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SessionCookies.COOKIE_NAME, cookieValue));
+        return request;
+    }
+
+    static SecurityContext signedIn(String username) {
+        return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(
+                username, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+}
@@ -0,0 +1,140 @@
+package timeclock.sessions;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextImpl;
+import timeclock.daos.WebSessionDao;
+import timeclock.models.WebSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class JdbcSecurityContextRepositoryTest {
+
+    private final InMemoryWebSessions webSessions = new InMemoryWebSessions();
+    // Flushes only when the test asks
+    private final JdbcSecurityContextRepository repository = new JdbcSecurityContextRepository(webSessions, 3_600_000, 3_600_000);
+
+    @AfterEach
+    void shutdown() {
+        repository.shutdown();
+    }
+
+    @Test
+    void requestsReadTheSessionAndTouchItInOneBatch() {
+        String sessionId = signIn();
+
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertEquals("mike", repository.loadDeferredContext(requestWith(sessionId)).get().getAuthentication().getName());
+        }
+        Assertions.assertTrue(webSessions.touches.isEmpty());
+
+        repository.flush();
+        Assertions.assertEquals(List.of(List.of(JdbcSecurityContextRepository.hash(sessionId))), webSessions.touches);
+        repository.flush();
+        Assertions.assertEquals(1, webSessions.touches.size(), "nothing new to touch");
+    }
+
+    @Test
+    void onlyTheHashIsStored() {
+        String sessionId = signIn();
+
+        Assertions.assertFalse(webSessions.rows.containsKey(sessionId));
+        Assertions.assertTrue(webSessions.rows.containsKey(JdbcSecurityContextRepository.hash(sessionId)));
+        Assertions.assertTrue(repository.loadDeferredContext(requestWith("made-up")).isGenerated());
+    }
+
+    @Test
+    void signInAgainReplacesTheSessionAndSignOutEndsIt() {
+        String first = signIn();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveContext(CookieSecurityContextRepositoryTest.signedIn("mike"), requestWith(first), response);
+        String second = response.getCookie(SessionCookies.COOKIE_NAME).getValue();
+
+        Assertions.assertNotEquals(first, second);
+        Assertions.assertEquals(1, webSessions.rows.size());
+        Assertions.assertTrue(repository.loadDeferredContext(requestWith(first)).isGenerated());
+
+        repository.loadDeferredContext(requestWith(second)).get();
+        repository.saveContext(new SecurityContextImpl(), requestWith(second), new MockHttpServletResponse());
+        repository.flush();
+        Assertions.assertTrue(webSessions.rows.isEmpty());
+        Assertions.assertTrue(webSessions.touches.isEmpty(), "an ended session is not touched");
+    }
+
+    @Test
+    void failedFlushKeepsTheTouches() {
+        String sessionId = signIn();
+        repository.loadDeferredContext(requestWith(sessionId)).get();
+
+        webSessions.down = true;
+        Assertions.assertThrows(IllegalStateException.class, repository::flush);
+        webSessions.down = false;
+        repository.flush();
+
+        Assertions.assertEquals(1, webSessions.touches.size());
+    }
+
+    private String signIn() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveContext(CookieSecurityContextRepositoryTest.signedIn("mike"), new MockHttpServletRequest(), response);
+        return response.getCookie(SessionCookies.COOKIE_NAME).getValue();
+    }
+
+    private static MockHttpServletRequest requestWith(String sessionId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SessionCookies.COOKIE_NAME, sessionId));
+        return request;
+    }
+
+    private static class InMemoryWebSessions extends WebSessionDao {
+
+        private final Map<String, WebSession> rows = new HashMap<>();
+        private final List<List<String>> touches = new ArrayList<>();
+        private boolean down;
+
+        InMemoryWebSessions() {
+            super(null);
+        }
+
+        @Override
+        public synchronized void insert(String sessionIdHash, String username, Collection<String> authorities) {
+            WebSession session = new WebSession();
+            session.setSessionIdHash(sessionIdHash);
+            session.setUsername(username);
+            session.setAuthorities(List.copyOf(authorities));
+            rows.put(sessionIdHash, session);
+        }
+
+        @Override
+        public synchronized WebSession selectActive(String sessionIdHash, long idleTimeoutMillis) {
+            return rows.get(sessionIdHash);
+        }
+
+        @Override
+        public synchronized int touch(Collection<String> sessionIdHashes) {
+            if (down) {
+                throw new IllegalStateException("database down");
+            }
+            touches.add(List.copyOf(sessionIdHashes));
+            return sessionIdHashes.size();
+        }
+
+        @Override
+        public synchronized void delete(String sessionIdHash) {
+            rows.remove(sessionIdHash);
+        }
+
+        @Override
+        public synchronized int deleteIdle(long idleTimeoutMillis) {
+            return 0;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package timeclock.utilities;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.time.LocalDate;
+
 class DateUtilityTest {
 
 
@@ -24,6 +27,14 @@ class DateUtilityTest {
         Assertions.assertEquals(180, result);
     }
 
+    @Test
+    void clockTimeRoundTripsThroughCentralTime() {
+        Instant clockIn = DateUtility.atCentralTime(LocalDate.of(2025, 3, 9), DateUtility.parseClockTime("8:05 AM"));
+        Assertions.assertEquals(Instant.parse("2025-03-09T13:05:00Z"), clockIn);
+        Assertions.assertEquals("8:05 AM", DateUtility.formatClockTime(clockIn));
+        Assertions.assertEquals(LocalDate.of(2025, 3, 9), DateUtility.centralDate(clockIn));
+    }
+
     @Test
     void testFormatTodayDateForFileName() {
         Assertions.assertDoesNotThrow(() -> {
@@ -0,0 +1,115 @@
+package timeclock.utilities;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+
+class DurationEngineTest {
+
+    private static final LocalDate SPRING_FORWARD = LocalDate.of(2025, 3, 9);
+    private static final LocalDate FALL_BACK = LocalDate.of(2025, 11, 2);
+
+    @Test
+    void shiftsCountRealMinutesAcrossDaylightSaving() {
+        // 1:00 AM CST to 3:30 AM CDT is an hour and a half, not two and a half
+        Assertions.assertEquals(90, DurationEngine.shiftMinutes(SPRING_FORWARD.toEpochDay(), minute(1, 0), minute(3, 30)));
+        // 12:30 AM CDT to 3:00 AM CST lives through 1 AM twice
+        Assertions.assertEquals(210, DurationEngine.shiftMinutes(FALL_BACK.toEpochDay(), minute(0, 30), minute(3, 0)));
+        // Overnight into the spring-forward morning: 10 PM to 6 AM is seven hours
+        Assertions.assertEquals(420, DurationEngine.shiftMinutes(SPRING_FORWARD.minusDays(1).toEpochDay(), minute(22, 0), minute(6, 0)));
+    }
+
+    @Test
+    void clockOutBeforeClockInIsTheNextDay() {
+        long day = LocalDate.of(2025, 2, 5).toEpochDay();
+        Assertions.assertEquals(150, DurationEngine.shiftMinutes(day, minute(22, 30), minute(1, 0)));
+        Assertions.assertEquals(day + 1, DurationEngine.clockOutEpochDay(day, minute(22, 30), minute(1, 0)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DurationEngine.shiftMinutes(day, minute(9, 0), minute(9, 0)));
+    }
+
+    @Test
+    void localTimesResolveLikeZonedDateTime() {
+        LocalDate[] days = {SPRING_FORWARD, FALL_BACK, LocalDate.of(1970, 4, 26), LocalDate.of(2007, 3, 11),
+                LocalDate.of(2024, 2, 29), LocalDate.of(2099, 11, 1), LocalDate.of(2150, 6, 1)};
+        for (LocalDate day : days) {
+            for (int minute = 0; minute < DurationEngine.MINUTES_PER_DAY; minute++) {
+                ZonedDateTime expected = ZonedDateTime.of(day, LocalTime.ofSecondOfDay(minute * 60L), DateUtility.CENTRAL_TIME);
+                long epochSecond = DurationEngine.epochSecond(day, minute);
+                Assertions.assertEquals(expected.toEpochSecond(), epochSecond, day + " " + minute);
+                Assertions.assertEquals(expected.toLocalDate().toEpochDay(), DurationEngine.epochDay(epochSecond));
+                Assertions.assertEquals(expected.getHour() * 60 + expected.getMinute(), DurationEngine.minuteOfDayAt(epochSecond));
+            }
+        }
+    }
+
+    @Test
+    void parsesKioskTimes() {
+        Assertions.assertEquals(minute(8, 5), DurationEngine.parseClockTime("8:05 AM"));
+        Assertions.assertEquals(minute(0, 15), DurationEngine.parseClockTime(" 12:15 am "));
+        Assertions.assertEquals(minute(12, 0), DurationEngine.parseClockTime("12:00PM"));
+        Assertions.assertEquals(minute(23, 59), DurationEngine.parseClockTime("11:59 PM"));
+        for (String invalid : new String[]{"", "8:05", "13:00 PM", "0:30 AM", "8:60 AM", "8:5 AM", "8:05 XM", "8:05 AMX"}) {
+            Assertions.assertEquals(-1, DurationEngine.parseClockTime(invalid), invalid);
+        }
+    }
+
+    @Test
+    void formatsWithoutStringFormat() {
+        Assertions.assertEquals("7h 05m", DurationEngine.formatMinutes(425));
+        Assertions.assertEquals("0h 00m", DurationEngine.formatMinutes(0));
+        Assertions.assertEquals("72h 10m", DurationEngine.formatMinutes(72 * 60 + 10));
+        Assertions.assertEquals("-1h 30m", DurationEngine.formatMinutes(-90));
+        Assertions.assertSame(DurationEngine.formatMinutes(425), DurationEngine.formatMinutes(425));
+    }
+
+    @Test
+    void minutesBetweenInstantsMatchesDuration() {
+        Instant clockIn = Instant.parse("2025-02-05T14:00:00.900Z");
+        Assertions.assertEquals(59, DurationEngine.minutesBetween(clockIn, Instant.parse("2025-02-05T15:00:00.100Z")));
+        Assertions.assertEquals(60, DurationEngine.minutesBetween(clockIn, Instant.parse("2025-02-05T15:00:00.900Z")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DurationEngine.minutesBetween(clockIn, clockIn));
+    }
+
+    @Test
+    void calculationsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assertions.assertTrue(threads.isThreadAllocatedMemorySupported());
+        Instant clockIn = Instant.parse("2025-03-09T07:00:00Z");
+        Instant clockOut = Instant.parse("2025-03-09T08:30:00Z");
+        long day = SPRING_FORWARD.toEpochDay();
+        long sink = 0;
+        // Warm up, which also fills the formatted-duration table
+        for (int i = 0; i < 20_000; i++) {
+            sink += calculate(clockIn, clockOut, day, i);
+        }
+
+        int calls = 100_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            sink += calculate(clockIn, clockOut, day, i);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        Assertions.assertNotEquals(0, sink);
+        // Reading the counter itself allocates a little; anything per call would be megabytes
+        Assertions.assertTrue(allocated < 4096, allocated + " bytes over " + calls + " calls");
+    }
+
+    private static long calculate(Instant clockIn, Instant clockOut, long day, int i) {
+        int start = i % 720;
+        return DurationEngine.minutesBetween(clockIn, clockOut)
+                + DurationEngine.shiftMinutes(day, start, start + 600)
+                + DurationEngine.epochDay(DurationEngine.epochSecond(day, start))
+                + DurationEngine.parseClockTime("10:45 PM")
+                + DurationEngine.formatMinutes(start).length();
+    }
+
+    private static int minute(int hour, int minute) {
+        return DurationEngine.minuteOfDay(hour, minute);
+    }
+}
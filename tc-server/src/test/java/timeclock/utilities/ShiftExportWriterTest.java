@@ -0,0 +1,79 @@
+package timeclock.utilities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import timeclock.models.UserShiftRow;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+class ShiftExportWriterTest {
+
+    @Test
+    void csvQuotesOnlyFieldsThatNeedIt() throws Exception {
+        String csv = write(ShiftExportWriter.Format.CSV, closedShift(), openShift());
+        String[] lines = csv.split("\r\n");
+
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertEquals("shiftId,userId,name,email,phoneNumber,mailingAddress,workDate,clockIn,clockOut,workedMinutes", lines[0]);
+        Assertions.assertEquals("1,u1,Avery Braune,avery@example.com,,\"12 Elm St, Apt \"\"B\"\"\",2025-02-05,"
+                + "2025-02-05T08:00:00-06:00,2025-02-05T16:30:00-06:00,510", lines[1]);
+        Assertions.assertTrue(lines[2].endsWith("2025-02-05T23:15:00-06:00,,"));
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        String ndjson = write(ShiftExportWriter.Format.NDJSON, closedShift(), openShift());
+        String[] lines = ndjson.split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(ndjson.endsWith("\n"));
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        Assertions.assertEquals(510, first.get("workedMinutes").asInt());
+        Assertions.assertEquals("12 Elm St, Apt \"B\"", first.get("mailingAddress").asText());
+        Assertions.assertTrue(new ObjectMapper().readTree(lines[1]).get("clockOut").isNull());
+    }
+
+    @Test
+    void formatComesFromParameterThenAcceptHeader() {
+        Assertions.assertEquals(ShiftExportWriter.Format.NDJSON, ShiftExportWriter.Format.resolve("ndjson", null));
+        Assertions.assertEquals(ShiftExportWriter.Format.NDJSON, ShiftExportWriter.Format.resolve(null, "application/x-ndjson"));
+        Assertions.assertEquals(ShiftExportWriter.Format.CSV, ShiftExportWriter.Format.resolve(null, "*/*"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ShiftExportWriter.Format.resolve("xml", null));
+    }
+
+    private String write(ShiftExportWriter.Format format, UserShiftRow... rows) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ShiftExportWriter writer = new ShiftExportWriter(out, format);
+        for (UserShiftRow row : rows) {
+            writer.write(row);
+        }
+        writer.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private UserShiftRow closedShift() {
+        UserShiftRow row = new UserShiftRow();
+        row.setShiftId(1);
+        row.setUserId("u1");
+        row.setName("Avery Braune");
+        row.setEmail("avery@example.com");
+        row.setMailingAddress("12 Elm St, Apt \"B\"");
+        row.setClockInAt(Instant.parse("2025-02-05T14:00:00Z"));
+        row.setClockOutAt(Instant.parse("2025-02-05T22:30:00Z"));
+        row.setWorkedMinutes(510);
+        return row;
+    }
+
+    private UserShiftRow openShift() {
+        UserShiftRow row = new UserShiftRow();
+        row.setShiftId(2);
+        row.setUserId("u2");
+        row.setName("Molly Pieper");
+        row.setClockInAt(Instant.parse("2025-02-06T05:15:00Z"));
+        return row;
+    }
+}
@@ -17,4 +17,15 @@ class TimeCalculatorUtilityTest {
         assertEquals("8h 30m", timeSpent, "The calculated time spent should be 8 hours and 30 minutes.");
     }
 
+    @Test
+    void testCalculateMinutesSpentAcrossMidnight() {
+        assertEquals(150, TimeCalculatorUtility.calculateMinutesSpent("10:30 PM", "1:00 AM"));
+    }
+
+    @Test
+    void testFormatMinutes() {
+        assertEquals("7h 05m", TimeCalculatorUtility.formatMinutes(425));
+        assertEquals("0h 00m", TimeCalculatorUtility.formatMinutes(0));
+    }
+
 }
\ No newline at end of file
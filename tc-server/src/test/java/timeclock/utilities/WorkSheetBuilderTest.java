@@ -0,0 +1,67 @@
+package timeclock.utilities;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import timeclock.models.UserShiftRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.List;
+
+class WorkSheetBuilderTest {
+
+    @Test
+    void streamingModeWritesEveryRowThroughTheWindow() throws Exception {
+        int rows = 5_000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WorkSheetBuilder builder = WorkSheetBuilder.streaming(100)) {
+            builder.startSheet();
+            for (int i = 0; i < rows; i++) {
+                builder.addRow(row(i));
+            }
+            builder.write(out);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Shifts Summary");
+            Assertions.assertEquals(rows, sheet.getLastRowNum());
+            Assertions.assertEquals("Full Name", sheet.getRow(0).getCell(0).getStringCellValue());
+
+            Row last = sheet.getRow(rows);
+            Assertions.assertEquals("User " + (rows - 1), last.getCell(0).getStringCellValue());
+            Assertions.assertEquals("8h 00m", last.getCell(6).getStringCellValue());
+            Assertions.assertEquals(480, last.getCell(7).getNumericCellValue());
+            Assertions.assertTrue(sheet.getColumnWidth(3) > sheet.getColumnWidth(4));
+        }
+    }
+
+    @Test
+    void openShiftsLeaveWorkedCellsBlank() throws Exception {
+        UserShiftRow open = row(0);
+        open.setClockOutAt(null);
+        open.setWorkedMinutes(null);
+
+        byte[] bytes = new WorkSheetBuilder().populateWorkbook(List.of(open)).toFile().getByteArray();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+            Row row = workbook.getSheetAt(0).getRow(1);
+            Assertions.assertNull(row.getCell(6));
+            Assertions.assertNull(row.getCell(7));
+        }
+    }
+
+    private UserShiftRow row(int i) {
+        UserShiftRow row = new UserShiftRow();
+        row.setShiftId(i);
+        row.setUserId("u" + i);
+        row.setName("User " + i);
+        row.setEmail("user" + i + "@example.com");
+        row.setClockInAt(Instant.parse("2025-02-05T14:00:00Z"));
+        row.setClockOutAt(Instant.parse("2025-02-05T22:00:00Z"));
+        row.setWorkedMinutes(480);
+        return row;
+    }
+}